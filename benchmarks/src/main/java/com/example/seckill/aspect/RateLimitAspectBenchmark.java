@@ -0,0 +1,118 @@
+package com.example.seckill.aspect;
+
+import com.example.seckill.annotation.RateLimit;
+import com.example.seckill.limit.HierarchicalRateLimiter;
+import com.example.seckill.limit.RateLimitDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of the @RateLimit advice with the limiter itself stubbed out,
+ * so only descriptor lookup, client id resolution and key building are measured.
+ *
+ * Run with the GC profiler to see allocation per call:
+ * java -jar target/benchmarks.jar RateLimitAspectBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RateLimitAspectBenchmark {
+
+    @Param({"true", "false"})
+    private boolean trustedProxy;
+
+    private Endpoints direct;
+    private Endpoints proxied;
+
+    @Setup
+    public void setUp() {
+        RateLimitAspect aspect = new RateLimitAspect();
+        ReflectionTestUtils.setField(aspect, "rateLimiter", new NoopRateLimiter());
+        ReflectionTestUtils.setField(aspect, "trustedProxy", trustedProxy);
+        aspect.init();
+
+        direct = new Endpoints();
+        AspectJProxyFactory factory = new AspectJProxyFactory(direct);
+        factory.addAspect(aspect);
+        proxied = factory.getProxy();
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.8");
+        request.addHeader("X-Forwarded-For", "203.0.113.7");
+        // Thread-scoped state: setup runs on the benchmark thread that owns this request context
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public Long baseline() {
+        return direct.byUser(1L, 2L);
+    }
+
+    @Benchmark
+    public Long userLimit() {
+        return proxied.byUser(1L, 2L);
+    }
+
+    @Benchmark
+    public Long ipLimit() {
+        return proxied.byIp(2L);
+    }
+
+    @Benchmark
+    public Long globalLimit() {
+        return proxied.global(2L);
+    }
+
+    public static class Endpoints {
+
+        @RateLimit(key = "bench", type = RateLimit.RateLimitType.USER, rate = 1.0, capacity = 5)
+        public Long byUser(Long userId, Long goodsId) {
+            return goodsId;
+        }
+
+        @RateLimit(type = RateLimit.RateLimitType.IP, algorithm = RateLimit.Algorithm.GCRA, rate = 0.2, capacity = 1)
+        public Long byIp(Long goodsId) {
+            return goodsId;
+        }
+
+        @RateLimit(key = "bench", type = RateLimit.RateLimitType.GLOBAL, rate = 1000, capacity = 2000)
+        public Long global(Long goodsId) {
+            return goodsId;
+        }
+    }
+
+    /**
+     * Always admits, consuming the key so it is not dead-code eliminated
+     */
+    private static class NoopRateLimiter extends HierarchicalRateLimiter {
+        @Override
+        public long tryAcquireWithWaitTime(RateLimitDescriptor descriptor, String key) {
+            return key.isEmpty() ? 1 : 0;
+        }
+    }
+}
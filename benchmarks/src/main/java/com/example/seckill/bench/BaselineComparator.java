@@ -0,0 +1,109 @@
+package com.example.seckill.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH JSON result file against a recorded baseline and exits with 1 on regression.
+ *
+ * Both files come from {@code -rf json -rff <file>}. A benchmark regresses when its score is worse
+ * than the baseline by more than the threshold (slower for avgt/sample/ss, lower for thrpt), or,
+ * when both runs used {@code -prof gc}, when it allocates more bytes per operation.
+ *
+ * Usage: java -cp target/benchmarks.jar com.example.seckill.bench.BaselineComparator
+ *        baseline.json result.json [thresholdPercent, default 10]
+ */
+public class BaselineComparator {
+
+    private static final String ALLOC_NORM = "\u00b7gc.alloc.rate.norm";
+    // Allocation below this is escape-analysis noise, not worth failing on
+    private static final double ALLOC_NOISE_BYTES = 16;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparator <baseline.json> <result.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.10;
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, JsonNode> baseline = index(objectMapper.readTree(new File(args[0])));
+        Map<String, JsonNode> results = index(objectMapper.readTree(new File(args[1])));
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : results.entrySet()) {
+            String name = entry.getKey();
+            JsonNode current = entry.getValue();
+            JsonNode base = baseline.get(name);
+            if (base == null) {
+                System.out.printf("NEW       %s%n", name);
+                continue;
+            }
+
+            double baseScore = base.path("primaryMetric").path("score").asDouble();
+            double score = current.path("primaryMetric").path("score").asDouble();
+            String unit = current.path("primaryMetric").path("scoreUnit").asText();
+            boolean higherIsBetter = "thrpt".equals(current.path("mode").asText());
+            double change = baseScore == 0 ? 0 : (score - baseScore) / baseScore;
+            boolean slower = higherIsBetter ? change < -threshold : change > threshold;
+
+            boolean allocates = false;
+            JsonNode baseAlloc = base.path("secondaryMetrics").path(ALLOC_NORM).path("score");
+            JsonNode alloc = current.path("secondaryMetrics").path(ALLOC_NORM).path("score");
+            String allocText = "";
+            if (!baseAlloc.isMissingNode() && !alloc.isMissingNode()) {
+                allocates = alloc.asDouble() > baseAlloc.asDouble() * (1 + threshold) + ALLOC_NOISE_BYTES;
+                allocText = String.format(", alloc %.0f -> %.0f B/op", baseAlloc.asDouble(), alloc.asDouble());
+            }
+
+            String status = slower || allocates ? "REGRESSED" : "OK";
+            if (slower || allocates) {
+                regressions++;
+            }
+            System.out.printf("%-9s %s: %.3f -> %.3f %s (%+.1f%%)%s%n",
+                    status, name, baseScore, score, unit, change * 100, allocText);
+        }
+
+        for (String name : baseline.keySet()) {
+            if (!results.containsKey(name)) {
+                System.out.printf("MISSING   %s%n", name);
+            }
+        }
+
+        System.out.printf("%d benchmarks, %d regressions (threshold %.0f%%)%n",
+                results.size(), regressions, threshold * 100);
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    /**
+     * Key each result by benchmark, mode and params, e.g. ...RateLimitAspectBenchmark.ipLimit avgt {trustedProxy=true}
+     */
+    private static Map<String, JsonNode> index(JsonNode runs) {
+        Map<String, JsonNode> indexed = new LinkedHashMap<>();
+        for (JsonNode run : runs) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText())
+                    .append(' ').append(run.path("mode").asText());
+            JsonNode params = run.path("params");
+            if (params.size() > 0) {
+                key.append(" {");
+                Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> param = fields.next();
+                    key.append(param.getKey()).append('=').append(param.getValue().asText());
+                    if (fields.hasNext()) {
+                        key.append(", ");
+                    }
+                }
+                key.append('}');
+            }
+            indexed.put(key.toString(), run);
+        }
+        return indexed;
+    }
+}
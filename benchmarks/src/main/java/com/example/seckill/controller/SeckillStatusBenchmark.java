@@ -0,0 +1,88 @@
+package com.example.seckill.controller;
+
+import com.example.seckill.vo.GoodsVo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Status and countdown calculation of GoodsController, per goods and for a /goods/list page
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SeckillStatusBenchmark {
+
+    @Param({"100"})
+    private int listSize;
+
+    private GoodsVo notStarted;
+    private GoodsVo ongoing;
+    private GoodsVo ended;
+    private List<GoodsVo> goodsList;
+
+    @Setup
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        notStarted = goods(now + 60_000, now + 120_000);
+        ongoing = goods(now - 60_000, now + 60_000);
+        ended = goods(now - 120_000, now - 60_000);
+
+        goodsList = new ArrayList<>(listSize);
+        GoodsVo[] shapes = {notStarted, ongoing, ended};
+        for (int i = 0; i < listSize; i++) {
+            GoodsVo shape = shapes[i % shapes.length];
+            goodsList.add(goods(shape.getStartTime().getTime(), shape.getEndTime().getTime()));
+        }
+    }
+
+    @Benchmark
+    public Integer notStarted() {
+        GoodsController.calculateSeckillStatus(notStarted, new Date());
+        return notStarted.getRemainSeconds();
+    }
+
+    @Benchmark
+    public Integer ongoing() {
+        GoodsController.calculateSeckillStatus(ongoing, new Date());
+        return ongoing.getRemainSeconds();
+    }
+
+    @Benchmark
+    public Integer ended() {
+        GoodsController.calculateSeckillStatus(ended, new Date());
+        return ended.getRemainSeconds();
+    }
+
+    @Benchmark
+    public List<GoodsVo> list() {
+        Date now = new Date();
+        for (GoodsVo goods : goodsList) {
+            GoodsController.calculateSeckillStatus(goods, now);
+        }
+        return goodsList;
+    }
+
+    private static GoodsVo goods(long start, long end) {
+        GoodsVo goods = new GoodsVo();
+        goods.setStartTime(new Date(start));
+        goods.setEndTime(new Date(end));
+        return goods;
+    }
+}
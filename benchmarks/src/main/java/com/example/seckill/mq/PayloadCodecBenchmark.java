@@ -0,0 +1,92 @@
+package com.example.seckill.mq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stock reduction message payload: the JSON map MQProducer sends and StockReductionConsumer parses,
+ * against a fixed-layout binary encoding (goods id + 16 byte transaction UUID).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PayloadCodecBenchmark {
+
+    private static final int BINARY_SIZE = 8 + 16;
+
+    private ObjectMapper objectMapper;
+    private long goodsId;
+    private String transactionId;
+    private String json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = new ObjectMapper();
+        goodsId = 1001L;
+        transactionId = UUID.randomUUID().toString();
+        json = jacksonEncode();
+        binary = binaryEncode();
+    }
+
+    @Benchmark
+    public String jacksonEncode() throws Exception {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("goodsId", goodsId);
+        payload.put("transactionId", transactionId);
+        return objectMapper.writeValueAsString(payload);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public long jacksonDecode() throws Exception {
+        Map<String, Object> payload = objectMapper.readValue(json, Map.class);
+        Long id = Long.valueOf(payload.get("goodsId").toString());
+        return id + payload.get("transactionId").toString().length();
+    }
+
+    /**
+     * Message body bytes, as handed to the RocketMQ client
+     */
+    @Benchmark
+    public byte[] jacksonEncodeBytes() throws Exception {
+        return jacksonEncode().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        UUID uuid = UUID.fromString(transactionId);
+        return ByteBuffer.allocate(BINARY_SIZE)
+                .putLong(goodsId)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    @Benchmark
+    public long binaryDecode() {
+        ByteBuffer buffer = ByteBuffer.wrap(binary);
+        long id = buffer.getLong();
+        UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+        return id + uuid.toString().length();
+    }
+}
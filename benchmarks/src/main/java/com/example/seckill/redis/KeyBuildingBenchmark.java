@@ -0,0 +1,58 @@
+package com.example.seckill.redis;
+
+import com.example.seckill.service.RedisService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis key building as done on every seckill request:
+ * BasePrefix.getPrefix() (class simple name + prefix) and RedisService.getRealKey().
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyBuildingBenchmark {
+
+    private RedisService redisService;
+    private long goodsId;
+
+    @Setup
+    public void setUp() {
+        // getRealKey only concatenates, no Redis connection is needed
+        redisService = new RedisService();
+        goodsId = 1001L;
+    }
+
+    @Benchmark
+    public String prefix() {
+        return SeckillKey.goodsStock.getPrefix();
+    }
+
+    @Benchmark
+    public String realKey() {
+        return redisService.getRealKey(SeckillKey.goodsStock, "" + goodsId);
+    }
+
+    /**
+     * The two keys of one decrease_stock call
+     */
+    @Benchmark
+    public int stockScriptKeys() {
+        String stockKey = redisService.getRealKey(SeckillKey.goodsStock, "" + goodsId);
+        String reservedKey = redisService.getRealKey(SeckillKey.reservedStock, "" + goodsId);
+        return stockKey.length() + reservedKey.length();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.seckill.service.impl;
+
+import com.google.common.cache.Cache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local sold-out cache of SeckillServiceImplv3, taken from a real instance so the
+ * measured cache has the production size and expiry settings.
+ * Every request to a sold-out goods stops at this lookup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SoldOutCacheBenchmark {
+
+    private static final long SOLD_OUT_GOODS = 1L;
+    private static final long ON_SALE_GOODS = 2L;
+
+    private Cache<Long, Boolean> cache;
+
+    @Setup
+    public void setUp() {
+        cache = new SeckillServiceImplv3().getLocalSoldOutCache();
+        cache.put(SOLD_OUT_GOODS, true);
+    }
+
+    @Benchmark
+    public Boolean hit() {
+        return cache.getIfPresent(SOLD_OUT_GOODS);
+    }
+
+    @Benchmark
+    public Boolean miss() {
+        return cache.getIfPresent(ON_SALE_GOODS);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Boolean hitContended() {
+        return cache.getIfPresent(SOLD_OUT_GOODS);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.seckill.util;
+
+import com.example.seckill.mq.MQProducer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Id generation used per order: UUIDUtil helpers and MQProducer.newTransactionId().
+ * The transaction id is a UUID.randomUUID() drawn from a shared SecureRandom, so it is also
+ * measured under contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdGenerationBenchmark {
+
+    @Benchmark
+    public String uuid() {
+        return UUIDUtil.uuid();
+    }
+
+    @Benchmark
+    public String orderNo() {
+        return UUIDUtil.generateOrderNo();
+    }
+
+    @Benchmark
+    public String transactionId() {
+        return MQProducer.newTransactionId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String transactionIdContended() {
+        return MQProducer.newTransactionId();
+    }
+}
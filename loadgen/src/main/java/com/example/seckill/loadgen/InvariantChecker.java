@@ -0,0 +1,94 @@
+package com.example.seckill.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stock invariants per goods, from /monitor/stock/{goodsId} before and after the run:
+ * <ul>
+ *   <li>orders in DB &lt;= total stock (no oversell)</li>
+ *   <li>success responses &lt;= Redis stock before the run (no double deduction)</li>
+ *   <li>Redis stock + reserved stock = DB stock once the consumers have drained</li>
+ * </ul>
+ */
+class InvariantChecker {
+
+    private final SeckillClient client;
+    private final Map<Long, JsonNode> before = new HashMap<>();
+
+    InvariantChecker(SeckillClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Snapshot the stock before the run, fails when a goods is unknown or not preheated
+     */
+    void snapshot(long[] goodsIds) {
+        for (long goodsId : goodsIds) {
+            JsonNode stock = client.get("/monitor/stock/" + goodsId);
+            if (stock == null || stock.path("redisStock").isNull()) {
+                throw new IllegalStateException("No stock for goods " + goodsId + ", is it on sale and preheated?");
+            }
+            before.put(goodsId, stock);
+        }
+    }
+
+    /**
+     * @return true when every invariant holds for every goods
+     */
+    boolean check(PrintStream out, Map<Long, Long> successes, int settleSeconds) throws InterruptedException {
+        out.println();
+        out.println("Invariants");
+        boolean ok = true;
+        for (Map.Entry<Long, JsonNode> entry : before.entrySet()) {
+            long goodsId = entry.getKey();
+            JsonNode start = entry.getValue();
+            JsonNode end = awaitConsistent(goodsId, settleSeconds);
+            if (end == null) {
+                out.printf("  goods %d: FAILED, /monitor/stock unavailable%n", goodsId);
+                ok = false;
+                continue;
+            }
+
+            int totalStock = end.path("totalStock").asInt();
+            int orders = end.path("orders").asInt();
+            int ordersCreated = orders - start.path("orders").asInt();
+            long success = successes.getOrDefault(goodsId, 0L);
+            int available = start.path("redisStock").asInt();
+            boolean noOversell = orders <= totalStock;
+            boolean successWithinStock = success <= available;
+            boolean consistent = end.path("consistent").asBoolean();
+
+            out.printf("  goods %d: %d success responses, %d orders created, stock %d -> redis %s + reserved %s / db %s%n",
+                    goodsId, success, ordersCreated, available,
+                    end.path("redisStock").asText(), end.path("reservedStock").asText(), end.path("dbStock").asText());
+            out.printf("    %-6s orders (%d) <= total stock (%d)%n", status(noOversell), orders, totalStock);
+            out.printf("    %-6s success responses (%d) <= stock before run (%d)%n", status(successWithinStock), success, available);
+            out.printf("    %-6s redis + reserved = db after %s%n", status(consistent),
+                    consistent ? "settling" : settleSeconds + "s");
+            ok &= noOversell && successWithinStock && consistent;
+        }
+        return ok;
+    }
+
+    /**
+     * Poll until Redis and DB agree: they differ while a consumer has reduced the DB stock
+     * but not yet released the reserved unit
+     */
+    private JsonNode awaitConsistent(long goodsId, int settleSeconds) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + settleSeconds * 1000L;
+        JsonNode stock = client.get("/monitor/stock/" + goodsId);
+        while ((stock == null || !stock.path("consistent").asBoolean()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1000);
+            stock = client.get("/monitor/stock/" + goodsId);
+        }
+        return stock;
+    }
+
+    private static String status(boolean ok) {
+        return ok ? "OK" : "FAILED";
+    }
+}
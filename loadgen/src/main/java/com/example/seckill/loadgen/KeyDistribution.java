@@ -0,0 +1,70 @@
+package com.example.seckill.loadgen;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws user and goods ids from a precomputed cumulative distribution
+ */
+class KeyDistribution {
+
+    private final long[] keys;
+    private final double[] cumulative;
+
+    private KeyDistribution(long[] keys, double[] weights) {
+        this.keys = keys;
+        this.cumulative = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    /**
+     * {@code count} consecutive users from {@code start}; zipf ranks them so the first user is the most active
+     */
+    static KeyDistribution users(long start, int count, String type, double exponent) {
+        long[] keys = new long[count];
+        double[] weights = new double[count];
+        boolean zipf = "zipf".equals(type);
+        if (!zipf && !"uniform".equals(type)) {
+            throw new IllegalArgumentException("Unknown user distribution: " + type);
+        }
+        for (int i = 0; i < count; i++) {
+            keys[i] = start + i;
+            weights[i] = zipf ? 1 / Math.pow(i + 1, exponent) : 1;
+        }
+        return new KeyDistribution(keys, weights);
+    }
+
+    /**
+     * Weighted goods list such as {@code 1:9,2:1}, a missing weight counts as 1
+     */
+    static KeyDistribution goods(String spec) {
+        String[] parts = spec.split(",");
+        long[] keys = new long[parts.length];
+        double[] weights = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String[] pair = parts[i].trim().split(":");
+            keys[i] = Long.parseLong(pair[0]);
+            weights[i] = pair.length > 1 ? Double.parseDouble(pair[1]) : 1;
+        }
+        return new KeyDistribution(keys, weights);
+    }
+
+    long next(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return keys[Math.min(index, keys.length - 1)];
+    }
+
+    long[] keys() {
+        return keys;
+    }
+}
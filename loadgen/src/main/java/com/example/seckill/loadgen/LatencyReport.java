@@ -0,0 +1,137 @@
+package com.example.seckill.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Per-outcome latency histograms in microseconds.
+ *
+ * Response time runs from the intended send time of the schedule, so time spent queued behind
+ * slow requests counts (no coordinated omission). Service time runs from the moment a worker
+ * actually sent the request; a wide gap between the two means the generator or the server
+ * could not keep up with the arrival rate.
+ */
+class LatencyReport {
+
+    // One hour in microseconds, 3 significant digits
+    private static final long HIGHEST_TRACKABLE = 3600L * 1000 * 1000;
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<Outcome, Recorder> responseRecorders = new EnumMap<>(Outcome.class);
+    private final Map<Outcome, Recorder> serviceRecorders = new EnumMap<>(Outcome.class);
+    private final Map<Outcome, Histogram> responseTotals = new EnumMap<>(Outcome.class);
+    private final Map<Outcome, Histogram> serviceTotals = new EnumMap<>(Outcome.class);
+    private final Map<Outcome, Histogram> intervals = new EnumMap<>(Outcome.class);
+
+    LatencyReport() {
+        for (Outcome outcome : Outcome.values()) {
+            responseRecorders.put(outcome, new Recorder(HIGHEST_TRACKABLE, SIGNIFICANT_DIGITS));
+            serviceRecorders.put(outcome, new Recorder(HIGHEST_TRACKABLE, SIGNIFICANT_DIGITS));
+            responseTotals.put(outcome, new Histogram(HIGHEST_TRACKABLE, SIGNIFICANT_DIGITS));
+            serviceTotals.put(outcome, new Histogram(HIGHEST_TRACKABLE, SIGNIFICANT_DIGITS));
+        }
+    }
+
+    void record(Outcome outcome, long responseNanos, long serviceNanos) {
+        responseRecorders.get(outcome).recordValue(Math.min(HIGHEST_TRACKABLE, responseNanos / 1000));
+        serviceRecorders.get(outcome).recordValue(Math.min(HIGHEST_TRACKABLE, serviceNanos / 1000));
+    }
+
+    /**
+     * A request that was still queued when the run ended, an error that never got a service time
+     */
+    void abandoned(long responseNanos) {
+        responseRecorders.get(Outcome.ERROR).recordValue(Math.min(HIGHEST_TRACKABLE, responseNanos / 1000));
+    }
+
+    /**
+     * Move everything recorded since the last call into the totals and print one progress line
+     */
+    synchronized void interval(PrintStream out, double elapsedSeconds, double intervalSeconds, long backlog) {
+        Map<Outcome, Histogram> drained = drain();
+        Histogram all = new Histogram(HIGHEST_TRACKABLE, SIGNIFICANT_DIGITS);
+        StringBuilder counts = new StringBuilder();
+        for (Map.Entry<Outcome, Histogram> entry : drained.entrySet()) {
+            all.add(entry.getValue());
+            counts.append(' ').append(entry.getKey().name().toLowerCase()).append('=').append(entry.getValue().getTotalCount());
+        }
+        out.printf("[%6.1fs] %8.0f req/s  p50 %8.2fms  p99 %8.2fms  max %8.2fms  backlog %d %s%n",
+                elapsedSeconds, all.getTotalCount() / intervalSeconds, ms(all.getValueAtPercentile(50)),
+                ms(all.getValueAtPercentile(99)), ms(all.getMaxValue()), backlog, counts.toString().trim());
+    }
+
+    /**
+     * Move everything recorded since the last call into the totals
+     *
+     * @return the response times of this interval per outcome
+     */
+    synchronized Map<Outcome, Histogram> drain() {
+        Map<Outcome, Histogram> drained = new EnumMap<>(Outcome.class);
+        for (Outcome outcome : Outcome.values()) {
+            Histogram response = responseRecorders.get(outcome).getIntervalHistogram(intervals.get(outcome));
+            intervals.put(outcome, response);
+            responseTotals.get(outcome).add(response);
+            serviceTotals.get(outcome).add(serviceRecorders.get(outcome).getIntervalHistogram());
+            drained.put(outcome, response);
+        }
+        return drained;
+    }
+
+    void print(PrintStream out, double seconds) {
+        out.println();
+        out.println("Response time (from intended send time, ms)");
+        out.printf("%-13s %10s %9s %9s %9s %9s %9s %9s %12s%n",
+                "outcome", "count", "req/s", "p50", "p90", "p99", "p99.9", "max", "service p99");
+        Histogram all = new Histogram(HIGHEST_TRACKABLE, SIGNIFICANT_DIGITS);
+        Histogram allService = new Histogram(HIGHEST_TRACKABLE, SIGNIFICANT_DIGITS);
+        for (Outcome outcome : Outcome.values()) {
+            Histogram response = responseTotals.get(outcome);
+            Histogram service = serviceTotals.get(outcome);
+            all.add(response);
+            allService.add(service);
+            printRow(out, outcome.name().toLowerCase(), response, service, seconds);
+        }
+        printRow(out, "all", all, allService, seconds);
+    }
+
+    /**
+     * Full percentile distributions, one .hgrm file per outcome (plottable with HdrHistogram's plotter)
+     */
+    void writeDistributions(File dir) throws FileNotFoundException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new FileNotFoundException("Cannot create " + dir);
+        }
+        for (Outcome outcome : Outcome.values()) {
+            Histogram response = responseTotals.get(outcome);
+            if (response.getTotalCount() == 0) {
+                continue;
+            }
+            try (PrintStream file = new PrintStream(new File(dir, outcome.name().toLowerCase() + ".hgrm"))) {
+                // Values are in microseconds, scaled to milliseconds in the output
+                response.outputPercentileDistribution(file, 1000.0);
+            }
+        }
+    }
+
+    private static void printRow(PrintStream out, String name, Histogram response, Histogram service, double seconds) {
+        if (response.getTotalCount() == 0) {
+            out.printf("%-13s %10d%n", name, 0);
+            return;
+        }
+        out.printf("%-13s %10d %9.0f %9.2f %9.2f %9.2f %9.2f %9.2f %12.2f%n",
+                name, response.getTotalCount(), response.getTotalCount() / seconds,
+                ms(response.getValueAtPercentile(50)), ms(response.getValueAtPercentile(90)),
+                ms(response.getValueAtPercentile(99)), ms(response.getValueAtPercentile(99.9)),
+                ms(response.getMaxValue()), ms(service.getValueAtPercentile(99)));
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+}
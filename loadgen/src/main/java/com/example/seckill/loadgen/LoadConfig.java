@@ -0,0 +1,140 @@
+package com.example.seckill.loadgen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Load generator settings, parsed from {@code --name=value} arguments
+ */
+public class LoadConfig {
+
+    String baseUrl = "http://localhost:8080";
+    // Measured phase length in seconds
+    int duration = 60;
+
+    // Arrival rate in requests per second: ramps linearly from startRate to rate over rampSeconds,
+    // then holds; during [spikeAt, spikeAt + spikeSeconds) it jumps to spikeRate
+    double rate = 1000;
+    double startRate = 0;
+    int rampSeconds = 0;
+    double spikeRate = 0;
+    int spikeAt = 0;
+    int spikeSeconds = 0;
+    // poisson: exponential inter-arrival times, uniform: evenly spaced
+    String arrival = "poisson";
+
+    // Users are drawn from [userStart, userStart + users), uniform or zipf (a few users retry a lot)
+    long userStart = 10000;
+    int users = 1000000;
+    String userDist = "uniform";
+    double zipfExponent = 1.0;
+    // goodsId[:weight] list, e.g. 1:9,2:1
+    String goods = "1";
+
+    int threads = 2000;
+    int timeoutMs = 5000;
+    // Send a per-user X-Forwarded-For, otherwise the per-IP rate limit rejects almost everything
+    boolean spoofIp = true;
+    // Max wait for Redis and DB stock to agree before checking invariants
+    int settleSeconds = 60;
+    // Directory for per-outcome .hgrm percentile distributions, empty to skip
+    String hgrmDir = "";
+    long seed = 42;
+
+    // TrafficReplayer: recording directory, replay speed (2 = twice as fast), longest replayed idle gap
+    String replayDir = "traffic";
+    double speed = 1.0;
+    long maxGapMs = 10000;
+
+    static LoadConfig parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        LoadConfig config = new LoadConfig();
+        config.baseUrl = values.getOrDefault("baseUrl", config.baseUrl);
+        config.duration = intValue(values, "duration", config.duration);
+        config.rate = doubleValue(values, "rate", config.rate);
+        config.startRate = doubleValue(values, "startRate", config.startRate);
+        config.rampSeconds = intValue(values, "rampSeconds", config.rampSeconds);
+        config.spikeRate = doubleValue(values, "spikeRate", config.spikeRate);
+        config.spikeAt = intValue(values, "spikeAt", config.spikeAt);
+        config.spikeSeconds = intValue(values, "spikeSeconds", config.spikeSeconds);
+        config.arrival = values.getOrDefault("arrival", config.arrival);
+        config.userStart = Long.parseLong(values.getOrDefault("userStart", "" + config.userStart));
+        config.users = intValue(values, "users", config.users);
+        config.userDist = values.getOrDefault("userDist", config.userDist);
+        config.zipfExponent = doubleValue(values, "zipfExponent", config.zipfExponent);
+        config.goods = values.getOrDefault("goods", config.goods);
+        config.threads = intValue(values, "threads", config.threads);
+        config.timeoutMs = intValue(values, "timeoutMs", config.timeoutMs);
+        config.spoofIp = Boolean.parseBoolean(values.getOrDefault("spoofIp", "" + config.spoofIp));
+        config.settleSeconds = intValue(values, "settleSeconds", config.settleSeconds);
+        config.hgrmDir = values.getOrDefault("hgrmDir", config.hgrmDir);
+        config.seed = Long.parseLong(values.getOrDefault("seed", "" + config.seed));
+        config.replayDir = values.getOrDefault("replayDir", config.replayDir);
+        config.speed = doubleValue(values, "speed", config.speed);
+        config.maxGapMs = Long.parseLong(values.getOrDefault("maxGapMs", "" + config.maxGapMs));
+        return config;
+    }
+
+    /**
+     * Target arrival rate at the given second of the run
+     */
+    double rateAt(double elapsedSeconds) {
+        if (spikeSeconds > 0 && elapsedSeconds >= spikeAt && elapsedSeconds < spikeAt + spikeSeconds) {
+            return spikeRate;
+        }
+        if (rampSeconds > 0 && elapsedSeconds < rampSeconds) {
+            return startRate + (rate - startRate) * elapsedSeconds / rampSeconds;
+        }
+        return rate;
+    }
+
+    /**
+     * Time of the next arrival: advance until the rate integrated from {@code elapsedSeconds} reaches
+     * {@code arrivals} (1 for evenly spaced arrivals, an Exp(1) draw for a Poisson process).
+     * Integrating in 1ms slices keeps ramps and spikes exact where 1 / rate(now) would overshoot them.
+     */
+    double nextArrival(double elapsedSeconds, double arrivals) {
+        double time = elapsedSeconds;
+        while (time < duration) {
+            // Rounding can put the boundary at or before time, always move forward
+            double sliceEnd = Math.max(Math.floor(time * 1000 + 1) / 1000, time + 1e-6);
+            double currentRate = rateAt(time);
+            double expected = currentRate * (sliceEnd - time);
+            if (expected >= arrivals) {
+                return time + arrivals / currentRate;
+            }
+            arrivals -= expected;
+            time = sliceEnd;
+        }
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder shape = new StringBuilder(String.format("%.0f req/s %s arrivals", rate, arrival));
+        if (rampSeconds > 0) {
+            shape.append(String.format(", ramp from %.0f over %ds", startRate, rampSeconds));
+        }
+        if (spikeSeconds > 0) {
+            shape.append(String.format(", spike to %.0f at %ds for %ds", spikeRate, spikeAt, spikeSeconds));
+        }
+        return String.format("%s for %ds: %s; %d %s users from %d, goods %s; %d threads, timeout %dms, seed %d",
+                baseUrl, duration, shape, users, userDist, userStart, goods, threads, timeoutMs, seed);
+    }
+
+    private static int intValue(Map<String, String> values, String name, int defaultValue) {
+        return values.containsKey(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+    }
+
+    private static double doubleValue(Map<String, String> values, String name, double defaultValue) {
+        return values.containsKey(name) ? Double.parseDouble(values.get(name)) : defaultValue;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.seckill.loadgen;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for POST /seckill/{userId}/{goodsId}.
+ *
+ * Arrivals follow a schedule computed from the configured rate shape, independent of how fast
+ * the server answers: a request whose turn has come is queued for a worker even when all workers
+ * are busy, and its latency is measured from the scheduled time. A closed loop (N threads sending
+ * back to back) slows down with the server and hides exactly the stalls a flash sale causes.
+ *
+ * Usage: java -jar target/loadgen.jar --rate=5000 --duration=60 --goods=1:9,2:1 [--name=value ...]
+ * Exits with 1 when a stock invariant is violated.
+ */
+public class LoadGenerator {
+
+    private static final long REPORT_INTERVAL_MS = 5000;
+    // Dispatches later than this mean the generator itself cannot sustain the rate
+    private static final long LATE_DISPATCH_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = LoadConfig.parse(args);
+        System.out.println("Load: " + config);
+
+        SeckillClient client = new SeckillClient(config);
+        KeyDistribution users = KeyDistribution.users(config.userStart, config.users, config.userDist, config.zipfExponent);
+        KeyDistribution goods = KeyDistribution.goods(config.goods);
+        InvariantChecker invariants = new InvariantChecker(client);
+        invariants.snapshot(goods.keys());
+
+        LatencyReport report = new LatencyReport();
+        Map<Long, LongAdder> successes = new ConcurrentHashMap<>();
+        AtomicInteger workerIndex = new AtomicInteger();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(config.threads, config.threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "loadgen-" + workerIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        workers.prestartAllCoreThreads();
+
+        long start = System.nanoTime();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        long[] lastReport = {start};
+        reporter.scheduleAtFixedRate(() -> {
+            long now = System.nanoTime();
+            report.interval(System.out, (now - start) / 1e9, (now - lastReport[0]) / 1e9, workers.getQueue().size());
+            lastReport[0] = now;
+        }, REPORT_INTERVAL_MS, REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        Random random = new Random(config.seed);
+        boolean poisson = "poisson".equals(config.arrival);
+        long scheduled = 0;
+        long late = 0;
+        double elapsed = config.nextArrival(0, poisson ? -Math.log(1 - random.nextDouble()) : 1);
+        while (elapsed < config.duration) {
+            long intended = start + (long) (elapsed * 1e9);
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (-wait > LATE_DISPATCH_NANOS) {
+                late++;
+            }
+
+            long userId = users.next(random);
+            long goodsId = goods.next(random);
+            workers.execute(new ScheduledRequest(intended, report, () -> client.seckill(userId, goodsId), outcome -> {
+                if (outcome == Outcome.SUCCESS) {
+                    successes.computeIfAbsent(goodsId, id -> new LongAdder()).increment();
+                }
+            }));
+            scheduled++;
+
+            elapsed = config.nextArrival(elapsed, poisson ? -Math.log(1 - random.nextDouble()) : 1);
+        }
+
+        int abandoned = ScheduledRequest.shutdown(workers, config.timeoutMs + REPORT_INTERVAL_MS, config.timeoutMs);
+        if (abandoned > 0) {
+            System.out.println("Workers still busy after the request timeout, " + abandoned + " queued requests recorded as errors");
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        reporter.shutdownNow();
+        report.interval(System.out, seconds, (System.nanoTime() - lastReport[0]) / 1e9, 0);
+
+        System.out.printf("%nScheduled %d requests in %.1fs (%.0f req/s)%n", scheduled, seconds, scheduled / seconds);
+        if (late > 0) {
+            System.out.printf("WARNING: %d dispatches were more than %dms late, the generator could not keep the schedule%n",
+                    late, TimeUnit.NANOSECONDS.toMillis(LATE_DISPATCH_NANOS));
+        }
+        report.print(System.out, seconds);
+        if (!config.hgrmDir.isEmpty()) {
+            report.writeDistributions(new File(config.hgrmDir));
+            System.out.println("Percentile distributions written to " + config.hgrmDir);
+        }
+
+        Map<Long, Long> successCounts = new ConcurrentHashMap<>();
+        successes.forEach((goodsId, count) -> successCounts.put(goodsId, count.sum()));
+        boolean ok = invariants.check(System.out, successCounts, config.settleSeconds);
+        System.out.println(ok ? "\nAll invariants hold" : "\nINVARIANT VIOLATED");
+        System.exit(ok ? 0 : 1);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.seckill.loadgen;
+
+/**
+ * Result class of one seckill request, from the HTTP status and the Result body
+ */
+enum Outcome {
+    SUCCESS,
+    SOLD_OUT,
+    RATE_LIMITED,
+    // Invalid request, activity not running, waiting room not admitted yet
+    REJECTED,
+    // Server error, timeout or connection failure
+    ERROR;
+
+    static Outcome of(int httpStatus, int code, String message) {
+        if (httpStatus == 429 || code == 429) {
+            return RATE_LIMITED;
+        }
+        if (httpStatus != 200) {
+            return ERROR;
+        }
+        switch (code) {
+            case 200:
+                return SUCCESS;
+            case 400:
+            case 403:
+                return REJECTED;
+            case 500:
+                // Same code for "sold out" and unexpected exceptions, only the message tells them apart
+                return message != null && message.contains("售罄") ? SOLD_OUT : ERROR;
+            default:
+                return ERROR;
+        }
+    }
+}
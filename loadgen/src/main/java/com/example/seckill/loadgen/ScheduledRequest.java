@@ -0,0 +1,70 @@
+package com.example.seckill.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * One request queued for a worker, with the time the schedule intended to send it.
+ *
+ * A request still queued when the run ends is recorded as an error with the response time it
+ * had accumulated by then. Dropping it would hide exactly the backlog an overloaded server
+ * builds up, the coordinated omission the open loop exists to avoid.
+ */
+class ScheduledRequest implements Runnable {
+
+    private final long intended;
+    private final LatencyReport report;
+    private final Supplier<Outcome> call;
+    private final Consumer<Outcome> completed;
+
+    ScheduledRequest(long intended, LatencyReport report, Supplier<Outcome> call, Consumer<Outcome> completed) {
+        this.intended = intended;
+        this.report = report;
+        this.call = call;
+        this.completed = completed;
+    }
+
+    @Override
+    public void run() {
+        long sent = System.nanoTime();
+        Outcome outcome = call.get();
+        long done = System.nanoTime();
+        report.record(outcome, done - intended, done - sent);
+        completed.accept(outcome);
+    }
+
+    /**
+     * Never sent: an error with the time spent queued, no service time
+     */
+    void abandon(long now) {
+        report.abandoned(now - intended);
+        completed.accept(Outcome.ERROR);
+    }
+
+    /**
+     * Let the workers drain their queue for up to drainMs, then record every request still queued
+     * as abandoned and wait for the ones in flight, which end within the request timeout
+     *
+     * @return the number of abandoned requests
+     */
+    static int shutdown(ThreadPoolExecutor workers, long drainMs, long timeoutMs) throws InterruptedException {
+        workers.shutdown();
+        if (workers.awaitTermination(drainMs, TimeUnit.MILLISECONDS)) {
+            return 0;
+        }
+        List<Runnable> queued = new ArrayList<>();
+        workers.getQueue().drainTo(queued);
+        long now = System.nanoTime();
+        for (Runnable request : queued) {
+            ((ScheduledRequest) request).abandon(now);
+        }
+        if (!workers.awaitTermination(timeoutMs * 2L, TimeUnit.MILLISECONDS)) {
+            workers.shutdownNow();
+        }
+        return queued.size();
+    }
+}
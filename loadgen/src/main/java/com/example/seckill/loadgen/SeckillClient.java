@@ -0,0 +1,113 @@
+package com.example.seckill.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Blocking HTTP client for the seckill, replayed and monitor endpoints, one keep-alive connection per worker thread
+ */
+class SeckillClient {
+
+    private final String baseUrl;
+    private final int timeoutMs;
+    private final boolean spoofIp;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    SeckillClient(LoadConfig config) {
+        this.baseUrl = config.baseUrl;
+        this.timeoutMs = config.timeoutMs;
+        this.spoofIp = config.spoofIp;
+        // Idle keep-alive connections kept by HttpURLConnection, default 5
+        System.setProperty("http.maxConnections", String.valueOf(config.threads));
+    }
+
+    Outcome seckill(long userId, long goodsId) {
+        return call("POST", "/seckill/" + userId + "/" + goodsId, userId);
+    }
+
+    /**
+     * Send one request and classify the answer, {@code userId} picks the spoofed client address
+     */
+    Outcome call(String method, String path, long userId) {
+        HttpURLConnection connection = null;
+        try {
+            connection = open(path);
+            connection.setRequestMethod(method);
+            if (spoofIp) {
+                connection.setRequestProperty("X-Forwarded-For", ipOf(userId));
+            }
+            if ("POST".equals(method)) {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(0);
+                connection.getOutputStream().close();
+            }
+
+            int status = connection.getResponseCode();
+            JsonNode body = readJson(connection, status);
+            return Outcome.of(status, body.path("code").asInt(status), body.path("message").asText(null));
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return Outcome.ERROR;
+        }
+    }
+
+    /**
+     * data of a GET on a monitor endpoint, null when the call fails
+     */
+    JsonNode get(String path) {
+        try {
+            HttpURLConnection connection = open(path);
+            int status = connection.getResponseCode();
+            JsonNode body = readJson(connection, status);
+            return status == 200 && body.path("code").asInt() == 200 ? body.path("data") : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setConnectTimeout(timeoutMs);
+        connection.setReadTimeout(timeoutMs);
+        return connection;
+    }
+
+    /**
+     * Read the whole body, also on error statuses, so the connection can be reused
+     */
+    private JsonNode readJson(HttpURLConnection connection, int status) throws IOException {
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (in == null) {
+            return objectMapper.createObjectNode();
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        try {
+            return objectMapper.readTree(new String(body.toByteArray(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return objectMapper.createObjectNode();
+        }
+    }
+
+    /**
+     * Stable private address per user, so per-IP limits behave like one client per user
+     */
+    private static String ipOf(long userId) {
+        return "10." + ((userId >> 16) & 0xff) + "." + ((userId >> 8) & 0xff) + "." + (userId & 0xff);
+    }
+}
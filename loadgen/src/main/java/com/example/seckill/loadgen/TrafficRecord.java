@@ -0,0 +1,107 @@
+package com.example.seckill.loadgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * One request captured by the server-side TrafficRecorder, see its javadoc for the 32 byte layout
+ */
+class TrafficRecord {
+
+    static final int SIZE = 32;
+
+    // TrafficRoute codes
+    static final byte SECKILL = 1;
+    static final byte SECKILL_RESULT = 2;
+    static final byte GOODS_LIST = 3;
+    static final byte GOODS_DETAIL = 4;
+    static final byte WAITING_ROOM_JOIN = 5;
+    static final byte WAITING_ROOM_STATUS = 6;
+    static final byte ORDER_LIST = 7;
+
+    private static final String[] ROUTE_NAMES = {
+            "unknown", "seckill", "seckill_result", "goods_list", "goods_detail",
+            "waiting_room_join", "waiting_room_status", "order_list"};
+
+    final long arrivalMicros;
+    final long userId;
+    final long goodsId;
+    final int latencyMicros;
+    final short status;
+    final byte route;
+    final byte outcome;
+
+    private TrafficRecord(ByteBuffer buffer, int offset) {
+        arrivalMicros = buffer.getLong(offset);
+        userId = buffer.getLong(offset + 8);
+        goodsId = buffer.getLong(offset + 16);
+        latencyMicros = buffer.getInt(offset + 24);
+        status = buffer.getShort(offset + 28);
+        route = buffer.get(offset + 30);
+        outcome = buffer.get(offset + 31);
+    }
+
+    /**
+     * Outcome the server recorded, null when it could not tell
+     */
+    Outcome recordedOutcome() {
+        switch (outcome) {
+            case 1:
+                return Outcome.SUCCESS;
+            case 2:
+                return Outcome.SOLD_OUT;
+            case 3:
+            case 4:
+                // rate limited, concurrency limited
+                return Outcome.RATE_LIMITED;
+            case 5:
+            case 6:
+                // rejected, invalid
+                return Outcome.REJECTED;
+            case 7:
+                return Outcome.ERROR;
+            default:
+                return null;
+        }
+    }
+
+    static String routeName(byte route) {
+        return route > 0 && route < ROUTE_NAMES.length ? ROUTE_NAMES[route] : ROUTE_NAMES[0];
+    }
+
+    /**
+     * Segment files of a recording directory, oldest first
+     */
+    static File[] segments(File dir) throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("traffic-") && name.endsWith(".bin"));
+        if (files == null || files.length == 0) {
+            throw new IOException("No traffic-*.bin recordings in " + dir.getAbsolutePath());
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Complete records of one segment sorted by arrival time, unused and half-written slots skipped
+     */
+    static List<TrafficRecord> read(File segment) throws IOException {
+        List<TrafficRecord> records = new ArrayList<>();
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "r")) {
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            for (int offset = 0; offset + SIZE <= buffer.limit(); offset += SIZE) {
+                if (buffer.getLong(offset) != 0) {
+                    records.add(new TrafficRecord(buffer, offset));
+                }
+            }
+        }
+        records.sort(Comparator.comparingLong(record -> record.arrivalMicros));
+        return records;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.seckill.loadgen;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a TrafficRecorder recording against a test deployment with the recorded timing.
+ *
+ * Every record is sent at its recorded offset from the first one divided by {@code --speed}
+ * (2 = twice as fast), open loop like LoadGenerator. Quiet periods longer than {@code --maxGapMs}
+ * (e.g. between two sales) are shortened to that length. Waiting room status polls are skipped,
+ * the ticket they carry is not recorded.
+ *
+ * Usage: java -cp target/loadgen.jar com.example.seckill.loadgen.TrafficReplayer
+ *        --replayDir=traffic --speed=1 --baseUrl=http://test-host:8080 [--name=value ...]
+ *
+ * Prints latency per route and outcome, and the outcome mix of the recording next to the replay's.
+ */
+public class TrafficReplayer {
+
+    private static final long HIGHEST_TRACKABLE = 3600L * 1000 * 1000;
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = LoadConfig.parse(args);
+        System.out.printf("Replay: %s at %.1fx against %s, %d threads%n", config.replayDir, config.speed, config.baseUrl, config.threads);
+
+        SeckillClient client = new SeckillClient(config);
+        Map<String, LatencyReport> reports = new TreeMap<>();
+        Map<String, RouteCounts> counts = new TreeMap<>();
+        AtomicInteger workerIndex = new AtomicInteger();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(config.threads, config.threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "replay-" + workerIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        workers.prestartAllCoreThreads();
+
+        long maxGapMicros = config.maxGapMs * 1000L;
+        long start = System.nanoTime();
+        long replayMicros = 0;
+        long previousMicros = -1;
+        long sent = 0;
+        long skipped = 0;
+        for (File segment : TrafficRecord.segments(new File(config.replayDir))) {
+            List<TrafficRecord> records = TrafficRecord.read(segment);
+            System.out.printf("%s: %d records%n", segment.getName(), records.size());
+            for (TrafficRecord record : records) {
+                if (previousMicros >= 0) {
+                    replayMicros += Math.min(record.arrivalMicros - previousMicros, maxGapMicros);
+                }
+                previousMicros = record.arrivalMicros;
+
+                String route = TrafficRecord.routeName(record.route);
+                RouteCounts routeCounts = counts.computeIfAbsent(route, name -> new RouteCounts());
+                routeCounts.recorded(record);
+                String method = methodOf(record.route);
+                String path = pathOf(record);
+                if (path == null) {
+                    skipped++;
+                    continue;
+                }
+
+                long intended = start + (long) (replayMicros * 1000 / config.speed);
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                LatencyReport report = reports.computeIfAbsent(route, name -> new LatencyReport());
+                workers.execute(new ScheduledRequest(intended, report, () -> client.call(method, path, record.userId),
+                        outcome -> routeCounts.replayed.get(outcome).increment()));
+                sent++;
+            }
+        }
+
+        int abandoned = ScheduledRequest.shutdown(workers, config.timeoutMs * 2L, config.timeoutMs);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%nReplayed %d requests in %.1fs (%.0f req/s), %d skipped%n", sent, seconds, sent / seconds, skipped);
+        if (abandoned > 0) {
+            System.out.printf("%d requests were still queued after the request timeout, recorded as errors%n", abandoned);
+        }
+
+        for (Map.Entry<String, LatencyReport> entry : reports.entrySet()) {
+            System.out.printf("%n== %s%n", entry.getKey());
+            LatencyReport report = entry.getValue();
+            report.drain();
+            report.print(System.out, seconds);
+            if (!config.hgrmDir.isEmpty()) {
+                report.writeDistributions(new File(config.hgrmDir, entry.getKey()));
+            }
+        }
+        printOutcomeMix(System.out, counts);
+    }
+
+    private static String methodOf(byte route) {
+        return route == TrafficRecord.SECKILL || route == TrafficRecord.WAITING_ROOM_JOIN ? "POST" : "GET";
+    }
+
+    /**
+     * Request path of a record, null when the route cannot be replayed
+     */
+    private static String pathOf(TrafficRecord record) {
+        switch (record.route) {
+            case TrafficRecord.SECKILL:
+                return "/seckill/" + record.userId + "/" + record.goodsId;
+            case TrafficRecord.SECKILL_RESULT:
+                return "/seckill/result/" + record.userId + "/" + record.goodsId;
+            case TrafficRecord.GOODS_LIST:
+                return "/goods/list";
+            case TrafficRecord.GOODS_DETAIL:
+                return "/goods/detail/" + record.goodsId;
+            case TrafficRecord.WAITING_ROOM_JOIN:
+                return "/waiting-room/" + record.userId + "/" + record.goodsId;
+            case TrafficRecord.ORDER_LIST:
+                return "/order/list/" + record.userId;
+            default:
+                return null;
+        }
+    }
+
+    private static void printOutcomeMix(PrintStream out, Map<String, RouteCounts> counts) {
+        out.println();
+        out.println("Outcome mix, recorded -> replayed (server latency p50/p99 as recorded, ms)");
+        for (Map.Entry<String, RouteCounts> entry : counts.entrySet()) {
+            RouteCounts routeCounts = entry.getValue();
+            StringBuilder line = new StringBuilder();
+            for (Outcome outcome : Outcome.values()) {
+                line.append(String.format("  %s %d -> %d", outcome.name().toLowerCase(),
+                        routeCounts.recorded.get(outcome).sum(), routeCounts.replayed.get(outcome).sum()));
+            }
+            out.printf("%-20s p50 %.2f p99 %.2f%s%n", entry.getKey(),
+                    routeCounts.recordedLatency.getValueAtPercentile(50) / 1000.0,
+                    routeCounts.recordedLatency.getValueAtPercentile(99) / 1000.0, line);
+        }
+    }
+
+    private static class RouteCounts {
+        private final Map<Outcome, LongAdder> recorded = new EnumMap<>(Outcome.class);
+        private final Map<Outcome, LongAdder> replayed = new EnumMap<>(Outcome.class);
+        private final Histogram recordedLatency = new Histogram(HIGHEST_TRACKABLE, 3);
+
+        RouteCounts() {
+            for (Outcome outcome : Outcome.values()) {
+                recorded.put(outcome, new LongAdder());
+                replayed.put(outcome, new LongAdder());
+            }
+        }
+
+        void recorded(TrafficRecord record) {
+            Outcome outcome = record.recordedOutcome();
+            if (outcome != null) {
+                recorded.get(outcome).increment();
+            }
+            recordedLatency.recordValue(Math.min(HIGHEST_TRACKABLE, Math.max(0, record.latencyMicros)));
+        }
+    }
+}
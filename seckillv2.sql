@@ -97,7 +97,8 @@ CREATE TABLE `seckill_order`  (
   `transaction_id` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL,
   PRIMARY KEY (`id`) USING BTREE,
   INDEX `idx_order_no`(`order_no`) USING BTREE,
-  INDEX `idx_transaction_id`(`transaction_id`) USING BTREE
+  INDEX `idx_transaction_id`(`transaction_id`) USING BTREE,
+  INDEX `idx_user_order`(`user_id`, `id`, `goods_id`, `order_no`, `status`, `create_time`, `pay_amount`) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 3591217 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci COMMENT = '秒杀订单表' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
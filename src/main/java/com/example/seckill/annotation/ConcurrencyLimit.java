@@ -0,0 +1,20 @@
+package com.example.seckill.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ConcurrencyLimit {
+    /**
+     * Limiter name, methods with the same name share one adaptive limit
+     */
+    String value();
+
+    /**
+     * Rejection prompt message
+     */
+    String message() default "系统繁忙，请稍后再试";
+}
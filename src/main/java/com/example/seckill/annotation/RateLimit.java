@@ -33,6 +33,11 @@ public @interface RateLimit {
      */
     int tokens() default 1;
     
+    /**
+     * Rate limiting algorithm
+     */
+    Algorithm algorithm() default Algorithm.TOKEN_BUCKET;
+
     /**
      * Rate limit prompt message
      */
@@ -57,4 +62,20 @@ public @interface RateLimit {
          */
         GLOBAL
     }
-}
\ No newline at end of file
+
+    /**
+     * Rate limit algorithm enumeration
+     */
+    enum Algorithm {
+        /**
+         * Token bucket stored as a hash (tokens, timestamp), uses the caller's clock
+         */
+        TOKEN_BUCKET,
+
+        /**
+         * Generic cell rate algorithm: one integer per key, Redis server time,
+         * keys expire by themselves after the burst window
+         */
+        GCRA
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.seckill.aspect;
+
+import com.example.seckill.annotation.ConcurrencyLimit;
+import com.example.seckill.exception.ConcurrencyLimitException;
+import com.example.seckill.jfr.JfrSupport;
+import com.example.seckill.jfr.RateLimitRejectionEvent;
+import com.example.seckill.limit.AdaptiveConcurrencyLimiter;
+import com.example.seckill.limit.ConcurrencyLimiterRegistry;
+import com.example.seckill.metrics.SeckillMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sheds load before any other advice runs: the adaptive limit covers the rate limiter's
+ * Redis calls as well as the request itself, so it shrinks as soon as any dependency slows down.
+ */
+@Aspect
+@Component
+@Order(1)
+@Slf4j
+public class ConcurrencyLimitAspect {
+
+    @Autowired
+    private ConcurrencyLimiterRegistry limiterRegistry;
+
+    @Autowired
+    private SeckillMetrics metrics;
+
+    @Around("@annotation(concurrencyLimit)")
+    public Object limit(ProceedingJoinPoint point, ConcurrencyLimit concurrencyLimit) throws Throwable {
+        if (!limiterRegistry.isEnabled()) {
+            return point.proceed();
+        }
+
+        AdaptiveConcurrencyLimiter limiter = limiterRegistry.get(concurrencyLimit.value());
+        if (!limiter.tryAcquire()) {
+            metrics.getConcurrencyLimitRejections().increment();
+            long retryAfter = limiterRegistry.getRetryAfterSeconds();
+            if (JfrSupport.AVAILABLE) {
+                RateLimitRejectionEvent.emit(limiter.getName(), retryAfter * 1000, SeckillMetrics.CONCURRENCY_LIMITED);
+            }
+            log.warn("Concurrency limit {} reached, limit: {}, retry after {}s",
+                    limiter.getName(), limiter.getLimit(), retryAfter);
+            throw new ConcurrencyLimitException(concurrencyLimit.message(), retryAfter);
+        }
+
+        long start = System.nanoTime();
+        try {
+            return point.proceed();
+        } finally {
+            limiter.release(System.nanoTime() - start);
+        }
+    }
+}
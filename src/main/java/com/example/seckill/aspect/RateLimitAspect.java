@@ -2,19 +2,29 @@ package com.example.seckill.aspect;
 
 import com.example.seckill.annotation.RateLimit;
 import com.example.seckill.exception.RateLimitException;
-import com.example.seckill.limit.RedisRateLimiter;
+import com.example.seckill.jfr.JfrSupport;
+import com.example.seckill.jfr.RateLimitRejectionEvent;
+import com.example.seckill.limit.HierarchicalRateLimiter;
+import com.example.seckill.limit.RateLimitDescriptor;
+import com.example.seckill.metrics.SeckillMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 @Aspect
 @Component
@@ -22,86 +32,86 @@ import java.lang.reflect.Method;
 public class RateLimitAspect {
 
     @Autowired
-    private RedisRateLimiter redisRateLimiter;
-    
-    private static final String RATE_LIMIT_PREFIX = "rate_limit:";
-
-    @Before("@annotation(com.example.seckill.annotation.RateLimit)")
-    public void rateLimit(JoinPoint point) {
-        MethodSignature signature = (MethodSignature) point.getSignature();
-        Method method = signature.getMethod();
-        
-        // Get annotation information
-        RateLimit rateLimit = method.getAnnotation(RateLimit.class);
-        if (rateLimit == null) {
-            return;
-        }
-        
+    private HierarchicalRateLimiter rateLimiter;
+
+    @Autowired
+    private SeckillMetrics metrics;
+
+    /**
+     * Whether the service sits behind a proxy that sets X-Forwarded-For.
+     * If not, those headers are client controlled and only the socket address is used.
+     */
+    @Value("${seckill.rate-limit.trusted-proxy:true}")
+    private boolean trustedProxy;
+
+    // Descriptors are built on the first call of each annotated method
+    private final Map<Method, RateLimitDescriptor> descriptors = new ConcurrentHashMap<>();
+
+    private Function<HttpServletRequest, String> clientIpResolver = RateLimitAspect::getProxiedClientIp;
+
+    @PostConstruct
+    public void init() {
+        clientIpResolver = trustedProxy ? RateLimitAspect::getProxiedClientIp : HttpServletRequest::getRemoteAddr;
+        log.info("Rate limit client IP resolved from {}", trustedProxy ? "proxy headers" : "remote address");
+    }
+
+    @Before("@annotation(rateLimit)")
+    public void rateLimit(JoinPoint point, RateLimit rateLimit) {
+        Method method = ((MethodSignature) point.getSignature()).getMethod();
+        RateLimitDescriptor descriptor = getDescriptor(method, rateLimit);
+
         // Build rate limit key
-        String key = buildRateLimitKey(rateLimit, point);
-        
-        // Retrieve rate limiting parameters
-        double rate = rateLimit.rate();
-        int capacity = rateLimit.capacity();
-        int tokens = rateLimit.tokens();
-        
-        // Execute token bucket rate limiting logic
-        long waitTime = redisRateLimiter.tryAcquireWithWaitTime(key, rate, capacity, tokens);
-        
+        String key = buildRateLimitKey(descriptor, point.getArgs());
+
+        // Execute token bucket rate limiting logic (local share first, Redis when exhausted)
+        long waitTime = rateLimiter.tryAcquireWithWaitTime(descriptor, key);
+
         if (waitTime > 0) {
             // Token acquisition failed, waiting is required
-            String message = rateLimit.message();
+            String message = descriptor.getMessage();
             if (waitTime > 1000) {
                 // If wait time exceeds 1 second, append the wait time to the message
                 message += "，需等待" + (waitTime / 1000) + "秒";
             }
             log.warn("Rate limit exceeded for key: {}, wait time: {} ms", key, waitTime);
-            throw new RateLimitException(message);
+            metrics.getRateLimitRejections().increment();
+            if (JfrSupport.AVAILABLE) {
+                RateLimitRejectionEvent.emit(key, waitTime, SeckillMetrics.RATE_LIMITED);
+            }
+            // Rounded up, a client retrying after a truncated wait would be rejected again
+            throw new RateLimitException(message, (waitTime + 999) / 1000);
+        }
+    }
+
+    RateLimitDescriptor getDescriptor(Method method, RateLimit rateLimit) {
+        RateLimitDescriptor descriptor = descriptors.get(method);
+        if (descriptor == null) {
+            descriptor = descriptors.computeIfAbsent(method, m -> new RateLimitDescriptor(m, rateLimit));
         }
+        return descriptor;
     }
-    
+
     /**
-     * Build the rate limiting key
+     * Build the rate limiting key: the precomputed prefix plus the rate limit object identifier
      */
-    private String buildRateLimitKey(RateLimit rateLimit, JoinPoint point) {
-        StringBuilder key = new StringBuilder(RATE_LIMIT_PREFIX);
-        
-        // Add custom key prefix
-        if (!rateLimit.key().isEmpty()) {
-            key.append(rateLimit.key()).append(":");
-        } else {
-            // If key is not specified, use the method's fully qualified name
-            key.append(point.getSignature().getDeclaringTypeName())
-               .append(".")
-               .append(point.getSignature().getName())
-               .append(":");
-        }
-        
-        // Append rate limit object identifier based on the rate limit type
-        switch (rateLimit.type()) {
+    String buildRateLimitKey(RateLimitDescriptor descriptor, Object[] args) {
+        switch (descriptor.getType()) {
             case USER:
                 // Here, it is assumed that the userId in PathVariable is the first parameter
-                key.append("user:").append(point.getArgs()[0]);
-                break;
+                return descriptor.keyFor(args[0]);
             case IP:
-                HttpServletRequest request = ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes()).getRequest();
-                String ip = getClientIp(request);
-                key.append("ip:").append(ip);
-                break;
-            case GLOBAL:
-                key.append("global");
-                break;
+                RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+                HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+                return descriptor.keyFor(clientIpResolver.apply(request));
             default:
-                key.append("global");
+                return descriptor.keyFor(null);
         }
-        
-        return key.toString();
     }
-    
+
     /**
-     * Get client IP address
+     * Get client IP address, trusting the headers set by the reverse proxy
      */
-    private String getClientIp(HttpServletRequest request) {
+    private static String getProxiedClientIp(HttpServletRequest request) {
         String ip = request.getHeader("X-Forwarded-For");
         if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
             ip = request.getHeader("Proxy-Client-IP");
@@ -114,4 +124,4 @@ public class RateLimitAspect {
         }
         return ip;
     }
-}
\ No newline at end of file
+}
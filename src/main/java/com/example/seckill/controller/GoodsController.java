@@ -48,9 +48,9 @@ public class GoodsController {
     }
     
     /**
-     * 计算秒杀状态和倒计时
+     * 计算秒杀状态和倒计时（包可见，供基准测试调用）
      */
-    private void calculateSeckillStatus(GoodsVo goods, Date now) {
+    static void calculateSeckillStatus(GoodsVo goods, Date now) {
         // 秒杀状态
         int remainSeconds;
         
@@ -0,0 +1,216 @@
+package com.example.seckill.controller;
+
+import com.example.seckill.entity.SeckillGoods;
+import com.example.seckill.limit.ConcurrencyLimiterRegistry;
+import com.example.seckill.limit.HierarchicalRateLimiter;
+import com.example.seckill.limit.StockAdmissionLimiter;
+import com.example.seckill.metrics.StageTimer;
+import com.example.seckill.metrics.StatementMetricsInterceptor;
+import com.example.seckill.redis.LuaScriptRegistry;
+import com.example.seckill.recorder.TrafficRecorder;
+import com.example.seckill.redis.RedisCommandBatcher;
+import com.example.seckill.service.GoodsService;
+import com.example.seckill.service.IncrementalStockReconciler;
+import com.example.seckill.service.OrderService;
+import com.example.seckill.service.PipelineLagTracker;
+import com.example.seckill.service.RedisService;
+import com.example.seckill.service.SeckillPreheatService;
+import com.example.seckill.service.WaitingRoomService;
+import com.example.seckill.utils.DistributedLockFactory;
+import com.example.seckill.vo.Result;
+import com.example.seckill.vo.StockSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/monitor")
+public class MonitorController {
+
+    @Autowired
+    private LuaScriptRegistry luaScriptRegistry;
+
+    @Autowired
+    private RedisCommandBatcher redisCommandBatcher;
+
+    @Autowired
+    private HierarchicalRateLimiter hierarchicalRateLimiter;
+
+    @Autowired
+    private ConcurrencyLimiterRegistry concurrencyLimiterRegistry;
+
+    @Autowired
+    private StockAdmissionLimiter stockAdmissionLimiter;
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    @Autowired
+    private SeckillPreheatService seckillPreheatService;
+
+    @Autowired
+    private DistributedLockFactory distributedLockFactory;
+
+    @Autowired
+    private IncrementalStockReconciler incrementalStockReconciler;
+
+    @Autowired
+    private TrafficRecorder trafficRecorder;
+
+    @Autowired
+    private StageTimer stageTimer;
+
+    @Autowired
+    private StatementMetricsInterceptor statementMetricsInterceptor;
+
+    @Autowired
+    private PipelineLagTracker pipelineLagTracker;
+
+    @Autowired
+    private GoodsService goodsService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private RedisService redisService;
+
+    /**
+     * Lua脚本调用次数与耗时
+     */
+    @GetMapping("/scripts")
+    public Result<Map<String, Map<String, Object>>> scripts() {
+        return Result.success(luaScriptRegistry.getStats());
+    }
+
+    /**
+     * Redis命令合并批次统计
+     */
+    @GetMapping("/redis-batch")
+    public Result<Map<String, Object>> redisBatch() {
+        return Result.success(redisCommandBatcher.getStats());
+    }
+
+    /**
+     * 本地限流与Redis限流的命中统计
+     */
+    @GetMapping("/rate-limit")
+    public Result<Map<String, Object>> rateLimit() {
+        return Result.success(hierarchicalRateLimiter.getStats());
+    }
+
+    /**
+     * 自适应并发限制的当前上限、在途请求数与拒绝次数
+     */
+    @GetMapping("/concurrency")
+    public Result<Map<String, Object>> concurrency() {
+        return Result.success(concurrencyLimiterRegistry.getStats());
+    }
+
+    /**
+     * 按剩余库存放行的准入统计
+     */
+    @GetMapping("/admission")
+    public Result<Map<String, Object>> admission() {
+        return Result.success(stockAdmissionLimiter.getStats());
+    }
+
+    /**
+     * 排队室已发放排队号、放行水位与当前波次大小
+     */
+    @GetMapping("/waiting-room")
+    public Result<Map<String, Object>> waitingRoom() {
+        return Result.success(waitingRoomService.getStats());
+    }
+
+    /**
+     * 预热就绪检查：即将开始的秒杀活动全部预热完成前返回503
+     */
+    @GetMapping("/preheat")
+    public ResponseEntity<Result<Map<String, Object>>> preheat() {
+        HttpStatus status = seckillPreheatService.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).body(Result.success(seckillPreheatService.getStatus()));
+    }
+
+    /**
+     * 分布式锁获取次数、等待次数、超时次数与等待/持有耗时
+     */
+    @GetMapping("/locks")
+    public Result<Map<String, Object>> locks() {
+        return Result.success(distributedLockFactory.getStats());
+    }
+
+    /**
+     * 库存变动流读取事件数、待对账商品数与增量对账发现的不一致次数
+     */
+    @GetMapping("/stock-stream")
+    public Result<Map<String, Object>> stockStream() {
+        return Result.success(incrementalStockReconciler.getStats());
+    }
+
+    /**
+     * 流量录制的记录数、文件轮转次数与当前文件使用量
+     */
+    @GetMapping("/traffic-recorder")
+    public Result<Map<String, Object>> trafficRecorder() {
+        return Result.success(trafficRecorder.getStats());
+    }
+
+    /**
+     * 秒杀请求各阶段耗时分布（最近seconds秒）与最慢请求的完整阶段时间线
+     */
+    @GetMapping("/stages")
+    public Result<Map<String, Object>> stages(@RequestParam(value = "seconds", defaultValue = "10") int seconds) {
+        return Result.success(stageTimer.getStats(seconds));
+    }
+
+    /**
+     * 各Mapper语句的执行次数、平均/最大耗时、平均行数、连接等待与慢执行次数
+     */
+    @GetMapping("/sql")
+    public Result<Map<String, Object>> sql() {
+        return Result.success(statementMetricsInterceptor.getStats());
+    }
+
+    /**
+     * 扣减链路各阶段延迟（Redis预扣 -> 消息提交 -> 消费者接收 -> DB扣减）与各商品在途预扣数、最老在途预扣的等待时长
+     */
+    @GetMapping("/pipeline-lag")
+    public Result<Map<String, Object>> pipelineLag() {
+        return Result.success(pipelineLagTracker.getStats());
+    }
+
+    /**
+     * 单个商品的库存全貌：总库存、DB库存、Redis库存、预扣库存与订单数，用于压测后的不变量校验
+     */
+    @GetMapping("/stock/{goodsId}")
+    public Result<Map<String, Object>> stock(@PathVariable("goodsId") Long goodsId) {
+        List<SeckillGoods> stocks = goodsService.listStocksByGoodsIds(Collections.singletonList(goodsId));
+        if (stocks.isEmpty()) {
+            return Result.error(404, "商品不存在");
+        }
+        SeckillGoods stock = stocks.get(0);
+        StockSnapshot snapshot = redisService.getStockSnapshots(Collections.singletonList(goodsId)).get(goodsId);
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("goodsId", goodsId);
+        data.put("totalStock", stock.getTotalStock());
+        data.put("dbStock", stock.getStockCount());
+        data.put("redisStock", snapshot.getRedisStock());
+        data.put("reservedStock", snapshot.getReservedStock());
+        data.put("orders", orderService.countOrdersByGoodsId(goodsId));
+        data.put("consistent", snapshot.getRedisStock() != null
+                && snapshot.getRedisStock() + snapshot.getReservedStock() == stock.getStockCount());
+        return Result.success(data);
+    }
+}
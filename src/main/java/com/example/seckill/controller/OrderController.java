@@ -1,6 +1,7 @@
 package com.example.seckill.controller;
 
 import com.example.seckill.service.OrderService;
+import com.example.seckill.vo.OrderPageVo;
 import com.example.seckill.vo.OrderVo;
 import com.example.seckill.vo.Result;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,12 +27,28 @@ public class OrderController {
         return Result.success(order);
     }
 
+    private static final int MAX_PAGE_SIZE = 50;
+
     /**
-     * 获取用户所有订单
+     * 获取用户所有订单（不分页，订单多的用户请使用 /order/page）
      */
     @GetMapping("/list/{userId}")
     public Result<List<OrderVo>> getOrderList(@PathVariable("userId") Long userId) {
         List<OrderVo> orders = orderService.getOrdersByUserId(userId);
         return Result.success(orders);
     }
+
+    /**
+     * 游标分页获取用户订单，按下单先后倒序；首页不传cursor，之后传上一页返回的nextCursor
+     */
+    @GetMapping("/page/{userId}")
+    public Result<OrderPageVo> getOrderPage(
+            @PathVariable("userId") Long userId,
+            @RequestParam(value = "cursor", required = false) Long cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            return Result.error(400, "每页条数需在1到" + MAX_PAGE_SIZE + "之间");
+        }
+        return Result.success(orderService.getOrderPage(userId, cursor, size));
+    }
 }
\ No newline at end of file
@@ -1,10 +1,16 @@
 package com.example.seckill.controller;
 
+import com.example.seckill.annotation.ConcurrencyLimit;
 import com.example.seckill.annotation.RateLimit;
 import com.example.seckill.entity.SeckillOrder;
+import com.example.seckill.exception.GlobalException;
+import com.example.seckill.metrics.SeckillMetrics;
+import com.example.seckill.metrics.StageTimer;
+import com.example.seckill.recorder.TrafficRecorder;
 import com.example.seckill.service.GoodsService;
 import com.example.seckill.service.OrderService;
 import com.example.seckill.service.SeckillService;
+import com.example.seckill.service.WaitingRoomService;
 import com.example.seckill.vo.GoodsVo;
 import com.example.seckill.vo.Result;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,10 +34,20 @@ public class SeckillController {
     @Resource(name = "seckillServiceImplv3")
     private SeckillService seckillService;
 
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    @Autowired
+    private SeckillMetrics metrics;
+
+    @Autowired
+    private StageTimer stageTimer;
+
     /**
      * 执行秒杀
      */
     @PostMapping("/{userId}/{goodsId}")
+    @ConcurrencyLimit("seckill")
     @RateLimit(
         key = "seckill", 
         type = RateLimit.RateLimitType.IP, 
@@ -42,15 +58,35 @@ public class SeckillController {
     )
     public Result<String> seckill(
             @PathVariable("userId") Long userId,
-            @PathVariable("goodsId") Long goodsId) {
+            @PathVariable("goodsId") Long goodsId,
+            @RequestParam(value = "ticket", required = false) String ticket) {
+        long start = System.nanoTime();
+        String outcome = SeckillMetrics.ERROR;
+        stageTimer.begin(userId, goodsId);
+        try {
+            Result<String> result = doSeckill(userId, goodsId, ticket);
+            outcome = outcomeOf(result);
+            return result;
+        } catch (GlobalException e) {
+            outcome = e.getCode() == 429 ? SeckillMetrics.REJECTED : SeckillMetrics.ERROR;
+            throw e;
+        } finally {
+            metrics.getRequest().record(outcome, start);
+            stageTimer.end(outcome);
+            TrafficRecorder.markOutcome(outcome);
+        }
+    }
 
+    private Result<String> doSeckill(Long userId, Long goodsId, String ticket) {
         // 1. 判断用户是否存在（实际项目中应该在登录时验证）
         if (userId <= 0) {
             return Result.error(400, "用户不存在");
         }
 
-        // 2. 判断商品是否存在
-        GoodsVo goods = goodsService.getGoodsVoByGoodsId(goodsId);
+        // 2. 判断商品是否存在（本地缓存，活动开始前已预热）
+        long lookupStart = stageTimer.start();
+        GoodsVo goods = goodsService.getGoodsVoFromCache(goodsId);
+        stageTimer.stop(StageTimer.Stage.GOODS_LOOKUP, lookupStart);
         if (goods == null) {
             return Result.error(400, "商品不存在");
         }
@@ -64,6 +100,11 @@ public class SeckillController {
             return Result.error(400, "秒杀已结束");
         }
 
+        // 开启排队时，只放行排队号已轮到的用户
+        if (waitingRoomService.isEnabled() && !waitingRoomService.isAdmitted(userId, goodsId, ticket)) {
+            return Result.error(403, "尚未轮到您，请继续排队");
+        }
+
         // 4. 执行秒杀
         SeckillOrder seckillOrder = seckillService.seckill(userId, goods);
         if (seckillOrder == null) {
@@ -73,6 +114,22 @@ public class SeckillController {
         return Result.success("秒杀成功，订单号：" + seckillOrder.getTransactionId());
     }
 
+    /**
+     * 按返回码归类请求结果，用于监控标签
+     */
+    private static String outcomeOf(Result<String> result) {
+        switch (result.getCode()) {
+            case 200:
+                return SeckillMetrics.SUCCESS;
+            case 400:
+                return SeckillMetrics.INVALID;
+            case 403:
+                return SeckillMetrics.REJECTED;
+            default:
+                return SeckillMetrics.SOLD_OUT;
+        }
+    }
+
     /**
      * 获取秒杀结果
      */
@@ -0,0 +1,61 @@
+package com.example.seckill.controller;
+
+import com.example.seckill.service.GoodsService;
+import com.example.seckill.service.WaitingRoomService;
+import com.example.seckill.vo.GoodsVo;
+import com.example.seckill.vo.Result;
+import com.example.seckill.vo.WaitingRoomStatus;
+import com.example.seckill.vo.WaitingRoomTicket;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Date;
+
+@RestController
+@RequestMapping("/waiting-room")
+public class WaitingRoomController {
+
+    @Autowired
+    private GoodsService goodsService;
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    /**
+     * 进入排队，重复调用返回同一个排队号
+     */
+    @PostMapping("/{userId}/{goodsId}")
+    public Result<WaitingRoomTicket> join(
+            @PathVariable("userId") Long userId,
+            @PathVariable("goodsId") Long goodsId) {
+        if (!waitingRoomService.isEnabled()) {
+            return Result.error(400, "未开启排队");
+        }
+        if (userId <= 0) {
+            return Result.error(400, "用户不存在");
+        }
+        GoodsVo goods = goodsService.getGoodsVoFromCache(goodsId);
+        if (goods == null) {
+            return Result.error(400, "商品不存在");
+        }
+        if (new Date().after(goods.getEndTime())) {
+            return Result.error(400, "秒杀已结束");
+        }
+        return Result.success(waitingRoomService.join(userId, goods));
+    }
+
+    /**
+     * 查询排队进度（仅读取本地缓存的放行水位）
+     */
+    @GetMapping("/{userId}/{goodsId}")
+    public Result<WaitingRoomStatus> status(
+            @PathVariable("userId") Long userId,
+            @PathVariable("goodsId") Long goodsId,
+            @RequestParam("ticket") String ticket) {
+        WaitingRoomStatus status = waitingRoomService.getStatus(userId, goodsId, ticket);
+        if (status == null) {
+            return Result.error(400, "排队凭证无效");
+        }
+        return Result.success(status);
+    }
+}
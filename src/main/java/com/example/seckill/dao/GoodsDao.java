@@ -4,6 +4,8 @@ import com.example.seckill.entity.SeckillGoods;
 import com.example.seckill.vo.GoodsVo;
 import org.apache.ibatis.annotations.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 @Repository
@@ -19,6 +21,18 @@ public interface GoodsDao {
      */
     GoodsVo getGoodsVoByGoodsId(@Param("goodsId") Long goodsId);
 
+    /**
+     * 获取在[from, to]时间段内开始或仍在进行中的秒杀商品
+     */
+    List<GoodsVo> listUpcomingGoodsVo(@Param("from") Date from, @Param("to") Date to);
+
+    /**
+     * 获取结束时间晚于since的秒杀商品库存（仅goods_id、stock_count、total_stock），用于批量对账
+     */
+    List<SeckillGoods> listActiveStocks(@Param("since") Date since);
+
+    List<SeckillGoods> listStocksByGoodsIds(@Param("goodsIds") Collection<Long> goodsIds);
+
     SeckillGoods getStock(@Param("seckillGoodsId") Long seckillGoodsId);
 
     int updateStock(@Param("seckillGoodsId") Long seckillGoodsId);
@@ -29,6 +29,11 @@ public interface OrderDao {
      */
     List<OrderVo> getOrdersByUserId(@Param("userId") Long userId);
 
+    /**
+     * 按(user_id, id)游标分页获取用户订单，id倒序；cursor为空时取第一页，goods相关字段不填充
+     */
+    List<OrderVo> getOrderPageByUserId(@Param("userId") Long userId, @Param("cursor") Long cursor, @Param("limit") int limit);
+
     Integer countOrdersByGoodsId(long goodsId);
 
     SeckillOrder getOrderByTransactionId(String transactionId);
@@ -0,0 +1,19 @@
+package com.example.seckill.exception;
+
+import lombok.Getter;
+
+@Getter
+public class ConcurrencyLimitException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Seconds the client should wait before retrying, sent as Retry-After
+     */
+    private final long retryAfterSeconds;
+
+    public ConcurrencyLimitException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
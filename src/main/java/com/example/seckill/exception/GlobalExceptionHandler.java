@@ -1,14 +1,18 @@
 
 package com.example.seckill.exception;
 
+import com.example.seckill.metrics.SeckillMetrics;
+import com.example.seckill.recorder.TrafficRecorder;
 import com.example.seckill.vo.Result;
 
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindException;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.annotation.ExceptionHandler;
-import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import java.util.List;
 
@@ -29,12 +33,26 @@ public class GlobalExceptionHandler {
     }
 
     @ExceptionHandler(RateLimitException.class)
-    @ResponseBody
-    public Result<Void> handleRateLimitException(RateLimitException e) {
+    public ResponseEntity<Result<Void>> handleRateLimitException(RateLimitException e) {
         log.warn("Rate limit exception: {}", e.getMessage());
-        return Result.error(429, e.getMessage());
+        TrafficRecorder.markOutcome(SeckillMetrics.RATE_LIMITED);
+        // Same answer as a concurrency limit rejection, the body keeps code 429 for existing clients
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS);
+        if (e.getRetryAfterSeconds() > 0) {
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        }
+        return response.body(Result.error(429, e.getMessage()));
     }
     
+    @ExceptionHandler(ConcurrencyLimitException.class)
+    public ResponseEntity<Result<Void>> handleConcurrencyLimitException(ConcurrencyLimitException e) {
+        TrafficRecorder.markOutcome(SeckillMetrics.CONCURRENCY_LIMITED);
+        // Real 429 so clients and proxies honour Retry-After instead of retrying at once
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Result.error(429, e.getMessage()));
+    }
+
     @ExceptionHandler(Exception.class)
     public Result<String> handleException(Exception e) {
         e.printStackTrace();
@@ -1,8 +1,23 @@
 package com.example.seckill.exception;
 
+import lombok.Getter;
+
+@Getter
 public class RateLimitException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Seconds the client should wait before retrying, sent as Retry-After (0: no header)
+     */
+    private final long retryAfterSeconds;
     
     public RateLimitException(String message) {
+        this(message, 0);
+    }
+
+    public RateLimitException(String message, long retryAfterSeconds) {
         super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
     }
-}
\ No newline at end of file
+}
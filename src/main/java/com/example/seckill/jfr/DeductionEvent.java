@@ -0,0 +1,36 @@
+package com.example.seckill.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("seckill.Deduction")
+@Label("Stock Deduction")
+@Description("decrease_stock script run for one seckill attempt")
+@Category("Seckill")
+@StackTrace(false)
+@Threshold("5 ms")
+public class DeductionEvent extends Event {
+
+    @Label("Goods Id")
+    long goodsId;
+
+    @Label("Outcome")
+    String outcome;
+
+    /**
+     * End the event and commit it when it is enabled and over the threshold
+     */
+    public void commit(long goodsId, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.goodsId = goodsId;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
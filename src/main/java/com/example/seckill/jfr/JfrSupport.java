@@ -0,0 +1,23 @@
+package com.example.seckill.jfr;
+
+/**
+ * Whether this JVM has jdk.jfr. The events in this package extend jdk.jfr.Event and fail to load
+ * on a JDK 8 older than 8u272, so callers only create or emit them when {@link #AVAILABLE} is true.
+ * This class itself must not reference jdk.jfr.
+ */
+public final class JfrSupport {
+
+    public static final boolean AVAILABLE = isAvailable();
+
+    private JfrSupport() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, JfrSupport.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.seckill.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("seckill.MqSend")
+@Label("MQ Half Message Send")
+@Description("Transactional stock reduction message send, including the local transaction run inline")
+@Category("Seckill")
+@StackTrace(false)
+@Threshold("20 ms")
+public class MqSendEvent extends Event {
+
+    @Label("Goods Id")
+    long goodsId;
+
+    @Label("Transaction Id")
+    String transactionId;
+
+    @Label("Outcome")
+    String outcome;
+
+    /**
+     * End the event and commit it when it is enabled and over the threshold
+     */
+    public void commit(long goodsId, String transactionId, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.goodsId = goodsId;
+            this.transactionId = transactionId;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.seckill.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Instant event, committed for every rejection while enabled (no threshold applies)
+ */
+@Name("seckill.RateLimitRejection")
+@Label("Rate Limit Rejection")
+@Description("Request turned away by the rate limit or the adaptive concurrency limit")
+@Category("Seckill")
+@StackTrace(false)
+public class RateLimitRejectionEvent extends Event {
+
+    @Label("Limiter")
+    @Description("Rate limit key, or the concurrency limiter name")
+    String limiter;
+
+    @Label("Wait Millis")
+    @Description("Wait time reported to the client")
+    long waitMillis;
+
+    @Label("Outcome")
+    String outcome;
+
+    public static void emit(String limiter, long waitMillis, String outcome) {
+        RateLimitRejectionEvent event = new RateLimitRejectionEvent();
+        if (event.isEnabled()) {
+            event.limiter = limiter;
+            event.waitMillis = waitMillis;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.seckill.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("seckill.Reconcile")
+@Label("Stock Reconciliation Pass")
+@Description("Full reconciliation pass over the active goods")
+@Category("Seckill")
+@StackTrace(false)
+@Threshold("0 ms")
+public class ReconcileEvent extends Event {
+
+    @Label("Mismatches")
+    int mismatches;
+
+    @Label("Outcome")
+    String outcome;
+
+    /**
+     * End the event and commit it when it is enabled and over the threshold
+     */
+    public void commit(int mismatches, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.mismatches = mismatches;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * JDK Flight Recorder events of the seckill path, category "Seckill".
+ *
+ * Duration events carry a default threshold so a continuous recording only keeps the slow ones;
+ * thresholds can be changed per event in a .jfc file or on the command line, e.g.
+ * {@code -XX:StartFlightRecording=settings=profile,seckill.Deduction#threshold=1ms}.
+ * Without a recording the events are disabled, begin/end/shouldCommit are JIT intrinsics and
+ * the unused event object is scalar replaced, so emitting costs next to nothing.
+ * Events need a JDK with jdk.jfr (8u272+ or 11+); on older JDKs {@link com.example.seckill.jfr.JfrSupport}
+ * reports them unavailable and callers skip them.
+ */
+package com.example.seckill.jfr;
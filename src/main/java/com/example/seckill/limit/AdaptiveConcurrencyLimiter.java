@@ -0,0 +1,176 @@
+package com.example.seckill.limit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Gradient-style adaptive concurrency limit.
+ *
+ * Latency samples are collected for one window at a time. At the end of each window the average
+ * latency of the window (short RTT) is compared to a slowly moving average (long RTT, the no-load
+ * baseline). gradient = tolerance * longRtt / shortRtt, clamped to [0.5, 1]. The new limit is
+ * limit * gradient + sqrt(limit), smoothed, so the limit grows while latency stays near the baseline
+ * and shrinks as soon as requests start queueing behind a slow Redis, MQ or database.
+ * Requests above the limit are rejected at once instead of waiting in a queue.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final double smoothing;
+    private final long windowNanos;
+    private final int longWindows;
+    private final LongSupplier nanoClock;
+
+    private volatile double limit;
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    // Samples of the current window
+    private final LongAdder windowRttNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private volatile int windowMaxInflight;
+    private volatile long windowStart;
+    private final AtomicBoolean updating = new AtomicBoolean();
+
+    // Only written by the thread holding the updating flag
+    private volatile double shortRttNanos;
+    private volatile double longRttNanos;
+    private long longRttCount;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                                      double rttTolerance, double smoothing, long windowMillis,
+                                      int longWindows) {
+        this(name, initialLimit, minLimit, maxLimit, rttTolerance, smoothing, windowMillis, longWindows,
+                System::nanoTime);
+    }
+
+    /**
+     * Windows measured on the given clock, in nanoseconds
+     */
+    AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                               double rttTolerance, double smoothing, long windowMillis,
+                               int longWindows, LongSupplier nanoClock) {
+        this.name = name;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.smoothing = smoothing;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.longWindows = longWindows;
+        this.nanoClock = nanoClock;
+        this.windowStart = nanoClock.getAsLong();
+    }
+
+    /**
+     * Reserve a slot
+     *
+     * @return false if the limit is reached, the caller must not call {@link #release(long)}
+     */
+    public boolean tryAcquire() {
+        int current = inflight.incrementAndGet();
+        if (current > (int) limit) {
+            inflight.decrementAndGet();
+            dropped.increment();
+            return false;
+        }
+        if (current > windowMaxInflight) {
+            windowMaxInflight = current;
+        }
+        accepted.increment();
+        return true;
+    }
+
+    /**
+     * Free a slot and record the request latency
+     */
+    public void release(long elapsedNanos) {
+        inflight.decrementAndGet();
+        windowRttNanos.add(elapsedNanos);
+        windowSamples.increment();
+
+        long now = nanoClock.getAsLong();
+        if (now - windowStart >= windowNanos && updating.compareAndSet(false, true)) {
+            try {
+                updateLimit(now);
+            } finally {
+                updating.set(false);
+            }
+        }
+    }
+
+    private void updateLimit(long now) {
+        long samples = windowSamples.sumThenReset();
+        long rttSum = windowRttNanos.sumThenReset();
+        int maxInflight = windowMaxInflight;
+        windowMaxInflight = 0;
+        windowStart = now;
+        if (samples == 0) {
+            return;
+        }
+
+        double shortRtt = (double) rttSum / samples;
+        shortRttNanos = shortRtt;
+        // Exponential average over the last longWindows windows, warmed up with a plain mean
+        longRttCount++;
+        double longRtt = longRttCount == 1 ? shortRtt
+                : longRttNanos + (shortRtt - longRttNanos) / Math.min(longRttCount, longWindows);
+        // Let the baseline recover quickly once the backlog has drained
+        if (longRtt / shortRtt > 2) {
+            longRtt = longRtt * 0.95;
+        }
+        longRttNanos = longRtt;
+
+        double current = limit;
+        // Application limited: traffic never came close to the limit, so there is nothing to learn
+        if (maxInflight < current / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRtt / shortRtt));
+        double newLimit = current * gradient + Math.sqrt(current);
+        newLimit = current * (1 - smoothing) + newLimit * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    /**
+     * Requests per second this limiter can sustain at the baseline latency (Little's law), 0 before any sample
+     */
+    public double getThroughput() {
+        double rtt = longRttNanos;
+        return rtt > 0 ? limit * TimeUnit.SECONDS.toNanos(1) / rtt : 0;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("limit", getLimit());
+        stats.put("inflight", getInflight());
+        stats.put("accepted", accepted.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("shortRttMicros", TimeUnit.NANOSECONDS.toMicros((long) shortRttNanos));
+        stats.put("longRttMicros", TimeUnit.NANOSECONDS.toMicros((long) longRttNanos));
+        return stats;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.seckill.limit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One adaptive concurrency limiter per @ConcurrencyLimit name, all sharing the same tuning
+ */
+@Component
+@Slf4j
+public class ConcurrencyLimiterRegistry {
+
+    @Value("${seckill.concurrency-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${seckill.concurrency-limit.initial-limit:100}")
+    private int initialLimit;
+
+    @Value("${seckill.concurrency-limit.min-limit:20}")
+    private int minLimit;
+
+    @Value("${seckill.concurrency-limit.max-limit:1000}")
+    private int maxLimit;
+
+    @Value("${seckill.concurrency-limit.rtt-tolerance:1.5}")
+    private double rttTolerance;
+
+    @Value("${seckill.concurrency-limit.smoothing:0.2}")
+    private double smoothing;
+
+    @Value("${seckill.concurrency-limit.window-ms:100}")
+    private long windowMillis;
+
+    @Value("${seckill.concurrency-limit.long-windows:100}")
+    private int longWindows;
+
+    // Rejected requests never queue, a slot frees within one RTT (milliseconds), so there is no
+    // backlog to derive a wait from: the hint only spreads out the retries
+    @Value("${seckill.concurrency-limit.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Retry-After sent with every concurrency limit rejection
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public AdaptiveConcurrencyLimiter get(String name) {
+        AdaptiveConcurrencyLimiter limiter = limiters.get(name);
+        if (limiter == null) {
+            limiter = limiters.computeIfAbsent(name, n -> {
+                log.info("Created adaptive concurrency limiter {}, initial limit: {}", n, initialLimit);
+                return new AdaptiveConcurrencyLimiter(n, initialLimit, minLimit, maxLimit,
+                        rttTolerance, smoothing, windowMillis, longWindows);
+            });
+        }
+        return limiter;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        for (AdaptiveConcurrencyLimiter limiter : limiters.values()) {
+            stats.put(limiter.getName(), limiter.getStats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.seckill.limit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Two-tier rate limiter: an in-JVM bucket per key in front of the Redis token bucket.
+ *
+ * The local bucket holds tokens leased from the global Redis bucket which expire after
+ * lease-ttl-ms, so every node re-syncs with the global quota at least that often. A lease covers
+ * what the key refills during one lease-ttl-ms, or lease-ratio of its capacity if larger, but
+ * never more than the capacity: Redis cannot grant more than one burst at once, so a limit with
+ * capacity 1 leases single tokens and only benefits from the in-memory rejection below.
+ * Leases add to the unexpired local balance, so concurrent misses do not discard each other. When Redis rejects a key, the returned wait time is remembered locally
+ * and further requests for that key are rejected in memory until it elapses.
+ * Only requests that exhaust their local share reach the Redis script.
+ */
+@Component
+@Slf4j
+public class HierarchicalRateLimiter {
+
+    @Value("${seckill.rate-limit.local.enabled:true}")
+    private boolean localEnabled;
+
+    @Value("${seckill.rate-limit.local.lease-ratio:0.1}")
+    private double leaseRatio;
+
+    @Value("${seckill.rate-limit.local.lease-ttl-ms:1000}")
+    private long leaseTtlMs;
+
+    @Autowired
+    private RedisRateLimiter redisRateLimiter;
+
+    // Guava cache is internally segmented, so buckets of different keys never contend on one lock
+    private final Cache<String, LocalBucket> localBuckets = CacheBuilder.newBuilder()
+            .maximumSize(100000)
+            .expireAfterAccess(1, TimeUnit.MINUTES)
+            .build();
+
+    private final LongAdder localAllowed = new LongAdder();
+    private final LongAdder localRejected = new LongAdder();
+    private final LongAdder redisCalls = new LongAdder();
+
+    // Milliseconds of lease expiry and blocking, replaced by tests
+    LongSupplier clock = System::currentTimeMillis;
+
+    /**
+     * Try to acquire tokens and return waiting time
+     *
+     * @return 0 indicates success, >0 indicates the waiting time in milliseconds needed
+     */
+    public long tryAcquireWithWaitTime(RateLimitDescriptor descriptor, String key) {
+        int requested = descriptor.getTokens();
+        if (!localEnabled) {
+            redisCalls.increment();
+            return redisRateLimiter.tryAcquireWithWaitTime(descriptor, key, requested);
+        }
+
+        LocalBucket bucket = localBuckets.asMap().computeIfAbsent(key, k -> new LocalBucket());
+        long now = clock.getAsLong();
+        synchronized (bucket) {
+            long localResult = bucket.tryAcquire(now, requested);
+            if (localResult == 0) {
+                localAllowed.increment();
+                return 0;
+            }
+            if (localResult > 0) {
+                localRejected.increment();
+                return localResult;
+            }
+        }
+
+        // Local share exhausted: lease a new share of the global quota from Redis
+        int lease = leaseSize(descriptor, requested);
+        redisCalls.increment();
+        long waitTime = redisRateLimiter.tryAcquireWithWaitTime(descriptor, key, lease);
+        if (waitTime > 0 && lease > requested) {
+            // Not enough tokens for a full lease, still try to serve this request alone
+            lease = requested;
+            redisCalls.increment();
+            waitTime = redisRateLimiter.tryAcquireWithWaitTime(descriptor, key, requested);
+        }
+
+        synchronized (bucket) {
+            if (waitTime == 0) {
+                bucket.fund(now, lease - requested, now + leaseTtlMs);
+            } else {
+                bucket.blockUntil(now + waitTime);
+            }
+        }
+        return waitTime;
+    }
+
+    /**
+     * Tokens to lease from Redis in one call: the refill of one lease period or lease-ratio of the
+     * capacity, whichever is larger, capped at the capacity and never below the request
+     */
+    private int leaseSize(RateLimitDescriptor descriptor, int requested) {
+        int refill = (int) Math.ceil(descriptor.getRate() * leaseTtlMs / 1000.0);
+        int lease = Math.max(refill, (int) (descriptor.getCapacity() * leaseRatio));
+        return Math.max(requested, Math.min(descriptor.getCapacity(), lease));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localEnabled", localEnabled);
+        stats.put("localAllowed", localAllowed.sum());
+        stats.put("localRejected", localRejected.sum());
+        stats.put("redisCalls", redisCalls.sum());
+        stats.put("localBuckets", localBuckets.size());
+        return stats;
+    }
+
+    /**
+     * Tokens leased from Redis plus the time until which the key is known to be limited.
+     * Guarded by its own monitor.
+     */
+    private static class LocalBucket {
+        private int tokens;
+        private long leaseExpiresAt;
+        private long blockedUntil;
+
+        /**
+         * @return 0 if served from the local share, >0 wait time if the key is still blocked,
+         *         -1 if Redis has to be asked
+         */
+        long tryAcquire(long now, int requested) {
+            if (now < blockedUntil) {
+                return blockedUntil - now;
+            }
+            if (now < leaseExpiresAt && tokens >= requested) {
+                tokens -= requested;
+                return 0;
+            }
+            return -1;
+        }
+
+        void fund(long now, int leasedTokens, long expiresAt) {
+            if (now >= leaseExpiresAt) {
+                // Tokens of an expired lease belong to the global quota again
+                tokens = 0;
+            }
+            tokens += leasedTokens;
+            leaseExpiresAt = expiresAt;
+            blockedUntil = 0;
+        }
+
+        void blockUntil(long until) {
+            tokens = 0;
+            blockedUntil = until;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.seckill.limit;
+
+import com.example.seckill.annotation.RateLimit;
+import lombok.Getter;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Immutable view of one @RateLimit annotation, resolved once per method.
+ * Holds the key prefix and the script arguments that never change between calls,
+ * already encoded as bytes (the Lua scripts parse plain numbers, quoted or not).
+ */
+@Getter
+public final class RateLimitDescriptor {
+
+    private static final String RATE_LIMIT_PREFIX = "rate_limit:";
+    // GCRA keys hold a plain integer instead of a hash, keep them apart from token bucket keys
+    private static final String GCRA_RATE_LIMIT_PREFIX = "rate_limit_gcra:";
+
+    private final RateLimit.Algorithm algorithm;
+    private final RateLimit.RateLimitType type;
+    private final double rate;
+    private final int capacity;
+    private final int tokens;
+    private final String message;
+
+    /**
+     * Everything before the client identifier, e.g. rate_limit:seckill:ip:
+     */
+    private final String keyPrefix;
+
+    private final byte[] encodedRate;
+    private final byte[] encodedCapacity;
+    private final byte[] encodedTokens;
+
+    public RateLimitDescriptor(Method method, RateLimit rateLimit) {
+        this.algorithm = rateLimit.algorithm();
+        this.type = rateLimit.type();
+        this.rate = rateLimit.rate();
+        this.capacity = rateLimit.capacity();
+        this.tokens = rateLimit.tokens();
+        this.message = rateLimit.message();
+
+        StringBuilder prefix = new StringBuilder(
+                algorithm == RateLimit.Algorithm.GCRA ? GCRA_RATE_LIMIT_PREFIX : RATE_LIMIT_PREFIX);
+        if (!rateLimit.key().isEmpty()) {
+            prefix.append(rateLimit.key()).append(":");
+        } else {
+            // If key is not specified, use the method's fully qualified name
+            prefix.append(method.getDeclaringClass().getName())
+                  .append(".")
+                  .append(method.getName())
+                  .append(":");
+        }
+        switch (type) {
+            case USER:
+                prefix.append("user:");
+                break;
+            case IP:
+                prefix.append("ip:");
+                break;
+            default:
+                prefix.append("global");
+        }
+        this.keyPrefix = prefix.toString();
+
+        this.encodedRate = encode(Double.toString(rate));
+        this.encodedCapacity = encode(Integer.toString(capacity));
+        this.encodedTokens = encode(Integer.toString(tokens));
+    }
+
+    /**
+     * Full rate limit key for a client identifier (ignored for GLOBAL limits)
+     */
+    public String keyFor(Object clientId) {
+        if (type == RateLimit.RateLimitType.GLOBAL) {
+            return keyPrefix;
+        }
+        return keyPrefix.concat(String.valueOf(clientId));
+    }
+
+    static byte[] encode(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
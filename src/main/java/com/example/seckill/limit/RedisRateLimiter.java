@@ -1,14 +1,13 @@
 package com.example.seckill.limit;
 
+import com.example.seckill.annotation.RateLimit;
+import com.example.seckill.metrics.SeckillMetrics;
+import com.example.seckill.redis.LuaScriptRegistry;
+import com.example.seckill.service.RedisService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
-import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.PostConstruct;
 import java.util.Collections;
 import java.util.List;
 
@@ -17,17 +16,10 @@ import java.util.List;
 public class RedisRateLimiter {
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
-    
-    private DefaultRedisScript<Long> tokenBucketScript;
-    
-    @PostConstruct
-    public void init() {
-        tokenBucketScript = new DefaultRedisScript<>();
-        tokenBucketScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/token_bucket.lua")));
-        tokenBucketScript.setResultType(Long.class);
-        log.info("Token bucket script initialized");
-    }
+    private RedisService redisService;
+
+    @Autowired
+    private SeckillMetrics metrics;
     
     /**
      * Try to acquire token(s)
@@ -40,6 +32,7 @@ public class RedisRateLimiter {
      *         and the absolute value represents the waiting time in milliseconds
      */
     public long tryAcquire(String key, double rate, int capacity, int requested) {
+        long start = System.nanoTime();
         try {
             // Call the Lua script to perform an atomic operation
             List<String> keys = Collections.singletonList(key);
@@ -48,12 +41,15 @@ public class RedisRateLimiter {
             long now = System.currentTimeMillis();
             
             // Debug log
-            log.debug("Executing token bucket script - key: {}, rate: {}, capacity: {}, now: {}, requested: {}", 
-                key, rate, capacity, now, requested);
+            if (log.isDebugEnabled()) {
+                log.debug("Executing token bucket script - key: {}, rate: {}, capacity: {}, now: {}, requested: {}",
+                    key, rate, capacity, now, requested);
+            }
             
             // Execute the Lua script with explicit type conversion
-            Long result = redisTemplate.execute(
-                tokenBucketScript, 
+            Long result = redisService.executeScript(
+                LuaScriptRegistry.TOKEN_BUCKET,
+                Long.class,
                 keys, 
                 Double.toString(rate), 
                 Integer.toString(capacity), 
@@ -61,6 +57,7 @@ public class RedisRateLimiter {
                 Integer.toString(requested)
             );
             
+            recordOutcome(result, start);
             if (result == null) {
                 log.error("Redis token bucket script returned null for key: {}", key);
                 return -1; // Default failure
@@ -69,10 +66,56 @@ public class RedisRateLimiter {
             return result;
         } catch (Exception e) {
             log.error("Error executing token bucket script for key: {}", key, e);
+            metrics.getRateLimitRedis().record(SeckillMetrics.ERROR, start);
             return -1;
         }
     }
     
+    /**
+     * Try to acquire tokens for a precompiled @RateLimit descriptor and return waiting time.
+     * Rate and capacity are passed pre-encoded, only the timestamp and request count are built per call.
+     *
+     * @return 0 indicates success, >0 indicates the waiting time in milliseconds needed
+     */
+    public long tryAcquireWithWaitTime(RateLimitDescriptor descriptor, String key, int requested) {
+        byte[] encodedRequested = requested == descriptor.getTokens()
+                ? descriptor.getEncodedTokens()
+                : RateLimitDescriptor.encode(Integer.toString(requested));
+        List<String> keys = Collections.singletonList(key);
+        long start = System.nanoTime();
+        Long result;
+        try {
+            if (descriptor.getAlgorithm() == RateLimit.Algorithm.GCRA) {
+                result = redisService.executeScript(LuaScriptRegistry.GCRA, Long.class, keys,
+                        descriptor.getEncodedRate(), descriptor.getEncodedCapacity(), encodedRequested);
+            } else {
+                byte[] now = RateLimitDescriptor.encode(Long.toString(System.currentTimeMillis()));
+                result = redisService.executeScript(LuaScriptRegistry.TOKEN_BUCKET, Long.class, keys,
+                        descriptor.getEncodedRate(), descriptor.getEncodedCapacity(), now, encodedRequested);
+            }
+        } catch (Exception e) {
+            log.error("Error executing {} script for key: {}", descriptor.getAlgorithm(), key, e);
+            metrics.getRateLimitRedis().record(SeckillMetrics.ERROR, start);
+            return 1;
+        }
+        recordOutcome(result, start);
+        if (result == null) {
+            log.error("Redis {} script returned null for key: {}", descriptor.getAlgorithm(), key);
+            return 1;
+        }
+        return result > 0 ? 0 : Math.abs(result);
+    }
+
+    private void recordOutcome(Long result, long start) {
+        String outcome;
+        if (result == null) {
+            outcome = SeckillMetrics.ERROR;
+        } else {
+            outcome = result > 0 ? SeckillMetrics.SUCCESS : SeckillMetrics.RATE_LIMITED;
+        }
+        metrics.getRateLimitRedis().record(outcome, start);
+    }
+
     /**
      * Try to acquire one token
      */
@@ -93,4 +136,4 @@ public class RedisRateLimiter {
             return Math.abs(result); // Return the positive waiting time
         }
     }
-}
\ No newline at end of file
+}
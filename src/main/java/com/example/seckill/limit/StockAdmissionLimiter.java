@@ -0,0 +1,118 @@
+package com.example.seckill.limit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-goods admission control sized by the remaining stock.
+ *
+ * Each node admits at most max(min-admit, factor * remaining) seckill attempts per goods and window,
+ * where remaining is the last stock count this node saw returned by the decrease script.
+ * Everything above that is rejected in memory, so Redis and MQ load follows the stock left
+ * rather than the size of the crowd. Until the first deduction of a goods its stock is unknown
+ * (no window yet) and every request is admitted; min-admit keeps the count fresh when the local view is stale
+ * (e.g. after rollbacks returned units).
+ */
+@Component
+@Slf4j
+public class StockAdmissionLimiter {
+
+    @Value("${seckill.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${seckill.admission.factor:2.0}")
+    private double factor;
+
+    @Value("${seckill.admission.window-ms:100}")
+    private long windowMillis;
+
+    @Value("${seckill.admission.min-admit:10}")
+    private int minAdmit;
+
+    private final Cache<Long, AdmissionWindow> windows = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    // Nanoseconds of the admission windows, replaced by tests
+    LongSupplier nanoClock = System::nanoTime;
+
+    /**
+     * @return false if this goods already admitted its share for the current window
+     */
+    public boolean tryAdmit(Long goodsId) {
+        if (!enabled) {
+            return true;
+        }
+        AdmissionWindow window = windows.getIfPresent(goodsId);
+        if (window == null) {
+            admitted.increment();
+            return true;
+        }
+
+        long now = nanoClock.getAsLong();
+        long start = window.start.get();
+        if (now - start >= TimeUnit.MILLISECONDS.toNanos(windowMillis) && window.start.compareAndSet(start, now)) {
+            window.admitted.set(0);
+        }
+
+        long budget = Math.max(minAdmit, (long) Math.ceil(factor * window.remaining));
+        if (window.admitted.incrementAndGet() > budget) {
+            rejected.increment();
+            return false;
+        }
+        admitted.increment();
+        return true;
+    }
+
+    /**
+     * Record the remaining stock returned by the decrease script. A sold-out result (-1) is
+     * recorded as 0, so the goods keeps admitting min-admit attempts per window to pick up
+     * units returned by rollbacks
+     */
+    public void updateRemaining(Long goodsId, long remaining) {
+        if (!enabled) {
+            return;
+        }
+        AdmissionWindow window = windows.asMap().computeIfAbsent(goodsId, id -> new AdmissionWindow(nanoClock.getAsLong()));
+        window.remaining = Math.max(0, remaining);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("admitted", admitted.sum());
+        stats.put("rejected", rejected.sum());
+        Map<Long, Long> remaining = new LinkedHashMap<>();
+        for (Map.Entry<Long, AdmissionWindow> entry : windows.asMap().entrySet()) {
+            remaining.put(entry.getKey(), entry.getValue().remaining);
+        }
+        stats.put("remaining", remaining);
+        return stats;
+    }
+
+    private static class AdmissionWindow {
+        // Only created by updateRemaining, never negative
+        private volatile long remaining;
+        private final AtomicLong start;
+        private final AtomicInteger admitted = new AtomicInteger();
+
+        AdmissionWindow(long start) {
+            this.start = new AtomicLong(start);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.seckill.local;
+
+import com.example.seckill.utils.DistributedLockFactory;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JVM locks for the local-perf profile: fair and reentrant like the Redisson fair lock,
+ * but only exclusive within this process. Lock objects are kept per key for the life of the app.
+ */
+@Component
+@Primary
+@Profile("local-perf")
+public class LocalDistributedLockFactory extends DistributedLockFactory {
+
+    private final Map<String, Lock> locks = new ConcurrentHashMap<>();
+
+    @Override
+    protected Lock createLock(String lockKey) {
+        return locks.computeIfAbsent(lockKey, key -> new ReentrantLock(true));
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.seckill.local;
+
+import com.example.seckill.mq.MQConsumerTest;
+import com.example.seckill.mq.MQProducer;
+import com.example.seckill.mq.OrderCancellationConsumer;
+import com.example.seckill.mq.SeckillTransactionListener;
+import com.example.seckill.mq.StockReductionConsumer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.spring.core.RocketMQLocalTransactionState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process broker for the local-perf profile.
+ *
+ * Keeps the delivery semantics the seckill flow depends on: the local transaction runs inline in
+ * the sending thread, committed messages are delivered asynchronously to the same listener beans
+ * RocketMQ would call, UNKNOWN transactions are checked back periodically, delay levels follow
+ * the broker table and a consumer that throws gets the message again with backoff.
+ * Nothing survives a restart, there is no broker to persist to.
+ */
+@Service
+@Primary
+@Profile("local-perf")
+@Slf4j
+public class LocalMQProducer extends MQProducer {
+
+    // Broker default messageDelayLevel, in seconds
+    private static final long[] DELAY_LEVEL_SECONDS = {
+            1, 5, 10, 30, 60, 120, 180, 240, 300, 360, 420, 480, 540, 600, 1200, 1800, 3600, 7200};
+
+    // Broker defaults: 15 transaction checks, 16 consumer retries
+    private static final int MAX_TRANSACTION_CHECKS = 15;
+    private static final int MAX_RECONSUME_TIMES = 16;
+
+    @Autowired
+    private SeckillTransactionListener transactionListener;
+
+    @Autowired
+    private StockReductionConsumer stockReductionConsumer;
+
+    @Autowired
+    private OrderCancellationConsumer orderCancellationConsumer;
+
+    @Autowired
+    private MQConsumerTest consumerTest;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${seckill.local-mq.consume-threads:8}")
+    private int consumeThreads;
+
+    @Value("${seckill.local-mq.check-interval-ms:5000}")
+    private long checkIntervalMs;
+
+    // Shrinks delay levels and retry backoff, e.g. 0.001 turns the 30 minute order timeout into 1.8s
+    @Value("${seckill.local-mq.delay-scale:1.0}")
+    private double delayScale;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(consumeThreads, runnable -> {
+            Thread thread = new Thread(runnable, "local-mq-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Messages sent or scheduled but not consumed yet, 0 once the pipeline has drained
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    @Override
+    protected void send(String topic, Object payload) {
+        deliver(topic, toBody(payload), 0);
+    }
+
+    @Override
+    protected void sendDelayed(String topic, Message<?> message, int delayLevel) {
+        int index = Math.min(Math.max(delayLevel, 1), DELAY_LEVEL_SECONDS.length) - 1;
+        deliver(topic, toBody(message.getPayload()), scaled(DELAY_LEVEL_SECONDS[index] * 1000));
+    }
+
+    @Override
+    protected void sendInTransaction(String topic, Message<?> message, Object arg) {
+        RocketMQLocalTransactionState state = transactionListener.executeLocalTransaction(message, arg);
+        resolve(topic, message, state, 0);
+    }
+
+    private void resolve(String topic, Message<?> message, RocketMQLocalTransactionState state, int checks) {
+        if (state == RocketMQLocalTransactionState.COMMIT) {
+            deliver(topic, toBody(message.getPayload()), 0);
+        } else if (state == RocketMQLocalTransactionState.UNKNOWN) {
+            if (checks >= MAX_TRANSACTION_CHECKS) {
+                log.warn("Transaction message dropped after {} checks: {}", checks, message.getHeaders().get("transactionId"));
+                return;
+            }
+            pending.incrementAndGet();
+            executor.schedule(() -> {
+                pending.decrementAndGet();
+                resolve(topic, message, transactionListener.checkLocalTransaction(message), checks + 1);
+            }, checkIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        // ROLLBACK: the half message is discarded
+    }
+
+    private void deliver(String topic, String body, long delayMs) {
+        pending.incrementAndGet();
+        long bornTimestamp = System.currentTimeMillis() + delayMs;
+        executor.schedule(() -> consume(topic, body, bornTimestamp, 0), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void consume(String topic, String body, long storeTimestamp, int reconsumeTimes) {
+        try {
+            dispatch(topic, body, storeTimestamp);
+            pending.decrementAndGet();
+        } catch (RuntimeException e) {
+            if (reconsumeTimes >= MAX_RECONSUME_TIMES) {
+                pending.decrementAndGet();
+                log.error("Message moved to DLQ after {} retries, topic: {} body: {}", reconsumeTimes, topic, body, e);
+                return;
+            }
+            // Broker retry backoff starts at level 3 (10s) and moves one level up per attempt
+            int index = Math.min(2 + reconsumeTimes, DELAY_LEVEL_SECONDS.length - 1);
+            long delayMs = scaled(DELAY_LEVEL_SECONDS[index] * 1000);
+            log.warn("Consume failed, retry {} in {}ms, topic: {}", reconsumeTimes + 1, delayMs, topic);
+            executor.schedule(() -> consume(topic, body, storeTimestamp, reconsumeTimes + 1), delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void dispatch(String topic, String body, long storeTimestamp) {
+        switch (topic) {
+            case TOPIC_STOCK_REDUCTION:
+                MessageExt messageExt = new MessageExt();
+                messageExt.setTopic(topic);
+                messageExt.setBody(body.getBytes(StandardCharsets.UTF_8));
+                messageExt.setStoreTimestamp(storeTimestamp);
+                stockReductionConsumer.onMessage(messageExt);
+                break;
+            case TOPIC_ORDER_CANCEL:
+                orderCancellationConsumer.onMessage(body);
+                break;
+            case TOPIC_TEST:
+                consumerTest.onMessage(body);
+                break;
+            default:
+                log.warn("No local consumer for topic: {}", topic);
+        }
+    }
+
+    private String toBody(Object payload) {
+        if (payload instanceof String) {
+            return (String) payload;
+        }
+        if (payload instanceof byte[]) {
+            return new String((byte[]) payload, StandardCharsets.UTF_8);
+        }
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize message payload", e);
+        }
+    }
+
+    private long scaled(long delayMs) {
+        return Math.max(0, Math.round(delayMs * delayScale));
+    }
+}
@@ -0,0 +1,472 @@
+package com.example.seckill.local;
+
+import com.example.seckill.redis.KeyPrefix;
+import com.example.seckill.redis.LuaScriptRegistry;
+import com.example.seckill.redis.SeckillKey;
+import com.example.seckill.service.RedisService;
+import com.example.seckill.vo.StockSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory RedisService for the local-perf profile.
+ *
+ * Every operation runs under one monitor, the way Redis runs one command at a time, and every
+ * script registered in LuaScriptRegistry is reimplemented here with the same keys, arguments and
+ * return values. Values come back the way GenericJackson2JsonRedisSerializer would return them
+ * (integers as Integer when they fit), so callers behave exactly as against a real Redis.
+ * Expiry is checked lazily on access. Objects are kept by reference rather than serialized, so a
+ * caller mutating a cached value would see the change on the next read, unlike with Redis.
+ */
+@Service
+@Primary
+@Profile("local-perf")
+@Slf4j
+public class LocalRedisService extends RedisService {
+
+    private static final String HASH_TOKENS = "tokens";
+    private static final String HASH_TIMESTAMP = "timestamp";
+
+    private final Map<String, Entry> store = new HashMap<>();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(KeyPrefix prefix, String key) {
+        return (T) normalize(value(getRealKey(prefix, key)));
+    }
+
+    @Override
+    public synchronized <T> boolean set(KeyPrefix prefix, String key, T value) {
+        put(getRealKey(prefix, key), value, prefix.expireSeconds() * 1000L);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean exists(KeyPrefix prefix, String key) {
+        return entry(getRealKey(prefix, key)) != null;
+    }
+
+    @Override
+    public synchronized boolean delete(KeyPrefix prefix, String key) {
+        return store.remove(getRealKey(prefix, key)) != null;
+    }
+
+    @Override
+    public synchronized Long incr(KeyPrefix prefix, String key) {
+        return incrBy(getRealKey(prefix, key), 1);
+    }
+
+    @Override
+    public synchronized Long decr(KeyPrefix prefix, String key) {
+        return incrBy(getRealKey(prefix, key), -1);
+    }
+
+    @Override
+    public synchronized boolean setIfNotExists(String key, String value, int expireSeconds) {
+        if (entry(key) != null) {
+            return false;
+        }
+        put(key, value, expireSeconds * 1000L);
+        return true;
+    }
+
+    @Override
+    public synchronized <T> boolean setIfAbsent(KeyPrefix prefix, String key, T value) {
+        String realKey = getRealKey(prefix, key);
+        if (entry(realKey) != null) {
+            return false;
+        }
+        put(realKey, value, prefix.expireSeconds() * 1000L);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean delete(String key) {
+        return store.remove(key) != null;
+    }
+
+    @Override
+    public synchronized boolean zadd(KeyPrefix prefix, String key, String member, double score) {
+        String realKey = getRealKey(prefix, key);
+        Map<String, Double> zset = zset(realKey);
+        if (zset == null) {
+            zset = new HashMap<>();
+            put(realKey, zset, 0);
+        }
+        return zset.put(member, score) == null;
+    }
+
+    @Override
+    public synchronized boolean zrem(KeyPrefix prefix, String key, String member) {
+        Map<String, Double> zset = zset(getRealKey(prefix, key));
+        return zset != null && zset.remove(member) != null;
+    }
+
+    @Override
+    public synchronized long zcard(KeyPrefix prefix, String key) {
+        Map<String, Double> zset = zset(getRealKey(prefix, key));
+        return zset == null ? 0 : zset.size();
+    }
+
+    @Override
+    public synchronized Double zminScore(KeyPrefix prefix, String key) {
+        Map<String, Double> zset = zset(getRealKey(prefix, key));
+        Double min = null;
+        if (zset != null) {
+            for (Double score : zset.values()) {
+                if (min == null || score < min) {
+                    min = score;
+                }
+            }
+        }
+        return min;
+    }
+
+    @Override
+    public synchronized long zremRangeByScore(KeyPrefix prefix, String key, double min, double max) {
+        Map<String, Double> zset = zset(getRealKey(prefix, key));
+        if (zset == null) {
+            return 0;
+        }
+        int before = zset.size();
+        zset.values().removeIf(score -> score >= min && score <= max);
+        return before - zset.size();
+    }
+
+    /**
+     * Scripts are Java ports here, there is no script cache to load
+     */
+    @Override
+    public void loadScripts() {
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T executeScript(String scriptName, Class<T> resultType, List<String> keys, Object... args) {
+        switch (scriptName) {
+            case LuaScriptRegistry.DECREASE_STOCK:
+                return (T) decreaseStock(keys, args);
+            case LuaScriptRegistry.ROLLBACK_STOCK:
+                incrBy(keys.get(0), 1);
+                incrBy(keys.get(1), -1);
+                return (T) Long.valueOf(1);
+            case LuaScriptRegistry.CONSUME_RESERVED:
+                return (T) Long.valueOf(incrBy(keys.get(1), -1));
+            case LuaScriptRegistry.CANCEL_STOCK:
+                return (T) Long.valueOf(incrBy(keys.get(0), 1));
+            case LuaScriptRegistry.GET_STOCK_VALUES:
+                return (T) Arrays.asList(orEmpty(value(keys.get(0))), orEmpty(value(keys.get(1))));
+            case LuaScriptRegistry.TOKEN_BUCKET:
+                return (T) tokenBucket(keys.get(0), number(args[0]), number(args[1]), number(args[2]), number(args[3]));
+            case LuaScriptRegistry.GCRA:
+                return (T) gcra(keys.get(0), number(args[0]), number(args[1]), number(args[2]));
+            case LuaScriptRegistry.WAITING_ROOM_JOIN:
+                return (T) waitingRoomJoin(keys.get(0), keys.get(1), text(args[0]), (long) number(args[1]));
+            case LuaScriptRegistry.WAITING_ROOM_ADVANCE:
+                return (T) waitingRoomAdvance(keys.get(0), keys.get(1), (long) number(args[0]), (long) number(args[1]));
+            default:
+                throw new IllegalArgumentException("Unknown Lua script: " + scriptName);
+        }
+    }
+
+    /**
+     * Same scripts, movements are not counted since the stock event stream only exists in a real Redis
+     */
+    @Override
+    public <T> T executeStockScript(String scriptName, Class<T> resultType, Long goodsId) {
+        List<String> keys = Arrays.asList(
+                getRealKey(SeckillKey.goodsStock, "" + goodsId),
+                getRealKey(SeckillKey.reservedStock, "" + goodsId));
+        return executeScript(scriptName, resultType, keys);
+    }
+
+    @Override
+    public Long decreaseStock(Long goodsId, String transactionId, long deductedAt) {
+        return executeDecreaseStock(goodsId, transactionId, deductedAt);
+    }
+
+    @Override
+    public boolean isStockStreamEnabled() {
+        return false;
+    }
+
+    @Override
+    public synchronized List<Integer> mget(String... keys) {
+        List<Integer> integers = new ArrayList<>(keys.length);
+        for (String key : keys) {
+            Object value = value(key);
+            integers.add(value != null ? Integer.parseInt(value.toString()) : null);
+        }
+        return integers;
+    }
+
+    @Override
+    public synchronized <T> void multiSet(KeyPrefix prefix, Map<String, T> values) {
+        for (Map.Entry<String, T> entry : values.entrySet()) {
+            put(getRealKey(prefix, entry.getKey()), entry.getValue(), prefix.expireSeconds() * 1000L);
+        }
+    }
+
+    @Override
+    public synchronized <T> long multiSetIfAbsent(KeyPrefix prefix, Map<String, T> values) {
+        long set = 0;
+        for (Map.Entry<String, T> entry : values.entrySet()) {
+            String realKey = getRealKey(prefix, entry.getKey());
+            if (entry(realKey) == null) {
+                put(realKey, entry.getValue(), prefix.expireSeconds() * 1000L);
+                set++;
+            }
+        }
+        return set;
+    }
+
+    @Override
+    public synchronized long multiDelete(List<String> realKeys) {
+        long deleted = 0;
+        for (String key : realKeys) {
+            if (store.remove(key) != null) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized List<Object> executeScriptPipelined(String scriptName, Class<?> resultType,
+                                                            List<List<String>> keysList, Object... args) {
+        List<Object> results = new ArrayList<>(keysList.size());
+        for (List<String> keys : keysList) {
+            results.add(executeScript(scriptName, resultType, keys, args));
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized Map<Long, StockSnapshot> getStockSnapshots(Collection<Long> goodsIds) {
+        Map<Long, StockSnapshot> snapshots = new HashMap<>();
+        for (Long goodsId : goodsIds) {
+            Object stock = value(getRealKey(SeckillKey.goodsStock, "" + goodsId));
+            Object reserved = value(getRealKey(SeckillKey.reservedStock, "" + goodsId));
+            snapshots.put(goodsId, new StockSnapshot(goodsId,
+                    stock == null ? null : (int) toLong(stock),
+                    reserved == null ? 0 : (int) toLong(reserved)));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Drop every key, e.g. between two load test runs
+     */
+    public synchronized void flushAll() {
+        store.clear();
+    }
+
+    // ---- scripts, see resources/scripts/*.lua ----
+
+    private Long decreaseStock(List<String> keys, Object[] args) {
+        if (entry(keys.get(0)) == null) {
+            return LuaScriptRegistry.STOCK_NOT_INITIALIZED;
+        }
+        long stock = incrBy(keys.get(0), -1);
+        if (stock >= 0) {
+            incrBy(keys.get(1), 1);
+            if (keys.size() > 2) {
+                Map<String, Double> inflight = zset(keys.get(2));
+                if (inflight == null) {
+                    inflight = new HashMap<>();
+                    put(keys.get(2), inflight, 0);
+                }
+                inflight.put(text(args[0]), number(args[1]));
+            }
+            return stock;
+        }
+        // rollback if insufficient
+        incrBy(keys.get(0), 1);
+        return LuaScriptRegistry.STOCK_SOLD_OUT;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Long tokenBucket(String key, double rate, double capacity, double now, double requested) {
+        Entry entry = entry(key);
+        Map<String, Double> bucket = entry == null ? null : (Map<String, Double>) entry.value;
+        double tokens = capacity;
+        double lastTime = now;
+        if (bucket != null) {
+            tokens = bucket.get(HASH_TOKENS);
+            lastTime = bucket.get(HASH_TIMESTAMP);
+        } else {
+            bucket = new HashMap<>();
+            put(key, bucket, 0);
+        }
+
+        double generated = Math.max(0, now - lastTime) * rate / 1000;
+        tokens = Math.min(capacity, tokens + generated);
+        bucket.put(HASH_TIMESTAMP, now);
+        if (tokens >= requested) {
+            bucket.put(HASH_TOKENS, tokens - requested);
+            return 1L;
+        }
+        bucket.put(HASH_TOKENS, tokens);
+        return -(long) Math.ceil((requested - tokens) * 1000 / rate);
+    }
+
+    private Long gcra(String key, double rate, double capacity, double requested) {
+        long now = System.currentTimeMillis() * 1000;
+        double emissionInterval = 1000000 / rate;
+        double burstWindow = emissionInterval * capacity;
+
+        Object stored = value(key);
+        double tat = stored == null ? now : Math.max(now, toLong(stored));
+        double newTat = tat + emissionInterval * requested;
+        double allowAt = newTat - burstWindow;
+        if (allowAt > now) {
+            return -(long) Math.ceil((allowAt - now) / 1000);
+        }
+        put(key, (long) Math.floor(newTat), (long) Math.ceil((newTat - now) / 1000));
+        return 1L;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Long waitingRoomJoin(String positionsKey, String counterKey, String user, long ttlSeconds) {
+        Entry entry = entry(positionsKey);
+        Map<String, Long> positions = entry == null ? null : (Map<String, Long>) entry.value;
+        if (positions != null && positions.containsKey(user)) {
+            return positions.get(user);
+        }
+        long position = incrBy(counterKey, 1);
+        if (positions == null) {
+            positions = new HashMap<>();
+            put(positionsKey, positions, 0);
+        }
+        positions.put(user, position);
+        if (ttlSeconds > 0) {
+            expire(positionsKey, ttlSeconds);
+            expire(counterKey, ttlSeconds);
+        }
+        return position;
+    }
+
+    private Long waitingRoomAdvance(String admittedKey, String counterKey, long wave, long ttlSeconds) {
+        Object stored = value(admittedKey);
+        long admitted = stored == null ? 0 : toLong(stored);
+        if (wave <= 0) {
+            return admitted;
+        }
+        Object issuedValue = value(counterKey);
+        long issued = issuedValue == null ? 0 : toLong(issuedValue);
+        long target = Math.min(admitted + wave, issued);
+        if (target > admitted) {
+            put(admittedKey, target, ttlSeconds > 0 ? ttlSeconds * 1000 : 0);
+            return target;
+        }
+        return admitted;
+    }
+
+    // ---- store ----
+
+    private Entry entry(String key) {
+        Entry entry = store.get(key);
+        if (entry != null && entry.expireAt > 0 && entry.expireAt <= System.currentTimeMillis()) {
+            store.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private Object value(String key) {
+        Entry entry = entry(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Sorted set as member -> score, small enough here to scan for the lowest score
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Double> zset(String key) {
+        return (Map<String, Double>) value(key);
+    }
+
+    private void put(String key, Object value, long ttlMillis) {
+        store.put(key, new Entry(value, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0));
+    }
+
+    private void expire(String key, long ttlSeconds) {
+        Entry entry = entry(key);
+        if (entry != null) {
+            entry.expireAt = System.currentTimeMillis() + ttlSeconds * 1000;
+        }
+    }
+
+    /**
+     * INCRBY: keeps the TTL, a missing key counts as 0
+     */
+    private long incrBy(String key, long delta) {
+        Entry entry = entry(key);
+        if (entry == null) {
+            store.put(key, new Entry(delta, 0));
+            return delta;
+        }
+        long value = toLong(entry.value) + delta;
+        entry.value = value;
+        return value;
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return Long.parseLong(text(value));
+    }
+
+    /**
+     * Numbers read back as the JSON serializer would: Integer when they fit, Long otherwise
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Long) {
+            long number = (Long) value;
+            if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+                return (int) number;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Missing values come back from get_stock_values as ''
+     */
+    private static Object orEmpty(Object value) {
+        return value == null ? "" : normalize(value);
+    }
+
+    /**
+     * Script argument as text: pre-encoded bytes or a value, JSON quotes removed like toNumber() in the scripts
+     */
+    private static String text(Object arg) {
+        String text = arg instanceof byte[] ? new String((byte[]) arg, StandardCharsets.UTF_8) : String.valueOf(arg);
+        return text.replace("\"", "");
+    }
+
+    private static double number(Object arg) {
+        return Double.parseDouble(text(arg));
+    }
+
+    private static class Entry {
+        private Object value;
+        private long expireAt;
+
+        Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
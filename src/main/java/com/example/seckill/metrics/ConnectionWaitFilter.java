@@ -0,0 +1,62 @@
+package com.example.seckill.metrics;
+
+import com.alibaba.druid.filter.FilterAdapter;
+import com.alibaba.druid.filter.FilterChain;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.pool.DruidPooledConnection;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Druid filter timing DruidDataSource.getConnection, i.e. the wait for a pooled connection.
+ *
+ * Installed into every DruidDataSource before its init method runs. The wait also accumulates
+ * per thread, so StatementMetricsInterceptor can attribute it to the statement that borrowed the
+ * connection; inside a Spring transaction the connection is borrowed when the transaction begins
+ * and the wait only shows up in seckill.db.connection.wait.
+ */
+@Component
+public class ConnectionWaitFilter extends FilterAdapter implements BeanPostProcessor {
+
+    private static final ThreadLocal<long[]> THREAD_WAIT_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    // Resolved on first use, a BeanPostProcessor must not pull the meter registry in early
+    @Autowired
+    private ObjectProvider<SeckillMetrics> metrics;
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof DruidDataSource) {
+            ((DruidDataSource) bean).getProxyFilters().add(this);
+        }
+        return bean;
+    }
+
+    @Override
+    public DruidPooledConnection dataSource_getConnection(FilterChain chain, DruidDataSource dataSource,
+                                                          long maxWaitMillis) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return chain.dataSource_connect(dataSource, maxWaitMillis);
+        } finally {
+            long wait = System.nanoTime() - start;
+            THREAD_WAIT_NANOS.get()[0] += wait;
+            SeckillMetrics seckillMetrics = metrics.getIfAvailable();
+            if (seckillMetrics != null) {
+                seckillMetrics.getConnectionWait().record(wait, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Total connection wait of the current thread so far, nanoseconds
+     */
+    public static long threadWaitNanos() {
+        return THREAD_WAIT_NANOS.get()[0];
+    }
+}
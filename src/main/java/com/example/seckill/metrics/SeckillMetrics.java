@@ -0,0 +1,282 @@
+package com.example.seckill.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Meters for every stage of the seckill pipeline, exported at /actuator/prometheus.
+ *
+ * All timers are registered up front, one per outcome tag, so recording is a map lookup on a
+ * constant plus a bucket increment: no tag or meter id is built on the hot path. Timers publish
+ * fixed percentile histogram buckets (p50/p99 come from histogram_quantile on the Prometheus side)
+ * instead of client-side percentiles.
+ */
+@Component
+@Getter
+public class SeckillMetrics {
+
+    // Outcome tag values
+    public static final String SUCCESS = "success";
+    public static final String SOLD_OUT = "sold_out";
+    public static final String RATE_LIMITED = "rate_limited";
+    public static final String CONCURRENCY_LIMITED = "concurrency_limited";
+    public static final String REJECTED = "rejected";
+    public static final String INVALID = "invalid";
+    public static final String ERROR = "error";
+    public static final String DUPLICATE = "duplicate";
+    public static final String COMMIT = "commit";
+    public static final String ROLLBACK = "rollback";
+    public static final String UNKNOWN = "unknown";
+    public static final String SKIPPED = "skipped";
+
+    // Pipeline lag stage tag values: Redis deduction -> broker commit -> consumer receipt -> DB commit
+    public static final String STAGE_COMMIT = "commit";
+    public static final String STAGE_QUEUE = "queue";
+    public static final String STAGE_DB = "db";
+    public static final String STAGE_TOTAL = "total";
+    private static final String[] PIPELINE_STAGES = {STAGE_COMMIT, STAGE_QUEUE, STAGE_DB, STAGE_TOTAL};
+
+    @Autowired
+    private MeterRegistry registry;
+
+    /** POST /seckill/{userId}/{goodsId}, from the controller's point of view */
+    private OutcomeTimer request;
+    /** SeckillServiceImplv3.seckill: sold-out flags, admission, Redis deduction and MQ send */
+    private OutcomeTimer service;
+    /** decrease_stock script */
+    private OutcomeTimer redisDeduct;
+    /** Half message send, including the local transaction RocketMQ runs inline */
+    private OutcomeTimer mqSend;
+    /** Order insert in executeLocalTransaction */
+    private OutcomeTimer localTransaction;
+    /** Broker-initiated transaction checks */
+    private OutcomeTimer transactionCheck;
+    /** Whole stock reduction message handling */
+    private OutcomeTimer stockConsume;
+    /** DB stock update and idempotence record, in one transaction */
+    private OutcomeTimer stockDbUpdate;
+    /** Order cancellation message handling */
+    private OutcomeTimer orderCancel;
+    /** Redis round trip of the token bucket / GCRA scripts */
+    private OutcomeTimer rateLimitRedis;
+    /** Full reconciliation pass */
+    private OutcomeTimer reconcileScan;
+
+    /** Time from the message being stored by the broker to the consumer picking it up */
+    private Timer consumerLag;
+    /** Wait for a pooled connection in DruidDataSource.getConnection */
+    private Timer connectionWait;
+    /** Deduction to DB commit, per pipeline stage (PipelineLagTracker) */
+    private final Map<String, Timer> pipelineLag = new LinkedHashMap<>();
+    /** Requests turned away by the aspects before reaching the controller */
+    private Counter rateLimitRejections;
+    private Counter concurrencyLimitRejections;
+    private Counter reconcileMismatches;
+    private Counter reconcileAlerts;
+
+    /** Mapper statements by id, registered on first execution */
+    private final Map<String, StatementMeters> statements = new ConcurrentHashMap<>();
+
+    private final AtomicLong lastConsumerLagMillis = new AtomicLong();
+    private final AtomicLong lastReconcileMismatches = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        request = outcomeTimer("seckill.request", SUCCESS, SOLD_OUT, REJECTED, INVALID, ERROR);
+        service = outcomeTimer("seckill.service", SUCCESS, SOLD_OUT, REJECTED, ERROR);
+        redisDeduct = outcomeTimer("seckill.redis.deduct", SUCCESS, SOLD_OUT, ERROR);
+        mqSend = outcomeTimer("seckill.mq.send", SUCCESS, ERROR);
+        localTransaction = outcomeTimer("seckill.tx.local", COMMIT, ROLLBACK, ERROR);
+        transactionCheck = outcomeTimer("seckill.tx.check", COMMIT, ROLLBACK, UNKNOWN);
+        stockConsume = outcomeTimer("seckill.consumer.stock", SUCCESS, DUPLICATE, ERROR);
+        stockDbUpdate = outcomeTimer("seckill.db.stock.update", SUCCESS, SOLD_OUT, DUPLICATE, ERROR);
+        orderCancel = outcomeTimer("seckill.consumer.cancel", SUCCESS, SKIPPED, ERROR);
+        rateLimitRedis = outcomeTimer("seckill.ratelimit.redis", SUCCESS, RATE_LIMITED, ERROR);
+        reconcileScan = outcomeTimer("seckill.reconcile.scan", SUCCESS, ERROR);
+
+        consumerLag = histogram(Timer.builder("seckill.consumer.lag")
+                .description("Broker store time to consumer start"))
+                .maximumExpectedValue(Duration.ofMinutes(5))
+                .register(registry);
+        connectionWait = histogram(Timer.builder("seckill.db.connection.wait")
+                .description("Druid pool connection wait"))
+                .register(registry);
+        for (String stage : PIPELINE_STAGES) {
+            pipelineLag.put(stage, histogram(Timer.builder("seckill.pipeline.lag")
+                    .description("Time between two stamps of a stock reduction")
+                    .tag("stage", stage))
+                    .maximumExpectedValue(Duration.ofMinutes(10))
+                    .register(registry));
+        }
+        rateLimitRejections = Counter.builder("seckill.request.shed")
+                .tag("outcome", RATE_LIMITED)
+                .register(registry);
+        concurrencyLimitRejections = Counter.builder("seckill.request.shed")
+                .tag("outcome", CONCURRENCY_LIMITED)
+                .register(registry);
+        reconcileMismatches = Counter.builder("seckill.reconcile.mismatches")
+                .description("Goods whose Redis stock + reserved did not match the DB")
+                .register(registry);
+        reconcileAlerts = Counter.builder("seckill.reconcile.alerts")
+                .description("Mismatches that persisted through every re-check")
+                .register(registry);
+        Gauge.builder("seckill.consumer.lag.last", lastConsumerLagMillis, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("seckill.reconcile.last.mismatches", lastReconcileMismatches, AtomicLong::get)
+                .register(registry);
+    }
+
+    public void recordConsumerLag(long bornTimestamp) {
+        long lag = Math.max(0, System.currentTimeMillis() - bornTimestamp);
+        lastConsumerLagMillis.set(lag);
+        consumerLag.record(lag, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordPipelineLag(String stage, long millis) {
+        pipelineLag.get(stage).record(Math.max(0, millis), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * In-flight reservations of one goods, registered the first time the goods is tracked
+     */
+    public void registerInflightGauges(Long goodsId, AtomicLong count, AtomicLong oldestAgeMillis) {
+        Gauge.builder("seckill.pipeline.inflight", count, AtomicLong::get)
+                .description("Deducted in Redis, not yet committed to the DB")
+                .tag("goodsId", String.valueOf(goodsId))
+                .register(registry);
+        Gauge.builder("seckill.pipeline.inflight.oldest.age", oldestAgeMillis, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .tag("goodsId", String.valueOf(goodsId))
+                .register(registry);
+    }
+
+    public void removeInflightGauges(Long goodsId) {
+        String tag = String.valueOf(goodsId);
+        for (String name : new String[]{"seckill.pipeline.inflight", "seckill.pipeline.inflight.oldest.age"}) {
+            Gauge gauge = registry.find(name).tag("goodsId", tag).gauge();
+            if (gauge != null) {
+                registry.remove(gauge);
+            }
+        }
+    }
+
+    public void recordReconcileScan(int mismatches) {
+        lastReconcileMismatches.set(mismatches);
+        reconcileMismatches.increment(mismatches);
+    }
+
+    /**
+     * Meters of one mapped statement, e.g. "OrderDao.getOrdersByUserId"
+     */
+    public StatementMeters statement(String statement) {
+        StatementMeters meters = statements.get(statement);
+        if (meters == null) {
+            meters = statements.computeIfAbsent(statement, name -> new StatementMeters(name,
+                    statementTimer(name, SUCCESS, ERROR),
+                    DistributionSummary.builder("seckill.db.statement.rows")
+                            .description("Rows returned by a query or affected by an update")
+                            .tag("statement", name)
+                            .publishPercentileHistogram()
+                            .minimumExpectedValue(1.0)
+                            .maximumExpectedValue(10000.0)
+                            .register(registry),
+                    Counter.builder("seckill.db.statement.slow")
+                            .tag("statement", name)
+                            .register(registry)));
+        }
+        return meters;
+    }
+
+    public Map<String, StatementMeters> getStatements() {
+        return statements;
+    }
+
+    private OutcomeTimer outcomeTimer(String name, String... outcomes) {
+        Map<String, Timer> timers = new HashMap<>();
+        for (String outcome : outcomes) {
+            timers.put(outcome, histogram(Timer.builder(name).tag("outcome", outcome)).register(registry));
+        }
+        return new OutcomeTimer(timers);
+    }
+
+    private OutcomeTimer statementTimer(String statement, String... outcomes) {
+        Map<String, Timer> timers = new HashMap<>();
+        for (String outcome : outcomes) {
+            timers.put(outcome, histogram(Timer.builder("seckill.db.statement")
+                    .tag("statement", statement)
+                    .tag("outcome", outcome))
+                    .register(registry));
+        }
+        return new OutcomeTimer(timers);
+    }
+
+    private static Timer.Builder histogram(Timer.Builder builder) {
+        // Bounded bucket range keeps the exported series per timer small
+        return builder.publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(100)))
+                .maximumExpectedValue(Duration.ofSeconds(10));
+    }
+
+    /**
+     * One timer per outcome tag value, all registered under the same name
+     */
+    public static class OutcomeTimer {
+
+        private final Map<String, Timer> timers;
+
+        OutcomeTimer(Map<String, Timer> timers) {
+            this.timers = timers;
+        }
+
+        /**
+         * Record the time since startNanos (from {@link System#nanoTime()}) under an outcome
+         * registered for this timer
+         */
+        public void record(String outcome, long startNanos) {
+            timers.get(outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public Timer get(String outcome) {
+            return timers.get(outcome);
+        }
+    }
+
+    /**
+     * Latency per outcome, row counts and slow executions of one mapped statement
+     */
+    @Getter
+    public static class StatementMeters {
+
+        private final String statement;
+        private final OutcomeTimer latency;
+        private final DistributionSummary rows;
+        private final Counter slow;
+        /** Connection wait inside this statement's executions, nanoseconds */
+        private final AtomicLong connectionWaitNanos = new AtomicLong();
+        /** Last slow sample logged, epoch millis */
+        private final AtomicLong lastSlowLog = new AtomicLong();
+
+        StatementMeters(String statement, OutcomeTimer latency, DistributionSummary rows, Counter slow) {
+            this.statement = statement;
+            this.latency = latency;
+            this.rows = rows;
+            this.slow = slow;
+        }
+    }
+}
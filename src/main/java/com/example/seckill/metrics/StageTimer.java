@@ -0,0 +1,336 @@
+package com.example.seckill.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Per-request stage breakdown of the seckill path, for telling which stage a p99 spike came from.
+ *
+ * The controller opens a timeline with {@link #begin}, each stage is wrapped in
+ * {@code long t = stageTimer.start(); ... stageTimer.stop(Stage.X, t)} and {@link #end} closes it.
+ * Offsets and durations go into a fixed array of the thread's timeline, so stamping allocates
+ * nothing; stages called outside an open timeline (other entry points) are ignored. The local
+ * transaction runs inline on the sending thread, so ORDER_INSERT nests inside MQ_SEND.
+ *
+ * At {@link #end} every stage duration goes into that stage's HdrHistogram recorder, which are
+ * rotated into one-second buckets; the last {@code window-seconds} buckets are kept and merged on
+ * demand. Each bucket also keeps the {@code slowest} full timelines, only requests slower than the
+ * current minimum of a full bucket take its lock.
+ */
+@Component
+public class StageTimer {
+
+    public enum Stage {
+        /** Goods lookup in the local cache */
+        GOODS_LOOKUP,
+        /** Local / Redis sold-out flags */
+        SOLD_OUT_CHECK,
+        /** Remaining-stock admission */
+        ADMISSION,
+        /** Lazy stock initialization in Redis */
+        STOCK_INIT,
+        /** decrease_stock script */
+        REDIS_DEDUCT,
+        /** Half message send, including the local transaction */
+        MQ_SEND,
+        /** Order insert in executeLocalTransaction */
+        ORDER_INSERT,
+        /** Delayed cancellation message */
+        CANCEL_SEND
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    @Value("${seckill.stage-timer.enabled:true}")
+    private volatile boolean enabled;
+
+    @Value("${seckill.stage-timer.window-seconds:60}")
+    private int windowSeconds;
+
+    @Value("${seckill.stage-timer.slowest:10}")
+    private int slowest;
+
+    private final ThreadLocal<Timeline> timelines = ThreadLocal.withInitial(Timeline::new);
+
+    // One recorder per stage plus the whole request at index STAGES.length, values in microseconds
+    private final Recorder[] recorders = new Recorder[STAGES.length + 1];
+    private Bucket[] buckets;
+    private int bucketIndex;
+    private volatile SlowRequests currentSlow;
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < recorders.length; i++) {
+            recorders[i] = new Recorder(SIGNIFICANT_DIGITS);
+        }
+        buckets = new Bucket[Math.max(1, windowSeconds)];
+        currentSlow = new SlowRequests(slowest);
+    }
+
+    /**
+     * Open the timeline of the current request
+     */
+    public void begin(Long userId, Long goodsId) {
+        if (!enabled) {
+            return;
+        }
+        Timeline timeline = timelines.get();
+        timeline.reset(System.nanoTime(), userId, goodsId);
+    }
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Stamp a stage that started at {@code startNanos}, a stage run twice accumulates
+     */
+    public void stop(Stage stage, long startNanos) {
+        Timeline timeline = timelines.get();
+        if (!timeline.active) {
+            return;
+        }
+        long now = System.nanoTime();
+        int i = stage.ordinal();
+        if (timeline.durations[i] < 0) {
+            timeline.offsets[i] = startNanos - timeline.beginNanos;
+            timeline.durations[i] = now - startNanos;
+        } else {
+            timeline.durations[i] += now - startNanos;
+        }
+    }
+
+    /**
+     * Close the timeline of the current request and aggregate it
+     */
+    public void end(String outcome) {
+        Timeline timeline = timelines.get();
+        if (!timeline.active) {
+            return;
+        }
+        timeline.active = false;
+        long total = System.nanoTime() - timeline.beginNanos;
+        for (int i = 0; i < STAGES.length; i++) {
+            if (timeline.durations[i] >= 0) {
+                recorders[i].recordValue(timeline.durations[i] / 1000);
+            }
+        }
+        recorders[STAGES.length].recordValue(total / 1000);
+
+        SlowRequests slow = currentSlow;
+        if (total > slow.floor) {
+            slow.offer(new Sample(timeline, total, outcome));
+        }
+    }
+
+    /**
+     * Close the current second's bucket
+     */
+    @Scheduled(fixedRate = 1000)
+    public void rotate() {
+        Histogram[] histograms = new Histogram[recorders.length];
+        for (int i = 0; i < recorders.length; i++) {
+            Histogram interval = recorders[i].getIntervalHistogram();
+            histograms[i] = interval.getTotalCount() == 0 ? null : interval;
+        }
+        SlowRequests slow = currentSlow;
+        currentSlow = new SlowRequests(slowest);
+        synchronized (this) {
+            buckets[bucketIndex] = new Bucket(histograms, slow.snapshot());
+            bucketIndex = (bucketIndex + 1) % buckets.length;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Stage percentiles and the slowest timelines of the last {@code seconds} seconds, in milliseconds
+     */
+    public Map<String, Object> getStats(int seconds) {
+        int count = Math.max(1, Math.min(seconds, buckets.length));
+        Histogram[] merged = new Histogram[recorders.length];
+        List<Sample> samples = new ArrayList<>();
+        synchronized (this) {
+            for (int n = 1; n <= count; n++) {
+                Bucket bucket = buckets[(bucketIndex - n + buckets.length) % buckets.length];
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 0; i < merged.length; i++) {
+                    if (bucket.histograms[i] == null) {
+                        continue;
+                    }
+                    if (merged[i] == null) {
+                        merged[i] = new Histogram(SIGNIFICANT_DIGITS);
+                    }
+                    merged[i].add(bucket.histograms[i]);
+                }
+                samples.addAll(bucket.slowest);
+            }
+        }
+        samples.sort(Comparator.comparingLong((Sample sample) -> sample.totalNanos).reversed());
+
+        Map<String, Object> stages = new LinkedHashMap<>();
+        for (int i = 0; i < STAGES.length; i++) {
+            stages.put(STAGES[i].name(), summary(merged[i]));
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("seconds", count);
+        stats.put("total", summary(merged[STAGES.length]));
+        stats.put("stages", stages);
+        List<Map<String, Object>> slowestTimelines = new ArrayList<>();
+        for (Sample sample : samples.subList(0, Math.min(slowest, samples.size()))) {
+            slowestTimelines.add(sample.toMap());
+        }
+        stats.put("slowest", slowestTimelines);
+        return stats;
+    }
+
+    private static Map<String, Object> summary(Histogram histogram) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        if (histogram == null) {
+            summary.put("count", 0);
+            return summary;
+        }
+        summary.put("count", histogram.getTotalCount());
+        summary.put("mean", round(histogram.getMean() / 1000.0));
+        summary.put("p50", ms(histogram.getValueAtPercentile(50)));
+        summary.put("p99", ms(histogram.getValueAtPercentile(99)));
+        summary.put("max", ms(histogram.getMaxValue()));
+        return summary;
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    /**
+     * Stamps of the request on this thread, reused across requests
+     */
+    private static class Timeline {
+        private final long[] offsets = new long[STAGES.length];
+        private final long[] durations = new long[STAGES.length];
+        private long beginNanos;
+        private Long userId;
+        private Long goodsId;
+        private boolean active;
+
+        void reset(long beginNanos, Long userId, Long goodsId) {
+            Arrays.fill(durations, -1);
+            this.beginNanos = beginNanos;
+            this.userId = userId;
+            this.goodsId = goodsId;
+            this.active = true;
+        }
+    }
+
+    /**
+     * Copy of a finished timeline
+     */
+    private static class Sample {
+        private final long[] offsets;
+        private final long[] durations;
+        private final long totalNanos;
+        private final long timestamp;
+        private final Long userId;
+        private final Long goodsId;
+        private final String outcome;
+
+        Sample(Timeline timeline, long totalNanos, String outcome) {
+            this.offsets = timeline.offsets.clone();
+            this.durations = timeline.durations.clone();
+            this.totalNanos = totalNanos;
+            this.timestamp = System.currentTimeMillis();
+            this.userId = timeline.userId;
+            this.goodsId = timeline.goodsId;
+            this.outcome = outcome;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("timestamp", timestamp);
+            map.put("userId", userId);
+            map.put("goodsId", goodsId);
+            map.put("outcome", outcome);
+            map.put("total", ms(totalNanos / 1000));
+            List<Map<String, Object>> stages = new ArrayList<>();
+            for (int i = 0; i < STAGES.length; i++) {
+                if (durations[i] < 0) {
+                    continue;
+                }
+                Map<String, Object> stage = new LinkedHashMap<>();
+                stage.put("stage", STAGES[i].name());
+                stage.put("offset", ms(offsets[i] / 1000));
+                stage.put("duration", ms(durations[i] / 1000));
+                stages.add(stage);
+            }
+            stages.sort(Comparator.comparingDouble(stage -> (Double) stage.get("offset")));
+            map.put("stages", stages);
+            return map;
+        }
+    }
+
+    /**
+     * The slowest requests of one second, a min-heap bounded to {@code limit}
+     */
+    private static class SlowRequests {
+        private final int limit;
+        private final PriorityQueue<Sample> heap;
+        // Requests at or below this cannot make it into a full heap
+        private volatile long floor;
+
+        SlowRequests(int limit) {
+            this.limit = Math.max(1, limit);
+            this.heap = new PriorityQueue<>(this.limit, Comparator.comparingLong((Sample sample) -> sample.totalNanos));
+        }
+
+        synchronized void offer(Sample sample) {
+            if (heap.size() < limit) {
+                heap.add(sample);
+            } else if (sample.totalNanos > heap.peek().totalNanos) {
+                heap.poll();
+                heap.add(sample);
+            } else {
+                return;
+            }
+            if (heap.size() == limit) {
+                floor = heap.peek().totalNanos;
+            }
+        }
+
+        synchronized List<Sample> snapshot() {
+            return new ArrayList<>(heap);
+        }
+    }
+
+    private static class Bucket {
+        private final Histogram[] histograms;
+        private final List<Sample> slowest;
+
+        Bucket(Histogram[] histograms, List<Sample> slowest) {
+            this.histograms = histograms;
+            this.slowest = slowest;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.seckill.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MyBatis plugin timing every mapped statement of the seckill DAOs (GoodsDao, OrderDao,
+ * IdempotenceRecordDao).
+ *
+ * Per statement it records latency by outcome, returned / affected rows and the Druid connection
+ * wait that happened inside the execution (see ConnectionWaitFilter). Executions slower than
+ * {@code seckill.db.slow-statement-ms} count as slow, and at most one of them per statement and
+ * {@code seckill.db.slow-log-interval-ms} is logged with its SQL and bound parameters, so a sale
+ * full of slow inserts does not flood the log.
+ */
+@Component
+@Slf4j
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+public class StatementMetricsInterceptor implements Interceptor {
+
+    private static final String DAO_PACKAGE = "com.example.seckill.dao.";
+
+    @Autowired
+    private SeckillMetrics metrics;
+
+    @Value("${seckill.db.statement-metrics.enabled:true}")
+    private volatile boolean enabled;
+
+    @Value("${seckill.db.slow-statement-ms:50}")
+    private long slowStatementMs;
+
+    @Value("${seckill.db.slow-log-interval-ms:1000}")
+    private long slowLogIntervalMs;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement mappedStatement = (MappedStatement) args[0];
+        if (!enabled || !mappedStatement.getId().startsWith(DAO_PACKAGE)) {
+            return invocation.proceed();
+        }
+
+        SeckillMetrics.StatementMeters meters = metrics.statement(mappedStatement.getId().substring(DAO_PACKAGE.length()));
+        long waitBefore = ConnectionWaitFilter.threadWaitNanos();
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            meters.getLatency().record(SeckillMetrics.ERROR, start);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        meters.getLatency().record(SeckillMetrics.SUCCESS, start);
+        long wait = ConnectionWaitFilter.threadWaitNanos() - waitBefore;
+        if (wait > 0) {
+            meters.getConnectionWaitNanos().addAndGet(wait);
+        }
+        int rows = rowsOf(result);
+        meters.getRows().record(rows);
+
+        if (elapsed >= TimeUnit.MILLISECONDS.toNanos(slowStatementMs)) {
+            meters.getSlow().increment();
+            logSlowSample(meters, mappedStatement, args, elapsed, wait, rows);
+        }
+        return result;
+    }
+
+    private static int rowsOf(Object result) {
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        return result == null ? 0 : 1;
+    }
+
+    private void logSlowSample(SeckillMetrics.StatementMeters meters, MappedStatement mappedStatement, Object[] args,
+                               long elapsed, long wait, int rows) {
+        long now = System.currentTimeMillis();
+        long last = meters.getLastSlowLog().get();
+        if (now - last < slowLogIntervalMs || !meters.getLastSlowLog().compareAndSet(last, now)) {
+            return;
+        }
+        BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : mappedStatement.getBoundSql(args[1]);
+        log.warn("Slow statement {} took {} ms (connection wait {} ms), rows {}: {} parameters {}",
+                meters.getStatement(), TimeUnit.NANOSECONDS.toMillis(elapsed), TimeUnit.NANOSECONDS.toMillis(wait),
+                rows, boundSql.getSql().replaceAll("\\s+", " ").trim(),
+                parameters(mappedStatement.getConfiguration(), boundSql, args[1]));
+    }
+
+    /**
+     * Bound parameter values in placeholder order, resolved the way DefaultParameterHandler does
+     */
+    private static List<Object> parameters(Configuration configuration, BoundSql boundSql, Object parameterObject) {
+        TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+        List<Object> values = new ArrayList<>();
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            if (mapping.getMode() == ParameterMode.OUT) {
+                continue;
+            }
+            String property = mapping.getProperty();
+            if (boundSql.hasAdditionalParameter(property)) {
+                values.add(boundSql.getAdditionalParameter(property));
+            } else if (parameterObject == null) {
+                values.add(null);
+            } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+                values.add(parameterObject);
+            } else {
+                values.add(configuration.newMetaObject(parameterObject).getValue(property));
+            }
+        }
+        return values;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Per statement: executions, errors, mean / max latency, mean rows, connection wait and slow executions
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> statements = new TreeMap<>();
+        for (SeckillMetrics.StatementMeters meters : metrics.getStatements().values()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            Timer success = meters.getLatency().get(SeckillMetrics.SUCCESS);
+            stats.put("count", success.count());
+            stats.put("errors", meters.getLatency().get(SeckillMetrics.ERROR).count());
+            stats.put("meanMs", success.mean(TimeUnit.MILLISECONDS));
+            stats.put("maxMs", success.max(TimeUnit.MILLISECONDS));
+            stats.put("meanRows", meters.getRows().mean());
+            stats.put("connectionWaitMs", TimeUnit.NANOSECONDS.toMillis(meters.getConnectionWaitNanos().get()));
+            stats.put("slow", (long) meters.getSlow().count());
+            statements.put(meters.getStatement(), stats);
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("enabled", enabled);
+        result.put("slowStatementMs", slowStatementMs);
+        result.put("connectionWaitCount", metrics.getConnectionWait().count());
+        result.put("connectionWaitMaxMs", metrics.getConnectionWait().max(TimeUnit.MILLISECONDS));
+        result.put("statements", statements);
+        return result;
+    }
+}
@@ -6,6 +6,9 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 
+import com.example.seckill.jfr.JfrSupport;
+import com.example.seckill.jfr.MqSendEvent;
+import com.example.seckill.metrics.SeckillMetrics;
 import com.example.seckill.redis.SeckillKey;
 import com.example.seckill.service.RedisService;
 import com.example.seckill.vo.GoodsVo;
@@ -22,7 +25,8 @@ import java.util.UUID;
 @Service
 public class MQProducer {
 
-    @Autowired
+    // Absent in the local-perf profile, where LocalMQProducer overrides every send hook
+    @Autowired(required = false)
     private RocketMQTemplate rocketMQTemplate;
     
     @Autowired
@@ -30,9 +34,12 @@ public class MQProducer {
 
     @Autowired
     private RedisService redisService;
+
+    @Autowired
+    private SeckillMetrics metrics;
     
-    private static final String TOPIC_TEST = "topic-test";
-    private static final String TOPIC_STOCK_REDUCTION = "topic-stock-reduction";
+    public static final String TOPIC_TEST = "topic-test";
+    public static final String TOPIC_STOCK_REDUCTION = "topic-stock-reduction";
     
     public static final String TOPIC_ORDER_CANCEL = "topic-order-cancel";
     
@@ -40,7 +47,7 @@ public class MQProducer {
      * Send a simple message
      */
     public void sendMessage(String message) {
-        rocketMQTemplate.convertAndSend(TOPIC_TEST, message);
+        send(TOPIC_TEST, message);
         System.out.println("Message sent: " + message);
     }
     
@@ -48,7 +55,7 @@ public class MQProducer {
      * Send object message
      */
     public void sendObjectMessage(Object obj) {
-        rocketMQTemplate.convertAndSend(TOPIC_TEST, obj);
+        send(TOPIC_TEST, obj);
         System.out.println("Object message sent: " + obj);
     }
 
@@ -56,20 +63,25 @@ public class MQProducer {
      * Send delayed message
      */
     public void sendDelayedMessage(String message, int delayLevel) {
-        rocketMQTemplate.syncSend(TOPIC_TEST, 
-            MessageBuilder.withPayload(message).build(),
-            2000, 
-            delayLevel);
+        sendDelayed(TOPIC_TEST, MessageBuilder.withPayload(message).build(), delayLevel);
         System.out.println("Delayed message sent: " + message + " with delay level: " + delayLevel);
     }
     
+    /**
+     * Transaction id of a new stock reduction, taken before the Redis deduction so it can be tracked from there
+     */
+    public static String newTransactionId() {
+        return UUID.randomUUID().toString();
+    }
+
     /**
      * Send transaction message for stock reduction
      * This ensures the inventory is reduced only if the order is successfully created
+     *
+     * @param deductedAt time of the Redis pre-deduction (epoch millis), carried to the consumer for lag tracking
      */
-    public String sendStockReductionTransactionMessage(Long userId, GoodsVo goodsVo) throws JsonProcessingException {
-        String transactionId = UUID.randomUUID().toString();
-        
+    public String sendStockReductionTransactionMessage(Long userId, GoodsVo goodsVo, String transactionId, long deductedAt)
+            throws JsonProcessingException {
         // Message = what downstream services need
         // Args = what local transaction needs
 
@@ -77,6 +89,7 @@ public class MQProducer {
         Map<String, Object> payload = new HashMap<>();
         payload.put("goodsId", goodsVo.getId());
         payload.put("transactionId", transactionId);
+        payload.put("deductedAt", deductedAt);
 
         
         // Create the message with transaction ID in headers
@@ -97,10 +110,25 @@ public class MQProducer {
         redisService.set(SeckillKey.txStartTime, transactionId, System.currentTimeMillis());
 
         // Send transactional message
-        rocketMQTemplate.sendMessageInTransaction(
-                TOPIC_STOCK_REDUCTION, 
-                message, 
-                transactionArgs);
+        long sendStart = System.nanoTime();
+        MqSendEvent sendEvent = null;
+        if (JfrSupport.AVAILABLE) {
+            sendEvent = new MqSendEvent();
+            sendEvent.begin();
+        }
+        try {
+            sendInTransaction(TOPIC_STOCK_REDUCTION, message, transactionArgs);
+        } catch (RuntimeException e) {
+            metrics.getMqSend().record(SeckillMetrics.ERROR, sendStart);
+            if (sendEvent != null) {
+                sendEvent.commit(goodsVo.getId(), transactionId, SeckillMetrics.ERROR);
+            }
+            throw e;
+        }
+        metrics.getMqSend().record(SeckillMetrics.SUCCESS, sendStart);
+        if (sendEvent != null) {
+            sendEvent.commit(goodsVo.getId(), transactionId, SeckillMetrics.SUCCESS);
+        }
         
         log.info("Transaction message sent for order creation with txId: {}", transactionId);
 
@@ -118,11 +146,31 @@ public class MQProducer {
                 
                 // Use delay level 18, which means the order will timeout after 30 minutes
                 // RocketMQ supported delay levels: 1s 5s 10s 30s 1m 2m 3m 4m 5m 6m 7m 8m 9m 10m 20m 30m 1h 2h
-                rocketMQTemplate.syncSend(TOPIC_ORDER_CANCEL, message, 
-                2000, 18);
+                sendDelayed(TOPIC_ORDER_CANCEL, message, 18);
             log.info("Order cancellation message sent for transactionId: {}, will be processed after 30 minutes", transactionId);
         } catch (Exception e) {
             log.error("Failed to send order cancellation message for transactionId: {}", transactionId, e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Send a payload, converted by the template
+     */
+    protected void send(String topic, Object payload) {
+        rocketMQTemplate.convertAndSend(topic, payload);
+    }
+
+    /**
+     * Send a message delivered after the broker delay level (1s 5s 10s 30s 1m ... 2h)
+     */
+    protected void sendDelayed(String topic, Message<?> message, int delayLevel) {
+        rocketMQTemplate.syncSend(topic, message, 2000, delayLevel);
+    }
+
+    /**
+     * Send a half message; the broker delivers it once SeckillTransactionListener commits
+     */
+    protected void sendInTransaction(String topic, Message<?> message, Object arg) {
+        rocketMQTemplate.sendMessageInTransaction(topic, message, arg);
+    }
+}
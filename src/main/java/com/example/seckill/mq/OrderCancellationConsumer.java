@@ -2,7 +2,8 @@ package com.example.seckill.mq;
 
 import com.example.seckill.dao.GoodsDao;
 import com.example.seckill.entity.SeckillOrder;
-import com.example.seckill.redis.SeckillKey;
+import com.example.seckill.metrics.SeckillMetrics;
+import com.example.seckill.redis.LuaScriptRegistry;
 import com.example.seckill.service.OrderService;
 import com.example.seckill.service.RedisService;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -12,11 +13,9 @@ import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
 import org.apache.rocketmq.spring.core.RocketMQListener;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -42,19 +41,14 @@ public class OrderCancellationConsumer implements RocketMQListener<String> {
 
     @Autowired
     private ApplicationContext applicationContext;
-    
-    // Redis script to rollback stock
-    private static final String ROLLBACK_STOCK_SCRIPT = 
-        "redis.call('incr', KEYS[1]) " +
-        "redis.call('decr', KEYS[2]) " +
-        "return 1";
 
-    private static final DefaultRedisScript<Long> ROLLBACK_STOCK_REDIS_SCRIPT = 
-        new DefaultRedisScript<>(ROLLBACK_STOCK_SCRIPT, Long.class);
+    @Autowired
+    private SeckillMetrics metrics;
     
     @Override
     public void onMessage(String message) {
         log.info("Received order cancellation message: {}", message);
+        long start = System.nanoTime();
         try {
             Map<String, Object> msgMap = objectMapper.readValue(message, HashMap.class);
             String transactionId = (String) msgMap.get("transactionId");
@@ -62,34 +56,45 @@ public class OrderCancellationConsumer implements RocketMQListener<String> {
             // Process order cancellation
             if (transactionId != null && !transactionId.isEmpty()) {
                 OrderCancellationConsumer proxy = applicationContext.getBean(OrderCancellationConsumer.class);
-                proxy.processOrderCancellation(transactionId);
+                boolean cancelled = proxy.processOrderCancellation(transactionId);
+                metrics.getOrderCancel().record(cancelled ? SeckillMetrics.SUCCESS : SeckillMetrics.SKIPPED, start);
             } else {
                 log.error("Invalid order cancellation message, transactionId is missing: {}", message);
+                metrics.getOrderCancel().record(SeckillMetrics.ERROR, start);
             }
         } catch (JsonProcessingException e) {
             log.error("Failed to parse order cancellation message: {}", message, e);
+            metrics.getOrderCancel().record(SeckillMetrics.ERROR, start);
+        } catch (RuntimeException e) {
+            metrics.getOrderCancel().record(SeckillMetrics.ERROR, start);
+            throw e;
         }
     }
     
+    /**
+     * Cancel an unpaid order and return its stock
+     *
+     * @return whether the order was cancelled
+     */
     @Transactional
-    public void processOrderCancellation(String transactionId) {
+    public boolean processOrderCancellation(String transactionId) {
         // 1. Get order information
         SeckillOrder order = orderService.getOrderByTransactionId(transactionId);
         
         if (order == null) {
             log.info("Order not found for cancellation, transactionId: {}", transactionId);
-            return;
+            return false;
         }
         
         // 2. Check order status, only unpaid orders can be cancelled
         if (order.getStatus() != 0) {
             log.info("Order already processed (paid or cancelled), transactionId: {}, status: {}", 
                     transactionId, order.getStatus());
-            return;
+            return false;
         }
         
         // 3. Update order status to cancelled
-        boolean success = orderService.cancelOrder(transactionId);
+        boolean success = orderService.cancelOrder(transactionId, order.getOrderNo());
         
         if (success) {
             log.info("Order cancelled successfully: {}", transactionId);
@@ -102,15 +107,11 @@ public class OrderCancellationConsumer implements RocketMQListener<String> {
         } else {
             log.error("Failed to cancel order: {}", transactionId);
         }
+        return success;
     }
     
     private void rollbackRedisStock(Long goodsId) {
-        redisService.executeScript(
-            ROLLBACK_STOCK_REDIS_SCRIPT,
-            Arrays.asList(
-                redisService.getRealKey(SeckillKey.goodsStock, "" + goodsId),
-                redisService.getRealKey(SeckillKey.reservedStock, "" + goodsId)
-            )
-        );
+        // The reserved unit was already released when the order was consumed, only the stock goes back
+        redisService.executeStockScript(LuaScriptRegistry.CANCEL_STOCK, Long.class, goodsId);
     }
 }
\ No newline at end of file
@@ -8,9 +8,14 @@ import org.springframework.messaging.Message;
 import org.springframework.stereotype.Component;
 
 import com.example.seckill.entity.SeckillOrder;
+import com.example.seckill.jfr.JfrSupport;
+import com.example.seckill.jfr.LocalTransactionEvent;
+import com.example.seckill.metrics.SeckillMetrics;
+import com.example.seckill.metrics.StageTimer;
 import com.example.seckill.redis.SeckillKey;
 import com.example.seckill.service.GoodsService;
 import com.example.seckill.service.OrderService;
+import com.example.seckill.service.PipelineLagTracker;
 import com.example.seckill.service.RedisService;
 import com.example.seckill.vo.GoodsVo;
 
@@ -32,6 +37,15 @@ public class SeckillTransactionListener implements RocketMQLocalTransactionListe
     
     @Autowired
     private RedisService redisService;
+
+    @Autowired
+    private SeckillMetrics metrics;
+
+    @Autowired
+    private StageTimer stageTimer;
+
+    @Autowired
+    private PipelineLagTracker pipelineLagTracker;
     
     // Store transaction execution results for check mechanism
     private final ConcurrentHashMap<String, RocketMQLocalTransactionState> localTransactionMap = new ConcurrentHashMap<>();
@@ -44,6 +58,15 @@ public class SeckillTransactionListener implements RocketMQLocalTransactionListe
      */
     @Override
     public RocketMQLocalTransactionState executeLocalTransaction(Message msg, Object arg) {
+        long start = System.nanoTime();
+        LocalTransactionEvent event = null;
+        if (JfrSupport.AVAILABLE) {
+            event = new LocalTransactionEvent();
+            event.begin();
+        }
+        GoodsVo goodsVo = null;
+        String transactionId = null;
+        boolean committed = false;
         try {
             log.info("Executing local transaction for message: {}", msg);
             
@@ -51,11 +74,13 @@ public class SeckillTransactionListener implements RocketMQLocalTransactionListe
             @SuppressWarnings("unchecked")
             Map<String, Object> params = (Map<String, Object>) arg;
             Long userId = (Long) params.get("userId");
-            GoodsVo goodsVo = (GoodsVo) params.get("goodsVo");
-            String transactionId = (String) params.get("transactionId");
+            goodsVo = (GoodsVo) params.get("goodsVo");
+            transactionId = (String) params.get("transactionId");
             
             // Execute local transaction - create order in database with transaction ID
+            long insertStart = stageTimer.start();
             boolean success = createOrderInDB(userId, goodsVo, transactionId);
+            stageTimer.stop(StageTimer.Stage.ORDER_INSERT, insertStart);
             
             // Record transaction result
             RocketMQLocalTransactionState state = success ? 
@@ -65,11 +90,26 @@ public class SeckillTransactionListener implements RocketMQLocalTransactionListe
             localTransactionMap.put(transactionId, state);
             
             log.info("Local transaction executed with result: {}, txId: {}", state, transactionId);
+            String outcome = success ? SeckillMetrics.COMMIT : SeckillMetrics.ROLLBACK;
+            metrics.getLocalTransaction().record(outcome, start);
+            if (event != null) {
+                event.commit(goodsVo.getId(), transactionId, outcome);
+            }
+            committed = success;
             return state;
             
         } catch (Exception e) {
             log.error("Error executing local transaction", e);
+            metrics.getLocalTransaction().record(SeckillMetrics.ERROR, start);
+            if (event != null) {
+                event.commit(goodsVo == null ? 0 : goodsVo.getId(), transactionId, SeckillMetrics.ERROR);
+            }
             return RocketMQLocalTransactionState.ROLLBACK;
+        } finally {
+            if (!committed && goodsVo != null && transactionId != null) {
+                // The half message is discarded, the reservation never reaches the consumer
+                pipelineLagTracker.released(goodsVo.getId(), transactionId);
+            }
         }
     }
 
@@ -80,6 +120,21 @@ public class SeckillTransactionListener implements RocketMQLocalTransactionListe
      */
     @Override
     public RocketMQLocalTransactionState checkLocalTransaction(Message msg) {
+        long start = System.nanoTime();
+        RocketMQLocalTransactionState state = doCheckLocalTransaction(msg);
+        String outcome;
+        if (state == RocketMQLocalTransactionState.COMMIT) {
+            outcome = SeckillMetrics.COMMIT;
+        } else if (state == RocketMQLocalTransactionState.ROLLBACK) {
+            outcome = SeckillMetrics.ROLLBACK;
+        } else {
+            outcome = SeckillMetrics.UNKNOWN;
+        }
+        metrics.getTransactionCheck().record(outcome, start);
+        return state;
+    }
+
+    private RocketMQLocalTransactionState doCheckLocalTransaction(Message msg) {
         try {
             // Extract transaction id from message headers
             String transactionId = (String) msg.getHeaders().get("transactionId");
@@ -1,5 +1,6 @@
 package com.example.seckill.mq;
 
+import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
 import org.apache.rocketmq.spring.core.RocketMQListener;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,14 +10,19 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.example.seckill.dao.IdempotenceRecordDao;
 import com.example.seckill.entity.IdempotenceRecord;
-import com.example.seckill.redis.SeckillKey;
+import com.example.seckill.jfr.JfrSupport;
+import com.example.seckill.jfr.StockConsumeEvent;
+import com.example.seckill.metrics.SeckillMetrics;
+import com.example.seckill.redis.LuaScriptRegistry;
 import com.example.seckill.service.GoodsService;
+import com.example.seckill.service.PipelineLagTracker;
 import com.example.seckill.service.RedisService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Map;
 
@@ -26,7 +32,7 @@ import java.util.Map;
     topic = "topic-stock-reduction",
     consumerGroup = "stock-reduction-consumer-group"
 )
-public class StockReductionConsumer implements RocketMQListener<String> {
+public class StockReductionConsumer implements RocketMQListener<MessageExt> {
 
     private static final Integer MESSAGE_RECORD_EXPIRE_TIME = 3 * 24 * 60 * 60;
     
@@ -45,16 +51,35 @@ public class StockReductionConsumer implements RocketMQListener<String> {
     @Autowired
     private ApplicationContext applicationContext;
 
+    @Autowired
+    private SeckillMetrics metrics;
+
+    @Autowired
+    private PipelineLagTracker pipelineLagTracker;
+
     @Override
-    public void onMessage(String message) {
+    public void onMessage(MessageExt messageExt) {
+        // Received as MessageExt for the broker store timestamp, i.e. how long the message waited
+        metrics.recordConsumerLag(messageExt.getStoreTimestamp());
+        long receivedAt = System.currentTimeMillis();
+        long start = System.nanoTime();
+        StockConsumeEvent event = null;
+        if (JfrSupport.AVAILABLE) {
+            event = new StockConsumeEvent();
+            event.begin();
+        }
+        long goodsId = 0;
+        String transactionId = null;
+        String message = new String(messageExt.getBody(), StandardCharsets.UTF_8);
         try {
             log.info("Received stock reduction message: {}", message);
             
             // Parse the message
             @SuppressWarnings("unchecked")
             Map<String, Object> payload = objectMapper.readValue(message, Map.class);
-            Long goodsId = Long.valueOf(payload.get("goodsId").toString());
-            String transactionId = payload.get("transactionId").toString();
+            goodsId = Long.parseLong(payload.get("goodsId").toString());
+            transactionId = payload.get("transactionId").toString();
+            Object deductedAt = payload.get("deductedAt");
             
             // boolean success = reduceStockAtLeastOnce(goodsId);
 
@@ -62,16 +87,35 @@ public class StockReductionConsumer implements RocketMQListener<String> {
 
             if (!success) {
                 log.info("Failed to reduce stock in database for goods: {} transactionId: {} because already reduced", goodsId, transactionId);
+                metrics.getStockConsume().record(SeckillMetrics.DUPLICATE, start);
+                if (event != null) {
+                    event.commit(goodsId, transactionId, SeckillMetrics.DUPLICATE);
+                }
+                pipelineLagTracker.released(goodsId, transactionId);
             } else {
-                redisService.decr(SeckillKey.reservedStock, "" + goodsId);
+                redisService.executeStockScript(LuaScriptRegistry.CONSUME_RESERVED, Long.class, goodsId);
+                pipelineLagTracker.committed(goodsId, transactionId,
+                        deductedAt == null ? null : Long.valueOf(deductedAt.toString()), messageExt.getStoreTimestamp(), receivedAt);
                 log.info("Inventory updated successfully for goods: {}", goodsId);
+                metrics.getStockConsume().record(SeckillMetrics.SUCCESS, start);
+                if (event != null) {
+                    event.commit(goodsId, transactionId, SeckillMetrics.SUCCESS);
+                }
             }
             
             
         } catch (JsonProcessingException e) {
             log.error("Error parsing stock reduction message", e);
+            metrics.getStockConsume().record(SeckillMetrics.ERROR, start);
+            if (event != null) {
+                event.commit(goodsId, transactionId, SeckillMetrics.ERROR);
+            }
         } catch (Exception e) {
             log.error("Error processing stock reduction", e);
+            metrics.getStockConsume().record(SeckillMetrics.ERROR, start);
+            if (event != null) {
+                event.commit(goodsId, transactionId, SeckillMetrics.ERROR);
+            }
             throw e; // Throw exception to let MQ retry
         }
     }
@@ -108,13 +152,20 @@ public class StockReductionConsumer implements RocketMQListener<String> {
             return false;
         }
         // 3. Execute stock reduction and record the message in the same transaction
+        long start = System.nanoTime();
         try {
             StockReductionConsumer proxy = applicationContext.getBean(StockReductionConsumer.class);
-            return proxy.processWithTransaction(goodsId, transactionId);
+            boolean success = proxy.processWithTransaction(goodsId, transactionId);
+            metrics.getStockDbUpdate().record(success ? SeckillMetrics.SUCCESS : SeckillMetrics.SOLD_OUT, start);
+            return success;
         } catch (org.springframework.dao.DataIntegrityViolationException e) {
             // Catch the unique index violation exception, indicating concurrent processing record already exists
             log.info("Duplicate processing detected, transactionId: {}", transactionId);
+            metrics.getStockDbUpdate().record(SeckillMetrics.DUPLICATE, start);
             return false;
+        } catch (RuntimeException e) {
+            metrics.getStockDbUpdate().record(SeckillMetrics.ERROR, start);
+            throw e;
         }
     }
 
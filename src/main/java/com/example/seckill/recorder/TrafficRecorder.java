@@ -0,0 +1,243 @@
+package com.example.seckill.recorder;
+
+import com.example.seckill.metrics.SeckillMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes one fixed-size binary record per request into memory-mapped segment files.
+ *
+ * Each segment is preallocated for {@code file-records} records and mapped once; a writer claims a
+ * slot with one atomic increment and fills it with absolute puts, so recording takes no lock and
+ * does no I/O on the request thread (the page cache is flushed by the OS). When a segment is full
+ * the next one is opened and the oldest is deleted beyond {@code max-files}.
+ *
+ * Record layout, 32 bytes, big endian (see loadgen TrafficRecord for the reader):
+ * <pre>
+ *   0  long   arrival time, epoch microseconds
+ *   8  long   userId, 0 when the route has none
+ *  16  long   goodsId, 0 when the route has none
+ *  24  int    latency in microseconds
+ *  28  short  HTTP status
+ *  30  byte   route code (TrafficRoute)
+ *  31  byte   outcome code (OUTCOMES index + 1, 0 unknown)
+ * </pre>
+ * Unused slots stay zero and are skipped by readers. Slots of one segment are claimed in arrival
+ * order but may be completed out of order, readers sort by timestamp.
+ */
+@Component
+@Slf4j
+public class TrafficRecorder {
+
+    public static final int RECORD_SIZE = 32;
+
+    // Outcome codes, position + 1 is written to the record
+    private static final String[] OUTCOMES = {
+            SeckillMetrics.SUCCESS, SeckillMetrics.SOLD_OUT, SeckillMetrics.RATE_LIMITED,
+            SeckillMetrics.CONCURRENCY_LIMITED, SeckillMetrics.REJECTED, SeckillMetrics.INVALID,
+            SeckillMetrics.ERROR};
+
+    private static final String OUTCOME_ATTRIBUTE = TrafficRecorder.class.getName() + ".outcome";
+    private static final String FILE_PREFIX = "traffic-";
+    private static final String FILE_SUFFIX = ".bin";
+
+    @Value("${seckill.traffic-recorder.enabled:false}")
+    private volatile boolean enabled;
+
+    @Value("${seckill.traffic-recorder.dir:traffic}")
+    private String dir;
+
+    // 1M records = 32MB per segment
+    @Value("${seckill.traffic-recorder.file-records:1048576}")
+    private int fileRecords;
+
+    @Value("${seckill.traffic-recorder.max-files:16}")
+    private int maxFiles;
+
+    private volatile Segment current;
+    // Orders segments opened within the same millisecond
+    private int segmentIndex;
+
+    // Epoch microseconds derived from nanoTime, millisecond clocks are too coarse for inter-arrival gaps
+    private long baseEpochMicros;
+    private long baseNanos;
+
+    private final LongAdder records = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Traffic recorder disabled");
+            return;
+        }
+        baseEpochMicros = System.currentTimeMillis() * 1000;
+        baseNanos = System.nanoTime();
+        try {
+            current = openSegment();
+            log.info("Recording traffic to {}", current.file);
+        } catch (IOException e) {
+            log.error("Failed to open traffic recording in {}, recorder disabled", dir, e);
+            enabled = false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Segment segment = current;
+        if (segment != null) {
+            segment.buffer.force();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Epoch microseconds to stamp a request with when it arrives
+     */
+    public long now() {
+        return baseEpochMicros + (System.nanoTime() - baseNanos) / 1000;
+    }
+
+    /**
+     * Tag the current request with its outcome (a SeckillMetrics outcome), for handlers whose
+     * HTTP status does not tell, e.g. a sold-out seckill answered with 200 and code 500
+     */
+    public static void markOutcome(String outcome) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(OUTCOME_ATTRIBUTE, outcome, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    static String outcomeAttribute() {
+        return OUTCOME_ATTRIBUTE;
+    }
+
+    public void record(long arrivalMicros, TrafficRoute route, long userId, long goodsId,
+                       long latencyMicros, int status, String outcome) {
+        byte outcomeCode = outcomeCode(outcome, status);
+        while (enabled) {
+            Segment segment = current;
+            long slot = segment.next.getAndIncrement();
+            if (slot < fileRecords) {
+                int offset = (int) slot * RECORD_SIZE;
+                MappedByteBuffer buffer = segment.buffer;
+                buffer.putLong(offset + 8, userId);
+                buffer.putLong(offset + 16, goodsId);
+                buffer.putInt(offset + 24, (int) Math.min(Integer.MAX_VALUE, latencyMicros));
+                buffer.putShort(offset + 28, (short) status);
+                buffer.put(offset + 30, route.getCode());
+                buffer.put(offset + 31, outcomeCode);
+                // Timestamp last: a non-zero timestamp marks a complete record
+                buffer.putLong(offset, arrivalMicros);
+                records.increment();
+                return;
+            }
+            rotate(segment);
+        }
+    }
+
+    private synchronized void rotate(Segment full) {
+        if (current != full || !enabled) {
+            return;
+        }
+        try {
+            current = openSegment();
+            rotations.increment();
+            deleteOldSegments();
+        } catch (IOException e) {
+            failures.increment();
+            enabled = false;
+            log.error("Failed to rotate traffic recording, recorder disabled", e);
+        }
+    }
+
+    private Segment openSegment() throws IOException {
+        File directory = new File(dir);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory.getAbsolutePath());
+        }
+        String name = FILE_PREFIX + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date())
+                + String.format("-%04d", segmentIndex++ % 10000) + FILE_SUFFIX;
+        File file = new File(directory, name);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) fileRecords * RECORD_SIZE);
+            return new Segment(file, buffer);
+        }
+    }
+
+    private void deleteOldSegments() {
+        File[] files = new File(dir).listFiles((d, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files == null || files.length <= maxFiles) {
+            return;
+        }
+        // Timestamped names sort chronologically
+        Arrays.sort(files);
+        for (int i = 0; i < files.length - maxFiles; i++) {
+            if (!files[i].delete()) {
+                log.warn("Failed to delete old traffic recording {}", files[i]);
+            }
+        }
+    }
+
+    private static byte outcomeCode(String outcome, int status) {
+        if (outcome == null) {
+            // No handler verdict: the HTTP status is all there is
+            outcome = status == 429 ? SeckillMetrics.RATE_LIMITED : status < 400 ? SeckillMetrics.SUCCESS : SeckillMetrics.ERROR;
+        }
+        for (int i = 0; i < OUTCOMES.length; i++) {
+            if (OUTCOMES[i].equals(outcome)) {
+                return (byte) (i + 1);
+            }
+        }
+        return 0;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("records", records.sum());
+        stats.put("rotations", rotations.sum());
+        stats.put("failures", failures.sum());
+        Segment segment = current;
+        if (segment != null) {
+            stats.put("file", segment.file.getAbsolutePath());
+            stats.put("fileUsed", Math.min(segment.next.get(), fileRecords) + "/" + fileRecords);
+        }
+        return stats;
+    }
+
+    private static class Segment {
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private final AtomicLong next = new AtomicLong();
+
+        Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.seckill.recorder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Hands every request of a recorded route to the TrafficRecorder once it has been handled.
+ * The route and path variables come from the handler mapping, so URLs are not parsed again here.
+ */
+@Component
+public class TrafficRecordingFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private TrafficRecorder trafficRecorder;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !trafficRecorder.isEnabled();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long arrival = trafficRecorder.now();
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            TrafficRoute route = TrafficRoute.of(request.getMethod(),
+                    (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE));
+            if (route != null) {
+                @SuppressWarnings("unchecked")
+                Map<String, String> variables =
+                        (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+                trafficRecorder.record(arrival, route, idOf(variables, "userId"), idOf(variables, "goodsId"),
+                        (System.nanoTime() - start) / 1000, response.getStatus(),
+                        (String) request.getAttribute(TrafficRecorder.outcomeAttribute()));
+            }
+        }
+    }
+
+    private static long idOf(Map<String, String> variables, String name) {
+        String value = variables == null ? null : variables.get(name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
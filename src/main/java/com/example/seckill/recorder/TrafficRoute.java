@@ -0,0 +1,44 @@
+package com.example.seckill.recorder;
+
+/**
+ * Recorded routes, identified by the matched handler pattern and method.
+ * The code is what goes into a record, so existing codes must never change.
+ */
+public enum TrafficRoute {
+    SECKILL(1, "POST", "/seckill/{userId}/{goodsId}"),
+    SECKILL_RESULT(2, "GET", "/seckill/result/{userId}/{goodsId}"),
+    GOODS_LIST(3, "GET", "/goods/list"),
+    GOODS_DETAIL(4, "GET", "/goods/detail/{goodsId}"),
+    WAITING_ROOM_JOIN(5, "POST", "/waiting-room/{userId}/{goodsId}"),
+    WAITING_ROOM_STATUS(6, "GET", "/waiting-room/{userId}/{goodsId}"),
+    ORDER_LIST(7, "GET", "/order/list/{userId}");
+
+    private final byte code;
+    private final String method;
+    private final String pattern;
+
+    TrafficRoute(int code, String method, String pattern) {
+        this.code = (byte) code;
+        this.method = method;
+        this.pattern = pattern;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * @return the route, or null when the request is not recorded
+     */
+    public static TrafficRoute of(String method, String pattern) {
+        if (pattern == null) {
+            return null;
+        }
+        for (TrafficRoute route : values()) {
+            if (route.pattern.equals(pattern) && route.method.equals(method)) {
+                return route;
+            }
+        }
+        return null;
+    }
+}
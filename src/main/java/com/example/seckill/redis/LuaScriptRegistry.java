@@ -0,0 +1,330 @@
+package com.example.seckill.redis;
+
+import com.google.common.collect.Lists;
+import io.lettuce.core.ScriptOutputType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of every Lua script under resources/scripts.
+ * Scripts are read once at startup, SCRIPT LOADed into Redis and always invoked with EVALSHA.
+ * If Redis answers NOSCRIPT (e.g. after a failover to a node whose script cache is empty),
+ * the script is reloaded on that connection and the call is retried once.
+ */
+@Component
+@Slf4j
+public class LuaScriptRegistry {
+
+    public static final String DECREASE_STOCK = "decrease_stock";
+    public static final String ROLLBACK_STOCK = "rollback_stock";
+    public static final String CONSUME_RESERVED = "consume_reserved";
+    public static final String CANCEL_STOCK = "cancel_stock";
+    public static final String GET_STOCK_VALUES = "get_stock_values";
+    public static final String TOKEN_BUCKET = "token_bucket";
+    public static final String GCRA = "gcra";
+    public static final String WAITING_ROOM_JOIN = "waiting_room_join";
+    public static final String WAITING_ROOM_ADVANCE = "waiting_room_advance";
+
+    // decrease_stock results other than the remaining stock
+    public static final long STOCK_SOLD_OUT = -1;
+    public static final long STOCK_NOT_INITIALIZED = -2;
+
+    private static final String SCRIPT_LOCATION = "classpath*:scripts/*.lua";
+    private static final int PIPELINE_BATCH_SIZE = 1000;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisCommandBatcher commandBatcher;
+
+    private final Map<String, RegisteredScript> scripts = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(SCRIPT_LOCATION);
+        for (Resource resource : resources) {
+            String fileName = resource.getFilename();
+            if (fileName == null) {
+                continue;
+            }
+            String name = fileName.substring(0, fileName.length() - ".lua".length());
+            String body = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
+            scripts.put(name, new RegisteredScript(name, body));
+        }
+        log.info("Registered {} Lua scripts: {}", scripts.size(), scripts.keySet());
+
+        try {
+            loadAll();
+        } catch (Exception e) {
+            // Not fatal, scripts are loaded on the first NOSCRIPT reply
+            log.warn("Failed to preload Lua scripts, they will be loaded on first use", e);
+        }
+    }
+
+    /**
+     * SCRIPT LOAD every registered script.
+     * Cluster connections broadcast SCRIPT LOAD to all master nodes.
+     */
+    public void loadAll() {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            for (RegisteredScript script : scripts.values()) {
+                connection.scriptLoad(script.body);
+            }
+            return null;
+        });
+        log.info("Lua scripts loaded into Redis");
+    }
+
+    /**
+     * Execute a registered script with EVALSHA
+     *
+     * @param name script file name without the .lua suffix
+     * @param resultType Long, Boolean, List or the type of a single value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String name, Class<T> resultType, List<String> keys, Object... args) {
+        RegisteredScript script = getScript(name);
+        ReturnType returnType = ReturnType.fromJavaType(resultType);
+        byte[][] keysAndArgs = keysAndArgs(keys, args);
+
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            Object result = commandBatcher.isEnabled()
+                    ? evalShaBatched(script, returnType, keys.size(), keysAndArgs)
+                    : redisTemplate.execute((RedisCallback<Object>) connection ->
+                            evalSha(connection, script, returnType, keys.size(), keysAndArgs));
+            return (T) deserializeResult(result);
+        } catch (RuntimeException e) {
+            failed = true;
+            throw e;
+        } finally {
+            script.record(System.nanoTime() - start, failed, 1);
+        }
+    }
+
+    /**
+     * Execute the same script once per key list, pipelining the EVALSHA calls in batches.
+     * Results are returned in the order of keysList.
+     */
+    public List<Object> executePipelined(String name, Class<?> resultType, List<List<String>> keysList, Object... args) {
+        RegisteredScript script = getScript(name);
+        ReturnType returnType = ReturnType.fromJavaType(resultType);
+        List<Object> results = new ArrayList<>(keysList.size());
+
+        for (List<List<String>> batch : Lists.partition(keysList, PIPELINE_BATCH_SIZE)) {
+            List<byte[][]> batchArgs = new ArrayList<>(batch.size());
+            for (List<String> keys : batch) {
+                batchArgs.add(keysAndArgs(keys, args));
+            }
+
+            long start = System.nanoTime();
+            boolean failed = false;
+            try {
+                results.addAll(runPipeline(script, returnType, batch, batchArgs));
+            } catch (RuntimeException e) {
+                if (!isNoScriptError(e)) {
+                    failed = true;
+                    throw e;
+                }
+                // Script cache was flushed between batches, load it and replay this batch once
+                reload(script);
+                results.addAll(runPipeline(script, returnType, batch, batchArgs));
+            } finally {
+                script.record(System.nanoTime() - start, failed, batch.size());
+            }
+        }
+        return results;
+    }
+
+    private List<Object> runPipeline(RegisteredScript script, ReturnType returnType,
+                                     List<List<String>> batch, List<byte[][]> batchArgs) {
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < batch.size(); i++) {
+                connection.evalSha(script.sha1, returnType, batch.get(i).size(), batchArgs.get(i));
+            }
+            return null;
+        });
+    }
+
+    private Object evalSha(RedisConnection connection, RegisteredScript script, ReturnType returnType,
+                           int numKeys, byte[][] keysAndArgs) {
+        try {
+            return connection.evalSha(script.sha1, returnType, numKeys, keysAndArgs);
+        } catch (RuntimeException e) {
+            if (!isNoScriptError(e)) {
+                throw e;
+            }
+            log.warn("NOSCRIPT for Lua script {}, reloading", script.name);
+            connection.scriptLoad(script.body);
+            script.reloads.increment();
+            return connection.evalSha(script.sha1, returnType, numKeys, keysAndArgs);
+        }
+    }
+
+    /**
+     * EVALSHA through the command batcher, so script calls of concurrent requests share one pipelined write
+     */
+    private Object evalShaBatched(RegisteredScript script, ReturnType returnType, int numKeys, byte[][] keysAndArgs) {
+        byte[][] keys = Arrays.copyOfRange(keysAndArgs, 0, numKeys);
+        byte[][] args = Arrays.copyOfRange(keysAndArgs, numKeys, keysAndArgs.length);
+        ScriptOutputType outputType = toOutputType(returnType);
+        try {
+            return commandBatcher.<Object>execute(commands -> commands.evalsha(script.sha1, outputType, keys, args));
+        } catch (RuntimeException e) {
+            if (!isNoScriptError(e)) {
+                throw e;
+            }
+            reload(script);
+            return commandBatcher.<Object>execute(commands -> commands.evalsha(script.sha1, outputType, keys, args));
+        }
+    }
+
+    private ScriptOutputType toOutputType(ReturnType returnType) {
+        switch (returnType) {
+            case BOOLEAN:
+                return ScriptOutputType.BOOLEAN;
+            case INTEGER:
+                return ScriptOutputType.INTEGER;
+            case MULTI:
+                return ScriptOutputType.MULTI;
+            case STATUS:
+                return ScriptOutputType.STATUS;
+            default:
+                return ScriptOutputType.VALUE;
+        }
+    }
+
+    private void reload(RegisteredScript script) {
+        log.warn("NOSCRIPT for Lua script {}, reloading", script.name);
+        redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptLoad(script.body));
+        script.reloads.increment();
+    }
+
+    private RegisteredScript getScript(String name) {
+        RegisteredScript script = scripts.get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("Unknown Lua script: " + name);
+        }
+        return script;
+    }
+
+    /**
+     * Keys use the template key serializer and args the value serializer,
+     * the same encoding RedisTemplate.execute(RedisScript, ...) applies
+     */
+    @SuppressWarnings("unchecked")
+    private byte[][] keysAndArgs(List<String> keys, Object[] args) {
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        RedisSerializer<Object> argsSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+        int i = 0;
+        for (String key : keys) {
+            keysAndArgs[i++] = keySerializer.serialize(key);
+        }
+        for (Object arg : args) {
+            keysAndArgs[i++] = arg instanceof byte[] ? (byte[]) arg : argsSerializer.serialize(arg);
+        }
+        return keysAndArgs;
+    }
+
+    private Object deserializeResult(Object result) {
+        if (result instanceof byte[]) {
+            return redisTemplate.getValueSerializer().deserialize((byte[]) result);
+        }
+        if (result instanceof List) {
+            List<Object> results = new ArrayList<>();
+            for (Object item : (List<?>) result) {
+                results.add(deserializeResult(item));
+            }
+            return results;
+        }
+        return result;
+    }
+
+    private boolean isNoScriptError(Throwable e) {
+        while (e != null) {
+            if (e.getMessage() != null && e.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+            e = e.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * Per-script call count, error count, reload count and latency (microseconds)
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        for (RegisteredScript script : scripts.values()) {
+            long calls = script.calls.sum();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("sha1", script.sha1);
+            item.put("calls", calls);
+            item.put("errors", script.errors.sum());
+            item.put("reloads", script.reloads.sum());
+            item.put("avgMicros", calls == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(script.totalNanos.sum() / calls));
+            item.put("maxMicros", TimeUnit.NANOSECONDS.toMicros(script.maxNanos.get()));
+            stats.put(script.name, item);
+        }
+        return stats;
+    }
+
+    private static class RegisteredScript {
+        private final String name;
+        private final byte[] body;
+        private final String sha1;
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder reloads = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        RegisteredScript(String name, String source) {
+            this.name = name;
+            this.body = source.getBytes(StandardCharsets.UTF_8);
+            // SHA1 is computed locally, same digest Redis returns from SCRIPT LOAD
+            this.sha1 = new DefaultRedisScript<>(source).getSha1();
+        }
+
+        void record(long elapsedNanos, boolean failed, int count) {
+            calls.add(count);
+            if (failed) {
+                errors.add(count);
+            }
+            totalNanos.add(elapsedNanos);
+            long max;
+            while (elapsedNanos > (max = maxNanos.get())) {
+                if (maxNanos.compareAndSet(max, elapsedNanos)) {
+                    break;
+                }
+            }
+        }
+    }
+}
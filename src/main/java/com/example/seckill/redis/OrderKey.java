@@ -0,0 +1,11 @@
+package com.example.seckill.redis;
+
+public class OrderKey extends BasePrefix {
+
+    public OrderKey(int expireSeconds, String prefix) {
+        super(expireSeconds, prefix);
+    }
+
+    public static final OrderKey detail = new OrderKey(600, "detail"); // orderNo -> OrderVo
+    public static final OrderKey notFound = new OrderKey(30, "nf"); // orderNo with no order, negative cache
+}
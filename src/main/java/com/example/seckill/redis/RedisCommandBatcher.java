@@ -0,0 +1,263 @@
+package com.example.seckill.redis;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces Redis commands issued by concurrent requests.
+ * Callers enqueue a command and wait on its future; a single flusher thread collects commands for
+ * at most window-micros (or until max-size commands are queued), writes them to one shared
+ * connection with auto-flush disabled and flushes them as a single pipelined write.
+ * Lettuce completes every caller's future when its reply arrives, so throughput is bounded by
+ * Redis rather than by the number of pooled connections.
+ */
+@Component
+@Slf4j
+public class RedisCommandBatcher {
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(3);
+
+    @Value("${seckill.redis.batch.enabled:false}")
+    private boolean enabled;
+
+    @Value("${seckill.redis.batch.window-micros:100}")
+    private long windowMicros;
+
+    @Value("${seckill.redis.batch.max-size:128}")
+    private int maxBatchSize;
+
+    @Value("${seckill.redis.batch.queue-capacity:65536}")
+    private int queueCapacity;
+
+    @Autowired
+    private RedisProperties redisProperties;
+
+    private RedisClient client;
+    private StatefulRedisConnection<byte[], byte[]> connection;
+    private RedisAsyncCommands<byte[], byte[]> commands;
+    private BlockingQueue<PendingCommand<?>> queue;
+    private Thread flusher;
+    private long timeoutMs;
+    private volatile boolean running;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder commandCount = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Redis command batching disabled");
+            return;
+        }
+        Duration timeout = redisProperties.getTimeout() != null ? redisProperties.getTimeout() : DEFAULT_TIMEOUT;
+        timeoutMs = timeout.toMillis();
+
+        RedisURI.Builder uri = RedisURI.Builder.redis(redisProperties.getHost(), redisProperties.getPort())
+                .withDatabase(redisProperties.getDatabase())
+                .withSsl(redisProperties.isSsl())
+                .withTimeout(timeout);
+        if (StringUtils.hasText(redisProperties.getPassword())) {
+            if (StringUtils.hasText(redisProperties.getUsername())) {
+                uri.withAuthentication(redisProperties.getUsername(), redisProperties.getPassword());
+            } else {
+                uri.withPassword(redisProperties.getPassword().toCharArray());
+            }
+        }
+
+        client = RedisClient.create(uri.build());
+        start(client.connect(ByteArrayCodec.INSTANCE));
+    }
+
+    /**
+     * Start the flusher on a connection that is already open
+     */
+    void start(StatefulRedisConnection<byte[], byte[]> connection) {
+        this.connection = connection;
+        // Commands are buffered until the flusher calls flushCommands()
+        connection.setAutoFlushCommands(false);
+        commands = connection.async();
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        flusher = new Thread(this::flushLoop, "redis-command-batcher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Redis command batching enabled, window: {}us, max batch size: {}", windowMicros, maxBatchSize);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flusher.interrupt();
+        flusher.join(timeoutMs);
+        connection.close();
+        if (client != null) {
+            client.shutdown();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue a command for the next batch, blocking while the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Function<RedisAsyncCommands<byte[], byte[]>, RedisFuture<T>> command) {
+        PendingCommand<T> pending = new PendingCommand<>(command);
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(e);
+        }
+        return pending.future;
+    }
+
+    /**
+     * Queue a command and wait for its reply
+     */
+    public <T> T execute(Function<RedisAsyncCommands<byte[], byte[]>, RedisFuture<T>> command) {
+        try {
+            return submit(command).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RedisSystemException("Batched Redis command failed", cause);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Batched Redis command timed out after " + timeoutMs + "ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisSystemException("Interrupted while waiting for batched Redis command", e);
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingCommand<?>> batch = new ArrayList<>(maxBatchSize);
+        long windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+
+        while (running) {
+            try {
+                PendingCommand<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Keep collecting until the window closes or the batch is full
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingCommand<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Failed to flush Redis command batch of size {}", batch.size(), e);
+                for (PendingCommand<?> pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // Fail whatever is left so no caller waits for its full timeout
+        List<PendingCommand<?>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (PendingCommand<?> pending : remaining) {
+            pending.future.completeExceptionally(new RedisSystemException("Redis command batcher stopped", null));
+        }
+    }
+
+    private void dispatch(List<PendingCommand<?>> batch) {
+        for (PendingCommand<?> pending : batch) {
+            pending.dispatch(commands);
+        }
+        connection.flushCommands();
+        batchCount.increment();
+        commandCount.add(batch.size());
+    }
+
+    /**
+     * Number of flushed batches and commands, and the average batch size
+     */
+    public Map<String, Object> getStats() {
+        long batches = batchCount.sum();
+        long total = commandCount.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("batches", batches);
+        stats.put("commands", total);
+        stats.put("avgBatchSize", batches == 0 ? 0 : (double) total / batches);
+        stats.put("queued", queue == null ? 0 : queue.size());
+        return stats;
+    }
+
+    private static class PendingCommand<T> {
+        private final Function<RedisAsyncCommands<byte[], byte[]>, RedisFuture<T>> command;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        PendingCommand(Function<RedisAsyncCommands<byte[], byte[]>, RedisFuture<T>> command) {
+            this.command = command;
+        }
+
+        void dispatch(RedisAsyncCommands<byte[], byte[]> commands) {
+            try {
+                command.apply(commands).whenComplete((result, error) -> {
+                    if (error != null) {
+                        future.completeExceptionally(error);
+                    } else {
+                        future.complete(result);
+                    }
+                });
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
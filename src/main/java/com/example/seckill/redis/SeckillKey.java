@@ -13,4 +13,8 @@ public class SeckillKey extends BasePrefix {
     public static final SeckillKey txStartTime = new SeckillKey(600, "txst"); // 10 min timeout
 
     public static final SeckillKey reservedStock = new SeckillKey(0, "rs"); // reserved stock count
+
+    public static final SeckillKey inflight = new SeckillKey(0, "if"); // zset of in-flight txIds scored by deduction time
+
+    public static final SeckillKey stockEvents = new SeckillKey(0, "se"); // stream of stock movements, trimmed by MAXLEN
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+package com.example.seckill.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes the stock movements of the stock scripts to the stock event stream.
+ *
+ * The scripts only touch the per-goods stock and reserved counters; a successful movement is
+ * counted here in memory and every flush-interval-ms one event per moved goods is appended with
+ * the net deltas since the previous flush: {@code g} goods id, {@code n} movements, {@code ds}
+ * stock, {@code dr} reserved and {@code dd} DB stock (consumer deduction -1, cancellation +1).
+ * Keeping XADD out of the scripts keeps the shared stream key out of their per-goods key set and
+ * replaces one XADD per deduction with one per goods and interval.
+ *
+ * Counters are only reduced by what was published once the pipeline succeeds, so a failed flush
+ * is retried with the same movements on the next one. The four counters of a goods are read one
+ * by one rather than as a snapshot: movements made during a flush can land in the next event
+ * instead of this one (a rollback ahead of its deduction, say), so a single event is not an exact
+ * window but the running sums over the stream are. Movements still buffered when a node dies are
+ * lost, which only delays the check until the next movement or the full reconciliation pass.
+ */
+@Component
+@Slf4j
+public class StockEventPublisher {
+
+    // Single stream for all goods, events carry the goods id
+    private static final String STOCK_STREAM = "all";
+
+    private static final byte[] FIELD_GOODS = bytes("g");
+    private static final byte[] FIELD_MOVEMENTS = bytes("n");
+    private static final byte[] FIELD_STOCK = bytes("ds");
+    private static final byte[] FIELD_RESERVED = bytes("dr");
+    private static final byte[] FIELD_DB = bytes("dd");
+
+    @Value("${seckill.stock-stream.enabled:true}")
+    private boolean enabled;
+
+    @Value("${seckill.stock-stream.max-len:100000}")
+    private long maxLen;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    // Movements counted since the last flush, one entry per goods that ever moved on this node
+    private final Map<Long, Movements> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getStreamKey() {
+        return SeckillKey.stockEvents.getPrefix() + ":" + STOCK_STREAM;
+    }
+
+    /**
+     * Count the movement of a stock script that completed, a sold-out or not-initialized
+     * decrease_stock moved nothing
+     */
+    public void movement(String scriptName, Long goodsId, Object result) {
+        if (!enabled) {
+            return;
+        }
+        LongAdder counter;
+        switch (scriptName) {
+            case LuaScriptRegistry.DECREASE_STOCK:
+                if (!(result instanceof Number) || ((Number) result).longValue() < 0) {
+                    return;
+                }
+                counter = movements(goodsId).deducted;
+                break;
+            case LuaScriptRegistry.ROLLBACK_STOCK:
+                counter = movements(goodsId).rolledBack;
+                break;
+            case LuaScriptRegistry.CONSUME_RESERVED:
+                counter = movements(goodsId).consumed;
+                break;
+            case LuaScriptRegistry.CANCEL_STOCK:
+                counter = movements(goodsId).cancelled;
+                break;
+            default:
+                return;
+        }
+        counter.increment();
+    }
+
+    private Movements movements(Long goodsId) {
+        Movements movements = pending.get(goodsId);
+        return movements != null ? movements : pending.computeIfAbsent(goodsId, id -> new Movements());
+    }
+
+    /**
+     * Append one event per goods that moved since the last flush, pipelined
+     */
+    @Scheduled(fixedDelayString = "${seckill.stock-stream.flush-interval-ms:100}")
+    @PreDestroy
+    public void flush() {
+        if (!enabled || pending.isEmpty()) {
+            return;
+        }
+        List<ByteRecord> records = new ArrayList<>();
+        List<Runnable> acknowledgements = new ArrayList<>();
+        byte[] streamKey = bytes(getStreamKey());
+        for (Map.Entry<Long, Movements> entry : pending.entrySet()) {
+            Movements movements = entry.getValue();
+            long deducted = movements.deducted.sum();
+            long rolledBack = movements.rolledBack.sum();
+            long consumed = movements.consumed.sum();
+            long cancelled = movements.cancelled.sum();
+            long count = deducted + rolledBack + consumed + cancelled;
+            if (count == 0) {
+                continue;
+            }
+            // Movements counted after the reads above stay for the next flush
+            acknowledgements.add(() -> {
+                movements.deducted.add(-deducted);
+                movements.rolledBack.add(-rolledBack);
+                movements.consumed.add(-consumed);
+                movements.cancelled.add(-cancelled);
+            });
+            Map<byte[], byte[]> fields = new HashMap<>(8);
+            fields.put(FIELD_GOODS, bytes(entry.getKey().toString()));
+            fields.put(FIELD_MOVEMENTS, bytes(Long.toString(count)));
+            fields.put(FIELD_STOCK, bytes(Long.toString(rolledBack + cancelled - deducted)));
+            fields.put(FIELD_RESERVED, bytes(Long.toString(deducted - rolledBack - consumed)));
+            fields.put(FIELD_DB, bytes(Long.toString(cancelled - consumed)));
+            records.add(StreamRecords.newRecord().in(streamKey).ofBytes(fields));
+        }
+        if (records.isEmpty()) {
+            return;
+        }
+
+        RedisStreamCommands.XAddOptions options = RedisStreamCommands.XAddOptions.maxlen(maxLen).approximateTrimming(true);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (ByteRecord record : records) {
+                    connection.streamCommands().xAdd(record, options);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // Nothing is acknowledged, the same movements are published by the next flush
+            errors.increment();
+            log.error("Failed to publish {} stock events", records.size(), e);
+            return;
+        }
+        acknowledgements.forEach(Runnable::run);
+        published.add(records.size());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("published", published.sum());
+        stats.put("errors", errors.sum());
+        return stats;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class Movements {
+        private final LongAdder deducted = new LongAdder();
+        private final LongAdder rolledBack = new LongAdder();
+        private final LongAdder consumed = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.seckill.redis;
+
+public class WaitingRoomKey extends BasePrefix {
+
+    public WaitingRoomKey(int expireSeconds, String prefix) {
+        super(expireSeconds, prefix);
+    }
+
+    public static final WaitingRoomKey positions = new WaitingRoomKey(86400, "pos"); // userId -> position hash
+    public static final WaitingRoomKey issued = new WaitingRoomKey(86400, "iss"); // last issued position
+    public static final WaitingRoomKey admitted = new WaitingRoomKey(86400, "adm"); // admission watermark
+}
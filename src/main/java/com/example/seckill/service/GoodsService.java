@@ -1,6 +1,9 @@
 package com.example.seckill.service;
 
+import com.example.seckill.entity.SeckillGoods;
 import com.example.seckill.vo.GoodsVo;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 public interface GoodsService {
@@ -15,6 +18,31 @@ public interface GoodsService {
      */
     GoodsVo getGoodsVoByGoodsId(Long goodsId);
 
+    /**
+     * 根据商品ID获取商品详情，优先读取本地缓存（预热时写入），未命中时查库并缓存
+     */
+    GoodsVo getGoodsVoFromCache(Long goodsId);
+
+    /**
+     * 写入本地商品缓存
+     */
+    void cacheGoodsVo(GoodsVo goodsVo);
+
+    /**
+     * 获取在[from, to]时间段内开始或仍在进行中的秒杀商品
+     */
+    List<GoodsVo> listUpcomingGoodsVo(Date from, Date to);
+
+    /**
+     * 获取结束时间晚于since的秒杀商品库存投影（goods_id、stock_count、total_stock）
+     */
+    List<SeckillGoods> listActiveStocks(Date since);
+
+    /**
+     * 按商品ID批量获取库存投影（goods_id、stock_count、total_stock）
+     */
+    List<SeckillGoods> listStocksByGoodsIds(Collection<Long> goodsIds);
+
 
     // 错误示范：未加锁查询库存
     boolean reduceStockIncorrect(Long seckillGoodsId);
@@ -0,0 +1,256 @@
+package com.example.seckill.service;
+
+import com.example.seckill.entity.SeckillGoods;
+import com.example.seckill.metrics.SeckillMetrics;
+import com.example.seckill.redis.StockEventPublisher;
+import com.example.seckill.vo.StockSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reconciles only the goods whose stock actually moved.
+ *
+ * StockEventPublisher appends the net stock movements of each goods to one Redis stream. The events
+ * are read through a consumer group shared by all nodes, so each event is handled once; the goods
+ * they touch are marked dirty, their deltas (Redis stock, reserved, DB stock) are summed, and they
+ * are checked in one batch every few seconds instead of scanning every active goods. A mismatch is
+ * logged with the event window and the running deltas of that window, then goes to
+ * {@link StockReconciliationService} for the usual delayed re-checks; its full pass still runs as
+ * a slow safety net.
+ */
+@Service
+@Slf4j
+public class IncrementalStockReconciler {
+
+    private static final String GROUP = "stock-reconciler";
+    private static final int READ_COUNT = 1000;
+
+    private static final String FIELD_GOODS = "g";
+    private static final String FIELD_MOVEMENTS = "n";
+    private static final String FIELD_STOCK = "ds";
+    private static final String FIELD_RESERVED = "dr";
+    private static final String FIELD_DB = "dd";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private GoodsService goodsService;
+
+    @Autowired
+    private StockReconciliationService stockReconciliationService;
+
+    @Autowired
+    private SeckillMetrics metrics;
+
+    @Autowired
+    private StockEventPublisher stockEventPublisher;
+
+    private byte[] streamKey;
+    private final String consumerName = ManagementFactory.getRuntimeMXBean().getName();
+    private volatile boolean groupReady;
+
+    // Goods touched since the last reconciliation
+    private final Map<Long, DirtyGoods> dirtyGoods = new ConcurrentHashMap<>();
+
+    private final LongAdder eventsRead = new LongAdder();
+    private final LongAdder goodsChecked = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final LongAdder readErrors = new LongAdder();
+    private volatile String lastEventId;
+
+    @PostConstruct
+    public void init() {
+        streamKey = redisService.getStockStreamKey().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Pull new stock events and mark their goods dirty
+     */
+    @Scheduled(fixedDelayString = "${seckill.stock-stream.poll-interval-ms:1000}")
+    public void poll() {
+        if (!redisService.isStockStreamEnabled()) {
+            return;
+        }
+        try {
+            if (!groupReady) {
+                createGroup();
+            }
+            List<ByteRecord> records;
+            do {
+                records = readBatch();
+                for (ByteRecord record : records) {
+                    onEvent(record);
+                }
+            } while (records.size() == READ_COUNT);
+        } catch (Exception e) {
+            readErrors.increment();
+            // The group disappears with the stream (e.g. FLUSHDB), create it again on the next poll
+            groupReady = false;
+            log.error("Failed to read stock events", e);
+        }
+    }
+
+    private void createGroup() {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            try {
+                // Start from new events, the full pass covers anything older
+                connection.streamCommands().xGroupCreate(streamKey, GROUP, ReadOffset.latest(), true);
+            } catch (Exception e) {
+                if (!String.valueOf(e.getMessage()).contains("BUSYGROUP")) {
+                    throw e;
+                }
+            }
+            return null;
+        });
+        groupReady = true;
+    }
+
+    private List<ByteRecord> readBatch() {
+        List<ByteRecord> records = redisTemplate.execute((RedisCallback<List<ByteRecord>>) this::readGroup);
+        return records == null ? Collections.emptyList() : records;
+    }
+
+    // NOACK: a lost event only delays the check until the next touch or the full pass
+    private List<ByteRecord> readGroup(RedisConnection connection) {
+        return connection.streamCommands().xReadGroup(
+                Consumer.from(GROUP, consumerName),
+                StreamReadOptions.empty().count(READ_COUNT).autoAcknowledge(),
+                StreamOffset.create(streamKey, ReadOffset.lastConsumed()));
+    }
+
+    private void onEvent(ByteRecord record) {
+        eventsRead.increment();
+        Map<String, String> fields = new HashMap<>();
+        for (Map.Entry<byte[], byte[]> field : record.getValue().entrySet()) {
+            fields.put(new String(field.getKey(), StandardCharsets.UTF_8), new String(field.getValue(), StandardCharsets.UTF_8));
+        }
+        String eventId = record.getId().getValue();
+        lastEventId = eventId;
+        String goods = fields.get(FIELD_GOODS);
+        if (goods == null) {
+            return;
+        }
+        Long goodsId = Long.valueOf(goods);
+        dirtyGoods.computeIfAbsent(goodsId, id -> new DirtyGoods(eventId)).record(eventId,
+                number(fields, FIELD_MOVEMENTS), number(fields, FIELD_STOCK),
+                number(fields, FIELD_RESERVED), number(fields, FIELD_DB));
+    }
+
+    private static long number(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    /**
+     * Compare Redis and DB stock for the goods that moved since the last run
+     */
+    @Scheduled(fixedDelayString = "${seckill.stock-stream.reconcile-interval-ms:5000}")
+    public void reconcileDirty() {
+        if (dirtyGoods.isEmpty()) {
+            return;
+        }
+        Map<Long, DirtyGoods> batch = new HashMap<>();
+        for (Long goodsId : new ArrayList<>(dirtyGoods.keySet())) {
+            DirtyGoods dirty = dirtyGoods.remove(goodsId);
+            if (dirty != null) {
+                batch.put(goodsId, dirty);
+            }
+        }
+
+        try {
+            List<SeckillGoods> stocks = goodsService.listStocksByGoodsIds(batch.keySet());
+            Map<Long, StockSnapshot> snapshots = redisService.getStockSnapshots(batch.keySet());
+            for (SeckillGoods stock : stocks) {
+                goodsChecked.increment();
+                StockSnapshot snapshot = snapshots.get(stock.getGoodsId());
+                if (snapshot == null || snapshot.getRedisStock() == null || stock.getStockCount() == null) {
+                    continue;
+                }
+                int reserved = snapshot.getReservedStock() == null ? 0 : snapshot.getReservedStock();
+                if (snapshot.getRedisStock() + reserved == stock.getStockCount()) {
+                    continue;
+                }
+                mismatches.increment();
+                metrics.getReconcileMismatches().increment();
+                DirtyGoods dirty = batch.get(stock.getGoodsId());
+                log.warn("Stock inconsistency detected for goods {} after events {}..{} ({}): Redis({}) + Reserved({}) != DB({}), scheduling re-check",
+                        stock.getGoodsId(), dirty.firstEventId, dirty.lastEventId, dirty.describe(),
+                        snapshot.getRedisStock(), reserved, stock.getStockCount());
+                stockReconciliationService.recheckLater(stock.getGoodsId());
+            }
+        } catch (Exception e) {
+            log.error("Incremental stock reconciliation failed for {} goods", batch.size(), e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", redisService.isStockStreamEnabled());
+        Map<String, Object> publisher = stockEventPublisher.getStats();
+        stats.put("eventsPublished", publisher.get("published"));
+        stats.put("publishErrors", publisher.get("errors"));
+        stats.put("eventsRead", eventsRead.sum());
+        stats.put("lastEventId", lastEventId);
+        stats.put("dirtyGoods", dirtyGoods.size());
+        stats.put("goodsChecked", goodsChecked.sum());
+        stats.put("mismatches", mismatches.sum());
+        stats.put("readErrors", readErrors.sum());
+        return stats;
+    }
+
+    /**
+     * Running deltas of one goods since its last check
+     */
+    private static class DirtyGoods {
+        private final String firstEventId;
+        private volatile String lastEventId;
+        private long movements;
+        private long stockDelta;
+        private long reservedDelta;
+        private long dbDelta;
+
+        DirtyGoods(String firstEventId) {
+            this.firstEventId = firstEventId;
+            this.lastEventId = firstEventId;
+        }
+
+        // Only called from the polling thread
+        void record(String eventId, long movements, long stockDelta, long reservedDelta, long dbDelta) {
+            this.movements += movements;
+            this.stockDelta += stockDelta;
+            this.reservedDelta += reservedDelta;
+            this.dbDelta += dbDelta;
+            lastEventId = eventId;
+        }
+
+        String describe() {
+            return movements + " movements, stock " + stockDelta + ", reserved " + reservedDelta + ", DB " + dbDelta;
+        }
+    }
+}
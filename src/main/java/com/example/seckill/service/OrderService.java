@@ -2,6 +2,7 @@ package com.example.seckill.service;
 
 import com.example.seckill.entity.SeckillOrder;
 import com.example.seckill.vo.GoodsVo;
+import com.example.seckill.vo.OrderPageVo;
 import com.example.seckill.vo.OrderVo;
 import java.util.List;
 
@@ -27,10 +28,18 @@ public interface OrderService {
      */
     List<OrderVo> getOrdersByUserId(Long userId);
 
+    /**
+     * 游标分页获取用户订单，商品信息取自本地商品缓存
+     */
+    OrderPageVo getOrderPage(Long userId, Long cursor, int size);
+
     Integer countOrdersByGoodsId(long goodsId);
 
     SeckillOrder getOrderByTransactionId(String transactionId);
     SeckillOrder createOrderWithTransactionId(Long userId, GoodsVo goodsVo, String transactionId);
 
-    boolean cancelOrder(String transactionId);
+    /**
+     * 取消事务对应的未支付订单，事务提交后删除orderNo的订单详情缓存
+     */
+    boolean cancelOrder(String transactionId, String orderNo);
 }
\ No newline at end of file
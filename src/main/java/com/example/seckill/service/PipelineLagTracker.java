@@ -0,0 +1,214 @@
+package com.example.seckill.service;
+
+import com.example.seckill.metrics.SeckillMetrics;
+import com.example.seckill.redis.SeckillKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks how long stock reductions spend between the Redis pre-deduction and the DB deduction.
+ *
+ * A successful deduction adds its transaction id to a per-goods sorted set scored by the deduction
+ * time inside decrease_stock itself, and the time travels in the message payload. The consumer stamps receipt and DB commit and,
+ * with the broker store time of the committed message, records the lag of every stage
+ * (seckill.pipeline.lag) before removing the transaction. Rolled-back transactions are removed
+ * without a sample. The sorted sets are shared by all nodes, so the periodic scan reports the
+ * in-flight count and the age of the oldest reservation per goods, i.e. how far the consumers are
+ * behind, before reconciliation sees a mismatch. Entries older than {@code max-age-ms} are
+ * treated as leaked and dropped. A goods whose set is empty at a scan, and was already empty or
+ * not yet scanned before, is forgotten with its gauges until its next reservation or commit.
+ *
+ * Stamps come from different hosts (app, broker), a stage never goes below 0 on clock skew.
+ */
+@Service
+@Slf4j
+public class PipelineLagTracker {
+
+    @Value("${seckill.pipeline-lag.enabled:true}")
+    private volatile boolean enabled;
+
+    @Value("${seckill.pipeline-lag.max-age-ms:3600000}")
+    private long maxAgeMs;
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private SeckillMetrics metrics;
+
+    // Goods tracked by this node, with the result of the last scan
+    private final Map<Long, Inflight> goods = new ConcurrentHashMap<>();
+
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Transaction id decrease_stock should add to the in-flight set, null when tracking is off
+     */
+    public String trackedId(String transactionId) {
+        return enabled ? transactionId : null;
+    }
+
+    /**
+     * Stock of one transaction deducted in Redis, already added to the in-flight set by the script
+     */
+    public void reserved(Long goodsId) {
+        if (!enabled) {
+            return;
+        }
+        inflight(goodsId);
+    }
+
+    /**
+     * Reservation given back without reaching the DB (send failure, local transaction rollback),
+     * or a redelivery of a reduction an earlier delivery already committed
+     */
+    public void released(Long goodsId, String transactionId) {
+        if (!enabled) {
+            return;
+        }
+        remove(goodsId, transactionId);
+        released.increment();
+    }
+
+    /**
+     * Stock reduction committed to the DB by the consumer
+     *
+     * @param deductedAt     Redis deduction, null for messages sent before the stamp existed
+     * @param storeTimestamp broker store time of the committed message
+     * @param receivedAt     consumer receipt
+     */
+    public void committed(Long goodsId, String transactionId, Long deductedAt, long storeTimestamp, long receivedAt) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (deductedAt != null) {
+            metrics.recordPipelineLag(SeckillMetrics.STAGE_COMMIT, storeTimestamp - deductedAt);
+            metrics.recordPipelineLag(SeckillMetrics.STAGE_TOTAL, now - deductedAt);
+        }
+        metrics.recordPipelineLag(SeckillMetrics.STAGE_QUEUE, receivedAt - storeTimestamp);
+        metrics.recordPipelineLag(SeckillMetrics.STAGE_DB, now - receivedAt);
+        inflight(goodsId);
+        remove(goodsId, transactionId);
+        committed.increment();
+    }
+
+    private void remove(Long goodsId, String transactionId) {
+        try {
+            redisService.zrem(SeckillKey.inflight, "" + goodsId, transactionId);
+        } catch (RuntimeException e) {
+            errors.increment();
+            log.warn("Failed to remove in-flight transaction {} of goods {}", transactionId, goodsId, e);
+        }
+    }
+
+    /**
+     * Refresh the in-flight count and oldest age of every tracked goods, dropping leaked entries
+     */
+    @Scheduled(fixedRateString = "${seckill.pipeline-lag.scan-interval-ms:5000}")
+    public void scan() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Inflight> entry : goods.entrySet()) {
+            String key = "" + entry.getKey();
+            Inflight inflight = entry.getValue();
+            try {
+                long dropped = redisService.zremRangeByScore(SeckillKey.inflight, key, 0, now - maxAgeMs);
+                if (dropped > 0) {
+                    expired.add(dropped);
+                    log.warn("Dropped {} in-flight transactions of goods {} older than {}ms", dropped, key, maxAgeMs);
+                }
+                Double oldest = redisService.zminScore(SeckillKey.inflight, key);
+                long count = redisService.zcard(SeckillKey.inflight, key);
+                if (count == 0 && inflight.count.getAndSet(0) == 0) {
+                    forget(entry.getKey(), inflight);
+                    continue;
+                }
+                inflight.count.set(count);
+                inflight.oldestAgeMillis.set(oldest == null ? 0 : Math.max(0, now - oldest.longValue()));
+            } catch (RuntimeException e) {
+                errors.increment();
+                log.warn("Failed to scan in-flight transactions of goods {}", key, e);
+            }
+        }
+    }
+
+    /**
+     * Drop a drained goods and its gauges, unless a reservation registered it again meanwhile
+     */
+    private void forget(Long goodsId, Inflight drained) {
+        goods.computeIfPresent(goodsId, (id, current) -> {
+            if (current != drained) {
+                return current;
+            }
+            metrics.removeInflightGauges(id);
+            return null;
+        });
+    }
+
+    private Inflight inflight(Long goodsId) {
+        Inflight inflight = goods.get(goodsId);
+        if (inflight == null) {
+            inflight = goods.computeIfAbsent(goodsId, id -> {
+                Inflight created = new Inflight();
+                metrics.registerInflightGauges(id, created.count, created.oldestAgeMillis);
+                return created;
+            });
+        }
+        return inflight;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("committed", committed.sum());
+        stats.put("released", released.sum());
+        stats.put("expired", expired.sum());
+        stats.put("errors", errors.sum());
+
+        Map<String, Object> lag = new LinkedHashMap<>();
+        metrics.getPipelineLag().forEach((stage, timer) -> {
+            Map<String, Object> stageStats = new LinkedHashMap<>();
+            stageStats.put("count", timer.count());
+            stageStats.put("meanMs", timer.mean(TimeUnit.MILLISECONDS));
+            stageStats.put("maxMs", timer.max(TimeUnit.MILLISECONDS));
+            lag.put(stage, stageStats);
+        });
+        stats.put("lag", lag);
+
+        Map<Long, Object> inflightGoods = new TreeMap<>();
+        goods.forEach((goodsId, inflight) -> {
+            Map<String, Object> goodsStats = new LinkedHashMap<>();
+            goodsStats.put("inflight", inflight.count.get());
+            goodsStats.put("oldestAgeMs", inflight.oldestAgeMillis.get());
+            inflightGoods.put(goodsId, goodsStats);
+        });
+        stats.put("goods", inflightGoods);
+        return stats;
+    }
+
+    private static class Inflight {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong oldestAgeMillis = new AtomicLong();
+    }
+}
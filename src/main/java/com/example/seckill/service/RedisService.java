@@ -1,14 +1,29 @@
 package com.example.seckill.service;
 
 import com.example.seckill.redis.KeyPrefix;
+import com.example.seckill.redis.LuaScriptRegistry;
+import com.example.seckill.redis.RedisCommandBatcher;
+import com.example.seckill.redis.SeckillKey;
+import com.example.seckill.redis.StockEventPublisher;
+import com.example.seckill.vo.StockSnapshot;
+import com.google.common.collect.Lists;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -16,6 +31,18 @@ public class RedisService {
 
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private LuaScriptRegistry scriptRegistry;
+
+    @Autowired
+    private RedisCommandBatcher commandBatcher;
+
+    @Autowired
+    private StockEventPublisher stockEventPublisher;
+
+    // Max commands sent in one pipeline / keys in one multi-key command
+    private static final int PIPELINE_BATCH_SIZE = 1000;
     
     // Get key with prefix
     public String getRealKey(KeyPrefix prefix, String key) {
@@ -23,8 +50,13 @@ public class RedisService {
     }
     
     // Get value for key
+    @SuppressWarnings("unchecked")
     public <T> T get(KeyPrefix prefix, String key) {
         String realKey = getRealKey(prefix, key);
+        if (commandBatcher.isEnabled()) {
+            byte[] value = commandBatcher.execute(commands -> commands.get(rawKey(realKey)));
+            return (T) redisTemplate.getValueSerializer().deserialize(value);
+        }
         return (T) redisTemplate.opsForValue().get(realKey);
     }
     
@@ -45,9 +77,23 @@ public class RedisService {
         }
     }
     
+    // Set key-value with the prefix expiration unless the key exists, returns whether it was set
+    public <T> boolean setIfAbsent(KeyPrefix prefix, String key, T value) {
+        String realKey = getRealKey(prefix, key);
+        int expireSeconds = prefix.expireSeconds();
+        Boolean result = expireSeconds <= 0
+                ? redisTemplate.opsForValue().setIfAbsent(realKey, value)
+                : redisTemplate.opsForValue().setIfAbsent(realKey, value, expireSeconds, TimeUnit.SECONDS);
+        return result != null && result;
+    }
+
     // Check if key exists
     public boolean exists(KeyPrefix prefix, String key) {
         String realKey = getRealKey(prefix, key);
+        if (commandBatcher.isEnabled()) {
+            Long count = commandBatcher.execute(commands -> commands.exists(rawKey(realKey)));
+            return count != null && count > 0;
+        }
         return redisTemplate.hasKey(realKey);
     }
     
@@ -60,12 +106,18 @@ public class RedisService {
     // Increment value
     public Long incr(KeyPrefix prefix, String key) {
         String realKey = getRealKey(prefix, key);
+        if (commandBatcher.isEnabled()) {
+            return commandBatcher.execute(commands -> commands.incr(rawKey(realKey)));
+        }
         return redisTemplate.opsForValue().increment(realKey);
     }
     
     // Decrement value
     public Long decr(KeyPrefix prefix, String key) {
         String realKey = getRealKey(prefix, key);
+        if (commandBatcher.isEnabled()) {
+            return commandBatcher.execute(commands -> commands.decr(rawKey(realKey)));
+        }
         return redisTemplate.opsForValue().decrement(realKey);
     }
 
@@ -80,8 +132,84 @@ public class RedisService {
         return result != null && result;
     }
 
-    public <T> T executeScript(DefaultRedisScript<T> script, List<String> keys, Object... args) {
-        return redisTemplate.execute(script, keys, args);
+    // Add a member to a sorted set (the prefix expiry is not applied)
+    public boolean zadd(KeyPrefix prefix, String key, String member, double score) {
+        Boolean added = redisTemplate.opsForZSet().add(getRealKey(prefix, key), member, score);
+        return added != null && added;
+    }
+
+    public boolean zrem(KeyPrefix prefix, String key, String member) {
+        Long removed = redisTemplate.opsForZSet().remove(getRealKey(prefix, key), member);
+        return removed != null && removed > 0;
+    }
+
+    public long zcard(KeyPrefix prefix, String key) {
+        Long size = redisTemplate.opsForZSet().zCard(getRealKey(prefix, key));
+        return size == null ? 0 : size;
+    }
+
+    // Lowest score of a sorted set, null when it is empty
+    public Double zminScore(KeyPrefix prefix, String key) {
+        Set<ZSetOperations.TypedTuple<Object>> first = redisTemplate.opsForZSet().rangeWithScores(getRealKey(prefix, key), 0, 0);
+        return first == null || first.isEmpty() ? null : first.iterator().next().getScore();
+    }
+
+    // Remove the members scored within [min, max], returns how many were removed
+    public long zremRangeByScore(KeyPrefix prefix, String key, double min, double max) {
+        Long removed = redisTemplate.opsForZSet().removeRangeByScore(getRealKey(prefix, key), min, max);
+        return removed == null ? 0 : removed;
+    }
+
+    // SCRIPT LOAD every script registered in LuaScriptRegistry, e.g. after a SCRIPT FLUSH
+    public void loadScripts() {
+        scriptRegistry.loadAll();
+    }
+
+    // Execute a script registered in LuaScriptRegistry (always EVALSHA)
+    public <T> T executeScript(String scriptName, Class<T> resultType, List<String> keys, Object... args) {
+        return scriptRegistry.execute(scriptName, resultType, keys, args);
+    }
+
+    /**
+     * Run a stock movement script (decrease / rollback / consume / cancel) for one goods.
+     * The movement is counted for the stock event stream, which is written outside the script.
+     */
+    public <T> T executeStockScript(String scriptName, Class<T> resultType, Long goodsId) {
+        List<String> keys = Arrays.asList(
+                getRealKey(SeckillKey.goodsStock, "" + goodsId),
+                getRealKey(SeckillKey.reservedStock, "" + goodsId));
+        T result = scriptRegistry.execute(scriptName, resultType, keys);
+        stockEventPublisher.movement(scriptName, goodsId, result);
+        return result;
+    }
+
+    /**
+     * Pre-deduct one unit with decrease_stock. With a transaction id the same script adds it to the
+     * in-flight set of the goods scored by deductedAt, so tracking costs no extra round trip.
+     */
+    public Long decreaseStock(Long goodsId, String transactionId, long deductedAt) {
+        Long result = executeDecreaseStock(goodsId, transactionId, deductedAt);
+        stockEventPublisher.movement(LuaScriptRegistry.DECREASE_STOCK, goodsId, result);
+        return result;
+    }
+
+    protected Long executeDecreaseStock(Long goodsId, String transactionId, long deductedAt) {
+        List<String> keys = new ArrayList<>(3);
+        keys.add(getRealKey(SeckillKey.goodsStock, "" + goodsId));
+        keys.add(getRealKey(SeckillKey.reservedStock, "" + goodsId));
+        if (transactionId == null) {
+            return executeScript(LuaScriptRegistry.DECREASE_STOCK, Long.class, keys);
+        }
+        keys.add(getRealKey(SeckillKey.inflight, "" + goodsId));
+        return executeScript(LuaScriptRegistry.DECREASE_STOCK, Long.class, keys, transactionId, deductedAt);
+    }
+
+    public boolean isStockStreamEnabled() {
+        return stockEventPublisher.isEnabled();
+    }
+
+    public String getStockStreamKey() {
+        return stockEventPublisher.getStreamKey();
     }
 
     public List<Integer> mget(String... keys) {
@@ -93,4 +221,162 @@ public class RedisService {
         }
         return integers;
     }
-}
\ No newline at end of file
+
+    // Set many keys of the same prefix, one MSET per batch (or pipelined SETEX when the prefix expires)
+    public <T> void multiSet(KeyPrefix prefix, Map<String, T> values) {
+        int expireSeconds = prefix.expireSeconds();
+        List<Map.Entry<String, T>> entries = new ArrayList<>(values.entrySet());
+        for (List<Map.Entry<String, T>> batch : Lists.partition(entries, PIPELINE_BATCH_SIZE)) {
+            if (expireSeconds <= 0) {
+                Map<String, Object> realValues = new LinkedHashMap<>();
+                for (Map.Entry<String, T> entry : batch) {
+                    realValues.put(getRealKey(prefix, entry.getKey()), entry.getValue());
+                }
+                redisTemplate.opsForValue().multiSet(realValues);
+            } else {
+                redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, V> Object execute(RedisOperations<K, V> operations) {
+                        RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                        for (Map.Entry<String, T> entry : batch) {
+                            ops.opsForValue().set(getRealKey(prefix, entry.getKey()), entry.getValue(),
+                                    expireSeconds, TimeUnit.SECONDS);
+                        }
+                        return null;
+                    }
+                });
+            }
+        }
+    }
+
+    // Set many keys of the same prefix only where they do not exist yet (pipelined SET NX), returns the number set
+    public <T> long multiSetIfAbsent(KeyPrefix prefix, Map<String, T> values) {
+        int expireSeconds = prefix.expireSeconds();
+        List<Map.Entry<String, T>> entries = new ArrayList<>(values.entrySet());
+        long set = 0;
+        for (List<Map.Entry<String, T>> batch : Lists.partition(entries, PIPELINE_BATCH_SIZE)) {
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (Map.Entry<String, T> entry : batch) {
+                        String realKey = getRealKey(prefix, entry.getKey());
+                        if (expireSeconds <= 0) {
+                            ops.opsForValue().setIfAbsent(realKey, entry.getValue());
+                        } else {
+                            ops.opsForValue().setIfAbsent(realKey, entry.getValue(), expireSeconds, TimeUnit.SECONDS);
+                        }
+                    }
+                    return null;
+                }
+            });
+            for (Object result : results) {
+                if (Boolean.TRUE.equals(result)) {
+                    set++;
+                }
+            }
+        }
+        return set;
+    }
+
+    // Delete many keys of the same prefix, returns the number of keys removed
+    public long multiDelete(KeyPrefix prefix, Collection<String> keys) {
+        List<String> realKeys = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            realKeys.add(getRealKey(prefix, key));
+        }
+        return multiDelete(realKeys);
+    }
+
+    // Delete many raw keys, one DEL per batch, all batches sent in a single pipeline
+    public long multiDelete(List<String> realKeys) {
+        if (realKeys.isEmpty()) {
+            return 0;
+        }
+        List<List<String>> batches = Lists.partition(realKeys, PIPELINE_BATCH_SIZE);
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (List<String> batch : batches) {
+                    ops.delete(batch);
+                }
+                return null;
+            }
+        });
+        long deleted = 0;
+        for (Object result : results) {
+            if (result instanceof Number) {
+                deleted += ((Number) result).longValue();
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Run the same registered script once per key list, pipelining up to 1000 EVALSHA calls per round trip.
+     * Results are returned in the order of keysList.
+     */
+    public List<Object> executeScriptPipelined(String scriptName, Class<?> resultType, List<List<String>> keysList, Object... args) {
+        return scriptRegistry.executePipelined(scriptName, resultType, keysList, args);
+    }
+
+    /**
+     * Bulk fetch of stock and reserved stock for many goods.
+     * Stock and reserved keys of one goods always travel in the same MGET, so each pair is read
+     * atomically (same guarantee as the per-goods Lua script), and all MGETs share one pipeline.
+     * Goods whose stock key is missing map to a snapshot with a null redisStock.
+     */
+    public Map<Long, StockSnapshot> getStockSnapshots(Collection<Long> goodsIds) {
+        Map<Long, StockSnapshot> snapshots = new HashMap<>();
+        if (goodsIds.isEmpty()) {
+            return snapshots;
+        }
+        // Each goods contributes two keys, so halve the batch to keep MGETs at the same size
+        List<List<Long>> batches = Lists.partition(new ArrayList<>(goodsIds), PIPELINE_BATCH_SIZE / 2);
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (List<Long> batch : batches) {
+                    List<String> keys = new ArrayList<>(batch.size() * 2);
+                    for (Long goodsId : batch) {
+                        keys.add(getRealKey(SeckillKey.goodsStock, "" + goodsId));
+                        keys.add(getRealKey(SeckillKey.reservedStock, "" + goodsId));
+                    }
+                    ops.opsForValue().multiGet(keys);
+                }
+                return null;
+            }
+        });
+
+        for (int i = 0; i < batches.size(); i++) {
+            List<Long> batch = batches.get(i);
+            List<?> values = (List<?>) results.get(i);
+            for (int j = 0; j < batch.size(); j++) {
+                Integer redisStock = toInteger(values.get(j * 2));
+                Integer reservedStock = toInteger(values.get(j * 2 + 1));
+                Long goodsId = batch.get(j);
+                snapshots.put(goodsId, new StockSnapshot(goodsId, redisStock, reservedStock == null ? 0 : reservedStock));
+            }
+        }
+        return snapshots;
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawKey(String realKey) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(realKey);
+    }
+
+    private Integer toInteger(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.toString();
+        return text.isEmpty() ? null : Integer.parseInt(text);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.seckill.service;
+
+import com.example.seckill.redis.SeckillKey;
+import com.example.seckill.utils.DistributedLockFactory;
+import com.example.seckill.vo.GoodsVo;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Lazily initializes Redis stock counters with per-node single-flight.
+ *
+ * Once a goods is known to have its counter it is flagged locally and requests skip the EXISTS call.
+ * Otherwise the first request on this node becomes the leader and contends for the distributed lock;
+ * concurrent requests for the same goods wait on the leader's future instead of on Redis.
+ * The counter is written with SET NX, so a node acting on a stale EXISTS never overwrites a
+ * counter that is already being decremented. If the counter disappears while flagged (eviction,
+ * flush, failover) decrease_stock reports it and the caller calls {@link #reinitialize}.
+ */
+@Service
+@Slf4j
+public class RedisStockInitializer {
+
+    // Fair locks are hashes, a new prefix keeps them apart from the old SETNX string locks (a fair
+    // lock script on a string key fails with WRONGTYPE). Old and new nodes therefore do not exclude
+    // each other and old nodes write the counter with a plain SET, which can overwrite a counter a
+    // new node already decremented: upgrading needs a full stop-and-deploy, not a rolling deploy.
+    private static final String LOCK_PREFIX = "init_stock_fair_lock:";
+    private static final long LOCK_TIMEOUT_MS = 5000; // 5 seconds timeout for acquiring lock
+
+    @Autowired
+    private GoodsService goodsService;
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private DistributedLockFactory lockFactory;
+
+    // Goods whose stock key is known to exist, re-checked after the entry expires
+    private final Cache<Long, Boolean> initialized = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .build();
+
+    // One initialization in flight per goods on this node
+    private final ConcurrentHashMap<Long, CompletableFuture<Void>> inflight = new ConcurrentHashMap<>();
+
+    /**
+     * Make sure the Redis stock counter of a goods exists
+     */
+    public void ensureInitialized(Long goodsId) {
+        if (initialized.getIfPresent(goodsId) != null) {
+            return;
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> leader = inflight.putIfAbsent(goodsId, future);
+        if (leader != null) {
+            awaitLeader(goodsId, leader);
+            return;
+        }
+
+        try {
+            initialize(goodsId);
+            future.complete(null);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(goodsId, future);
+        }
+    }
+
+    /**
+     * Forget the local flag and initialize again, for a counter decrease_stock found missing
+     */
+    public void reinitialize(Long goodsId) {
+        initialized.invalidate(goodsId);
+        ensureInitialized(goodsId);
+    }
+
+    /**
+     * Flag a goods whose counter was written elsewhere (startup load, preheat)
+     */
+    public void markInitialized(Long goodsId) {
+        initialized.put(goodsId, Boolean.TRUE);
+    }
+
+    private void initialize(Long goodsId) {
+        // Check if stock already exists in Redis
+        if (redisService.exists(SeckillKey.goodsStock, "" + goodsId)) {
+            markInitialized(goodsId);
+            return;
+        }
+
+        // Fair lock: nodes are served in arrival order and woken by the release notification
+        DistributedLockFactory.DistributedLock lock = lockFactory.getLock(LOCK_PREFIX + goodsId);
+        if (!lock.tryLock(LOCK_TIMEOUT_MS)) {
+            // Another node held the lock for the whole timeout, let the request go on as before
+            log.warn("Timed out waiting for stock init lock of goods: {}", goodsId);
+            return;
+        }
+        try {
+            // Double-check if another node has already initialized (check-lock-check pattern)
+            if (!redisService.exists(SeckillKey.goodsStock, "" + goodsId)) {
+                log.info("Initializing stock for goods: {}", goodsId);
+                // Get fresh stock count from database
+                GoodsVo freshGoodsInfo = goodsService.getGoodsVoByGoodsId(goodsId);
+                if (freshGoodsInfo == null) {
+                    log.error("Failed to get goods info for ID: {}", goodsId);
+                    return;
+                }
+                if (redisService.setIfAbsent(SeckillKey.goodsStock, "" + goodsId, freshGoodsInfo.getStockCount())) {
+                    log.info("Stock initialized for goods {}: {}", goodsId, freshGoodsInfo.getStockCount());
+                }
+            }
+            markInitialized(goodsId);
+        } finally {
+            // Always release the lock when done, even if exception occurs
+            lock.unlock();
+        }
+    }
+
+    private void awaitLeader(Long goodsId, CompletableFuture<Void> leader) {
+        try {
+            leader.get(LOCK_TIMEOUT_MS * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // The leader's request reports the failure, followers carry on like the leader would
+            log.warn("Stock initialization of goods {} did not complete: {}", goodsId, e.toString());
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.example.seckill.service;
 
+import com.example.seckill.limit.StockAdmissionLimiter;
 import com.example.seckill.redis.SeckillKey;
 import com.example.seckill.vo.GoodsVo;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class SeckillInitService implements CommandLineRunner {
@@ -17,6 +21,12 @@ public class SeckillInitService implements CommandLineRunner {
     @Autowired
     private RedisService redisService;
 
+    @Autowired
+    private StockAdmissionLimiter stockAdmissionLimiter;
+
+    @Autowired
+    private RedisStockInitializer stockInitializer;
+
     @Override
     public void run(String... args) throws Exception {
         // Load all seckill goods and initialize Redis stock
@@ -25,16 +35,25 @@ public class SeckillInitService implements CommandLineRunner {
             return;
         }
         
-        // Clear previous data
+        List<String> staleKeys = new ArrayList<>(goodsList.size() * 2);
+        Map<String, Integer> stocks = new LinkedHashMap<>();
         for (GoodsVo goods : goodsList) {
-            Long goodsId = goods.getId();
-            redisService.delete(SeckillKey.isGoodsOver, "" + goodsId);
-            redisService.delete(SeckillKey.reservedStock, "" + goodsId);
+            String goodsId = "" + goods.getId();
+            staleKeys.add(redisService.getRealKey(SeckillKey.isGoodsOver, goodsId));
+            staleKeys.add(redisService.getRealKey(SeckillKey.reservedStock, goodsId));
+            stocks.put(goodsId, goods.getStockCount());
         }
-        
-        // Initialize stock in Redis
+
+        // Clear previous data (pipelined DELs)
+        redisService.multiDelete(staleKeys);
+
+        // Initialize stock in Redis (batched MSET)
+        redisService.multiSet(SeckillKey.goodsStock, stocks);
+
+        // Admission control starts from the freshly loaded stock, requests can skip the EXISTS check
         for (GoodsVo goods : goodsList) {
-            redisService.set(SeckillKey.goodsStock, "" + goods.getId(), goods.getStockCount());
+            stockAdmissionLimiter.updateRemaining(goods.getId(), goods.getStockCount());
+            stockInitializer.markInitialized(goods.getId());
         }
         
         System.out.println("Seckill goods stock initialized in Redis");
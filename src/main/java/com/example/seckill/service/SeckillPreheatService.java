@@ -0,0 +1,199 @@
+package com.example.seckill.service;
+
+import com.example.seckill.limit.StockAdmissionLimiter;
+import com.example.seckill.redis.SeckillKey;
+import com.example.seckill.vo.GoodsVo;
+import com.example.seckill.vo.StockSnapshot;
+import com.google.common.collect.Lists;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms every activity lead-minutes before its start_time, so no seckill request pays for
+ * cache initialization: Redis stock (SET NX, a live counter is never overwritten), sold-out flags,
+ * the local goods cache, the Lua script cache and the stock admission limiter.
+ * Goods are warmed in batches of pipelined commands, several batches in parallel.
+ * The service is ready once every activity starting within the lead window has been warmed.
+ */
+@Service
+@Slf4j
+public class SeckillPreheatService {
+
+    @Value("${seckill.preheat.enabled:true}")
+    private boolean enabled;
+
+    @Value("${seckill.preheat.lead-minutes:10}")
+    private int leadMinutes;
+
+    @Value("${seckill.preheat.batch-size:200}")
+    private int batchSize;
+
+    @Value("${seckill.preheat.parallelism:4}")
+    private int parallelism;
+
+    @Autowired
+    private GoodsService goodsService;
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private StockAdmissionLimiter stockAdmissionLimiter;
+
+    @Autowired
+    private RedisStockInitializer stockInitializer;
+
+    private ExecutorService executor;
+
+    // goodsId -> start time the goods was warmed for, re-warmed if the activity is rescheduled
+    private final Map<Long, Long> warmed = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+    private volatile int pending;
+    private volatile long lastRunAt;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "seckill-preheat-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Blocks its scheduler thread until every batch is warmed, spring.task.scheduling.pool.size
+     * keeps the other scheduled jobs running meanwhile
+     */
+    @Scheduled(fixedDelayString = "${seckill.preheat.interval-ms:30000}")
+    public void preheat() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<GoodsVo> upcoming = goodsService.listUpcomingGoodsVo(
+                new Date(now), new Date(now + TimeUnit.MINUTES.toMillis(leadMinutes)));
+
+        Set<Long> upcomingIds = new HashSet<>();
+        List<GoodsVo> cold = new ArrayList<>();
+        for (GoodsVo goods : upcoming) {
+            upcomingIds.add(goods.getId());
+            Long warmedFor = warmed.get(goods.getId());
+            if (warmedFor == null || warmedFor != goods.getStartTime().getTime()) {
+                cold.add(goods);
+            }
+            // Keep the local goods cache fresh for everything that is about to start or running
+            goodsService.cacheGoodsVo(goods);
+        }
+        // Forget activities that have ended
+        warmed.keySet().retainAll(upcomingIds);
+        pending = cold.size();
+        lastRunAt = now;
+        if (cold.isEmpty()) {
+            ready = true;
+            return;
+        }
+
+        log.info("Preheating {} seckill goods starting within {} minutes", cold.size(), leadMinutes);
+        long start = System.currentTimeMillis();
+        try {
+            // Script cache may have been flushed since startup
+            redisService.loadScripts();
+
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (List<GoodsVo> batch : Lists.partition(cold, batchSize)) {
+                futures.add(CompletableFuture.runAsync(() -> warmBatch(batch), executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+            pending = 0;
+            ready = true;
+            log.info("Preheated {} seckill goods in {} ms", cold.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            // Goods that failed stay cold and are retried on the next run
+            ready = false;
+            log.error("Seckill preheat failed", e);
+        }
+    }
+
+    private void warmBatch(List<GoodsVo> batch) {
+        long now = System.currentTimeMillis();
+        Map<String, Integer> stocks = new LinkedHashMap<>();
+        List<String> staleFlags = new ArrayList<>();
+        Map<String, Boolean> soldOut = new LinkedHashMap<>();
+        for (GoodsVo goods : batch) {
+            String goodsId = "" + goods.getId();
+            int stock = goods.getStockCount() == null ? 0 : goods.getStockCount();
+            stocks.put(goodsId, stock);
+            if (stock <= 0) {
+                soldOut.put(goodsId, true);
+            } else if (goods.getStartTime().getTime() > now) {
+                // Not started yet, a sold-out flag can only be left over from an earlier run
+                staleFlags.add(goodsId);
+            }
+        }
+
+        // Only fills missing counters, a counter that is already live belongs to the running sale
+        redisService.multiSetIfAbsent(SeckillKey.goodsStock, stocks);
+        redisService.multiDelete(SeckillKey.isGoodsOver, staleFlags);
+        redisService.multiSet(SeckillKey.isGoodsOver, soldOut);
+
+        // Admission limiter starts from what Redis actually holds (pipelined MGETs)
+        List<Long> goodsIds = new ArrayList<>(batch.size());
+        for (GoodsVo goods : batch) {
+            goodsIds.add(goods.getId());
+        }
+        Map<Long, StockSnapshot> snapshots = redisService.getStockSnapshots(goodsIds);
+        for (GoodsVo goods : batch) {
+            StockSnapshot snapshot = snapshots.get(goods.getId());
+            Integer stock = snapshot != null && snapshot.getRedisStock() != null
+                    ? snapshot.getRedisStock() : goods.getStockCount();
+            stockAdmissionLimiter.updateRemaining(goods.getId(), stock == null ? 0 : stock);
+            stockInitializer.markInitialized(goods.getId());
+            warmed.put(goods.getId(), goods.getStartTime().getTime());
+        }
+    }
+
+    /**
+     * True once every activity starting within the lead window has been warmed
+     */
+    public boolean isReady() {
+        return !enabled || ready;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("ready", isReady());
+        status.put("pending", pending);
+        status.put("warmed", warmed.size());
+        status.put("leadMinutes", leadMinutes);
+        status.put("lastRunAt", lastRunAt == 0 ? null : new Date(lastRunAt));
+        return status;
+    }
+}
@@ -1,19 +1,29 @@
 package com.example.seckill.service;
 
+import com.example.seckill.entity.SeckillGoods;
+import com.example.seckill.jfr.JfrSupport;
+import com.example.seckill.jfr.ReconcileEvent;
+import com.example.seckill.metrics.SeckillMetrics;
+import com.example.seckill.redis.LuaScriptRegistry;
 import com.example.seckill.redis.SeckillKey;
 import com.example.seckill.service.GoodsService;
 import com.example.seckill.service.RedisService;
 import com.example.seckill.vo.GoodsVo;
+import com.example.seckill.vo.StockSnapshot;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.util.ObjectUtils;
-import org.springframework.util.StringUtils;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
@@ -24,43 +34,94 @@ public class StockReconciliationService {
 
     @Autowired
     private RedisService redisService;
-    
+
+    @Autowired
+    private SeckillMetrics metrics;
+
     // Configuration parameters
     private static final int ALERT_THRESHOLD = 3; // Alert after this many consecutive retries
     private static final int LOW_STOCK_THRESHOLD_PERCENTAGE = 30; // Consider low stock when below 30%
     private static final boolean RECONCILE_ALL_ITEMS = true; // Whether to reconcile all products
     private static final long RETRY_DELAY_MS = 1000; // 1 second delay between retries
-
-    private static final String GET_STOCK_VALUES_SCRIPT = 
-        "local stockValue = redis.call('get', KEYS[1]) " +
-        "local reservedValue = redis.call('get', KEYS[2]) " +
-        "local result = {} " +
-        "if stockValue == false then result[1] = '' else result[1] = stockValue end " +
-        "if reservedValue == false then result[2] = '' else result[2] = reservedValue end " +
-        "return result";
-
-    private static final DefaultRedisScript<List> GET_STOCK_VALUES_SCRIPT_OBJ = 
-        new DefaultRedisScript<>(GET_STOCK_VALUES_SCRIPT, List.class);
+    private static final long ENDED_GRACE_MS = TimeUnit.HOURS.toMillis(1); // Keep checking ended activities for 1 hour
+
+    // Re-checks of mismatched goods run here, never on the scheduler thread
+    private final ScheduledExecutorService recheckExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stock-reconcile-recheck");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        recheckExecutor.shutdownNow();
+    }
 
     /**
-     * Scheduled reconciliation task, runs every 5 minutes
+     * Full reconciliation pass, a safety net behind {@link IncrementalStockReconciler}
+     * which checks goods as soon as their stock moves (every 10 minutes by default).
+     * One projection query for DB stock, pipelined MGETs for Redis stock and reserved stock,
+     * then an in-memory comparison; only mismatches are re-checked, asynchronously.
      */
-    @Scheduled(fixedRate = 1 * 30 * 1000) // Run every 5 minutes
+    @Scheduled(fixedRateString = "${seckill.reconcile.full-interval-ms:600000}")
     public void scheduledReconciliation() {
+        long start = System.nanoTime();
+        ReconcileEvent event = null;
+        if (JfrSupport.AVAILABLE) {
+            event = new ReconcileEvent();
+            event.begin();
+        }
+        try {
+            int mismatches = reconcileActiveGoods();
+            metrics.recordReconcileScan(mismatches);
+            metrics.getReconcileScan().record(SeckillMetrics.SUCCESS, start);
+            if (event != null) {
+                event.commit(mismatches, SeckillMetrics.SUCCESS);
+            }
+        } catch (RuntimeException e) {
+            metrics.getReconcileScan().record(SeckillMetrics.ERROR, start);
+            if (event != null) {
+                event.commit(0, SeckillMetrics.ERROR);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of goods scheduled for a re-check
+     */
+    private int reconcileActiveGoods() {
         log.info("Starting scheduled stock reconciliation");
-        List<GoodsVo> goodsList = goodsService.listGoodsVo();
-        
-        if (goodsList == null || goodsList.isEmpty()) {
+        List<SeckillGoods> stocks = goodsService.listActiveStocks(new Date(System.currentTimeMillis() - ENDED_GRACE_MS));
+
+        if (stocks == null || stocks.isEmpty()) {
             log.warn("No goods found for reconciliation");
-            return;
+            return 0;
+        }
+
+        List<Long> goodsIds = new ArrayList<>(stocks.size());
+        for (SeckillGoods stock : stocks) {
+            goodsIds.add(stock.getGoodsId());
         }
-        
-        for (GoodsVo goods : goodsList) {
+        Map<Long, StockSnapshot> snapshots = redisService.getStockSnapshots(goodsIds);
+
+        int mismatches = 0;
+        for (SeckillGoods stock : stocks) {
+            StockSnapshot snapshot = snapshots.get(stock.getGoodsId());
             // Determine if reconciliation is needed based on watermark
-            if (shouldReconcile(goods)) {
-                reconcileStock(goods.getId());
+            if (snapshot == null || !shouldReconcile(stock, snapshot)) {
+                continue;
+            }
+            if (!isConsistent(snapshot, stock.getStockCount())) {
+                mismatches++;
+                log.warn("Stock inconsistency detected for goods {}: Redis({}) + Reserved({}) != DB({}), scheduling re-check",
+                        stock.getGoodsId(), snapshot.getRedisStock(), snapshot.getReservedStock(), stock.getStockCount());
+                // The scan counts as the first check
+                scheduleRecheck(stock.getGoodsId(), 2);
             }
         }
+        log.info("Stock reconciliation checked {} goods, {} mismatches", stocks.size(), mismatches);
+        return mismatches;
     }
 
     /**
@@ -68,124 +129,104 @@ public class StockReconciliationService {
      * 1. If configured to reconcile all products, then reconcile all
      * 2. Otherwise, only reconcile products with stock below the watermark
      */
-    private boolean shouldReconcile(GoodsVo goods) {
+    private boolean shouldReconcile(SeckillGoods stock, StockSnapshot snapshot) {
+        // If the product stock doesn't exist in Redis, there is nothing to compare
+        if (snapshot.getRedisStock() == null) {
+            return false;
+        }
         if (RECONCILE_ALL_ITEMS) {
             return true;
         }
-        
-        // Check stock in Redis
-        Integer redisStock = redisService.get(SeckillKey.goodsStock, "" + goods.getId());
-        
-        // If the product stock doesn't exist in Redis, return false
-        if (redisStock == null) {
-            return false;
-        }
-        
+
         // Calculate current stock percentage
-        int initialStock = goods.getTotalStock();
+        int initialStock = stock.getTotalStock() == null ? 0 : stock.getTotalStock();
         if (initialStock <= 0) {
             return true; // If initial stock is abnormal, perform reconciliation
         }
-        
-        int stockPercentage = (redisStock * 100) / initialStock;
+
+        int stockPercentage = (snapshot.getRedisStock() * 100) / initialStock;
         return stockPercentage <= LOW_STOCK_THRESHOLD_PERCENTAGE;
     }
 
     /**
-     * Perform stock reconciliation with retry logic
+     * Theoretical consistency: Redis stock + Reserved stock = DB stock
      */
-    public void reconcileStock(Long goodsId) {
-        log.debug("Reconciling stock for goods ID: {}", goodsId);
-        
-        int retryCount = 0;
-        boolean isConsistent = false;
-        
-        // Retry up to ALERT_THRESHOLD times
-        while (!isConsistent && retryCount < ALERT_THRESHOLD) {
-            try {
-                // Get current stock from DB
-                GoodsVo goods = goodsService.getGoodsVoByGoodsId(goodsId);
-                if (goods == null) {
-                    log.error("Failed to get goods info for ID: {} during reconciliation", goodsId);
-                    return;
-                }
-                
-                Integer dbStock = goods.getStockCount();
-
-                String stockKey = redisService.getRealKey(SeckillKey.goodsStock, "" + goodsId);
-                String reservedKey = redisService.getRealKey(SeckillKey.reservedStock, "" + goodsId);
-                // Get stock and reserved stock from Redis
-                // Integer redisStock = redisService.get(SeckillKey.goodsStock, "" + goodsId);
-                // Integer reservedStock = redisService.get(SeckillKey.reservedStock, "" + goodsId);
-
-                // Get stock and reserved stock from Redis concurently using MGET
-                // List<Integer> values = redisService.mget(stockKey, reservedKey);
-                // Integer redisStock = values.get(0);
-                // Integer reservedStock = values.get(1) != null ? values.get(1) : 0;
-
-                // Get stock and reserved stock from Redis atomically using lua
-                List<Object> values = redisService.executeScript(
-                    GET_STOCK_VALUES_SCRIPT_OBJ, 
-                    Arrays.asList(stockKey, reservedKey)
-                );
-
-                Integer redisStock = values.get(0) != null && !values.get(0).toString().isEmpty() ? Integer.parseInt(values.get(0).toString()) : null;
-                Integer reservedStock = values.get(1) != null  && !values.get(1).toString().isEmpty() ? Integer.parseInt(values.get(1).toString()) : 0;
-                
-                // If stock information doesn't exist in Redis, log and skip
-                if (redisStock == null) {
-                    log.warn("Redis stock not found for goods: {}", goodsId);
-                    return;
-                }
-                
-                // Reserved stock might not exist, default to 0
-                reservedStock = reservedStock == null ? 0 : reservedStock;
-                
-                // Calculate theoretical consistency: Redis stock + Reserved stock = DB stock
-                isConsistent = (redisStock + reservedStock == dbStock);
-                
-                if (!isConsistent) {
-                    retryCount++;
-                    log.warn("Stock inconsistency detected for goods {}: Redis({}) + Reserved({}) = All({}) != DB({}), retry: {}/{}", 
-                            goodsId, redisStock, reservedStock, redisStock + reservedStock, dbStock, retryCount, ALERT_THRESHOLD);
-                    
-                    if (retryCount >= ALERT_THRESHOLD) {
-                        // Send alert when threshold exceeded
-                        sendAlert(goodsId, redisStock, reservedStock, dbStock);
-                        
-                        // dont do this
-                        // Auto-correction strategy - use DB as source of truth
-                        // if (dbStock >= 0) {
-                        //     log.info("Auto-correcting Redis stock for goods {}: Setting to {}", goodsId, dbStock - reservedStock);
-                        //     redisService.set(SeckillKey.goodsStock, "" + goodsId, dbStock - reservedStock);
-                        // }
-                    } else {
-                        // Wait before retrying
-                        try {
-                            Thread.sleep(RETRY_DELAY_MS);
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            log.error("Retry delay interrupted", e);
-                        }
-                    }
-                } else {
-                    log.info("Stock reconciliation successful for goods {}: Redis({}) + Reserved({}) = DB({})", 
-                            goodsId, redisStock, reservedStock, dbStock);
-                }
-            } catch (Exception e) {
-                retryCount++;
-                log.error("Error during stock reconciliation for goods: {}, retry: {}/{}", 
-                         goodsId, retryCount, ALERT_THRESHOLD, e);
-                
-                if (retryCount < ALERT_THRESHOLD) {
-                    // Wait before retrying
-                    try {
-                        Thread.sleep(RETRY_DELAY_MS);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        log.error("Retry delay interrupted", ie);
-                    }
-                }
+    private boolean isConsistent(StockSnapshot snapshot, Integer dbStock) {
+        int reservedStock = snapshot.getReservedStock() == null ? 0 : snapshot.getReservedStock();
+        return dbStock != null && snapshot.getRedisStock() + reservedStock == dbStock;
+    }
+
+    /**
+     * Re-check a goods whose mismatch was found by another check, which counts as the first attempt
+     */
+    public void recheckLater(Long goodsId) {
+        scheduleRecheck(goodsId, 2);
+    }
+
+    private void scheduleRecheck(Long goodsId, int attempt) {
+        recheckExecutor.schedule(() -> reconcileStock(goodsId, attempt), RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Re-check one goods, alerting once ALERT_THRESHOLD consecutive checks disagree.
+     * Transactions in flight between Redis and the DB make a single mismatch normal,
+     * a persistent one is not.
+     */
+    private void reconcileStock(Long goodsId, int attempt) {
+        try {
+            // Get current stock from DB
+            GoodsVo goods = goodsService.getGoodsVoByGoodsId(goodsId);
+            if (goods == null) {
+                log.error("Failed to get goods info for ID: {} during reconciliation", goodsId);
+                return;
+            }
+            Integer dbStock = goods.getStockCount();
+
+            // Get stock and reserved stock from Redis atomically using lua
+            List<Object> values = redisService.executeScript(
+                LuaScriptRegistry.GET_STOCK_VALUES,
+                List.class,
+                Arrays.asList(
+                    redisService.getRealKey(SeckillKey.goodsStock, "" + goodsId),
+                    redisService.getRealKey(SeckillKey.reservedStock, "" + goodsId)
+                )
+            );
+            Integer redisStock = values.get(0) != null && !values.get(0).toString().isEmpty() ? Integer.parseInt(values.get(0).toString()) : null;
+            Integer reservedStock = values.get(1) != null && !values.get(1).toString().isEmpty() ? Integer.parseInt(values.get(1).toString()) : 0;
+
+            // If stock information doesn't exist in Redis, log and skip
+            if (redisStock == null) {
+                log.warn("Redis stock not found for goods: {}", goodsId);
+                return;
+            }
+
+            if (isConsistent(new StockSnapshot(goodsId, redisStock, reservedStock), dbStock)) {
+                log.info("Stock reconciliation successful for goods {}: Redis({}) + Reserved({}) = DB({})",
+                        goodsId, redisStock, reservedStock, dbStock);
+                return;
+            }
+
+            log.warn("Stock inconsistency detected for goods {}: Redis({}) + Reserved({}) = All({}) != DB({}), retry: {}/{}",
+                    goodsId, redisStock, reservedStock, redisStock + reservedStock, dbStock, attempt, ALERT_THRESHOLD);
+            if (attempt >= ALERT_THRESHOLD) {
+                // Send alert when threshold exceeded
+                metrics.getReconcileAlerts().increment();
+                sendAlert(goodsId, redisStock, reservedStock, dbStock);
+
+                // dont do this
+                // Auto-correction strategy - use DB as source of truth
+                // if (dbStock >= 0) {
+                //     log.info("Auto-correcting Redis stock for goods {}: Setting to {}", goodsId, dbStock - reservedStock);
+                //     redisService.set(SeckillKey.goodsStock, "" + goodsId, dbStock - reservedStock);
+                // }
+            } else {
+                scheduleRecheck(goodsId, attempt + 1);
+            }
+        } catch (Exception e) {
+            log.error("Error during stock reconciliation for goods: {}, retry: {}/{}",
+                     goodsId, attempt, ALERT_THRESHOLD, e);
+            if (attempt < ALERT_THRESHOLD) {
+                scheduleRecheck(goodsId, attempt + 1);
             }
         }
     }
@@ -195,22 +236,17 @@ public class StockReconciliationService {
      */
     private void sendAlert(Long goodsId, Integer redisStock, Integer reservedStock, Integer dbStock) {
         // Integration with various alert systems (email, SMS, enterprise WeChat, etc.)
-        log.error("ALERT: Persistent stock inconsistency for goods {}: Redis({}) + Reserved({}) != DB({})", 
+        log.error("ALERT: Persistent stock inconsistency for goods {}: Redis({}) + Reserved({}) != DB({})",
                 goodsId, redisStock, reservedStock, dbStock);
-        
+
         // In production, add alerting code such as sending emails or messages
         // alertService.send(...);
     }
 
     /**
-     * Manually trigger reconciliation for a specific product
+     * Manually trigger reconciliation for a specific product, runs on the re-check thread
      */
     public void manualReconcile(Long goodsId) {
-        GoodsVo goods = goodsService.getGoodsVoByGoodsId(goodsId);
-        if (goods != null) {
-            reconcileStock(goodsId);
-        } else {
-            log.error("Cannot reconcile - goods not found: {}", goodsId);
-        }
+        recheckExecutor.execute(() -> reconcileStock(goodsId, 1));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,257 @@
+package com.example.seckill.service;
+
+import com.example.seckill.limit.AdaptiveConcurrencyLimiter;
+import com.example.seckill.limit.ConcurrencyLimiterRegistry;
+import com.example.seckill.redis.LuaScriptRegistry;
+import com.example.seckill.redis.WaitingRoomKey;
+import com.example.seckill.vo.GoodsVo;
+import com.example.seckill.vo.WaitingRoomStatus;
+import com.example.seckill.vo.WaitingRoomTicket;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Virtual waiting room in front of the seckill endpoint.
+ *
+ * Users join before or after the start time and get a position from a Redis INCR (idempotent per user)
+ * plus a signed ticket. From start_time on, every node moves the shared admission watermark forward
+ * once per wave interval by the number of requests it can serve in that interval, measured by the
+ * "seckill" adaptive concurrency limiter. The sum over all nodes is the cluster throughput, and the
+ * watermark never passes the last issued position, so idle time does not bank admissions.
+ * Position polling and ticket checks only read the watermark cached in memory.
+ *
+ * Tickets are signed with HMAC-SHA256 over goods, user and position. The shipped secret is a
+ * placeholder, startup fails if it is still in use with the waiting room enabled outside the
+ * dev / local-perf profiles.
+ */
+@Service
+@Slf4j
+public class WaitingRoomService {
+
+    private static final String SECKILL_LIMITER = "seckill";
+    private static final String DEFAULT_SECRET = "change-me";
+
+    @Value("${seckill.waiting-room.enabled:false}")
+    private boolean enabled;
+
+    @Value("${seckill.waiting-room.secret:" + DEFAULT_SECRET + "}")
+    private String secret;
+
+    @Value("${seckill.waiting-room.wave-interval-ms:1000}")
+    private long waveIntervalMs;
+
+    // Used until the concurrency limiter has latency samples
+    @Value("${seckill.waiting-room.initial-wave-size:100}")
+    private int initialWaveSize;
+
+    @Value("${seckill.waiting-room.max-wave-size:5000}")
+    private int maxWaveSize;
+
+    @Autowired
+    private RedisService redisService;
+
+    @Autowired
+    private GoodsService goodsService;
+
+    @Autowired
+    private ConcurrencyLimiterRegistry concurrencyLimiterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    private final Map<Long, Room> rooms = new ConcurrentHashMap<>();
+
+    // Thread-safe, keyed once with the secret
+    private HashFunction ticketMac;
+
+    @PostConstruct
+    public void init() {
+        if (enabled && DEFAULT_SECRET.equals(secret) && !environment.acceptsProfiles(Profiles.of("dev", "local-perf"))) {
+            throw new IllegalStateException(
+                    "seckill.waiting-room.secret is the shipped placeholder, anyone could sign tickets; set a real secret");
+        }
+        ticketMac = Hashing.hmacSha256(secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Join the waiting room of a goods, returns the same position when called again
+     */
+    public WaitingRoomTicket join(Long userId, GoodsVo goods) {
+        Room room = getRoom(goods.getId(), goods);
+        Long position = redisService.executeScript(
+            LuaScriptRegistry.WAITING_ROOM_JOIN,
+            Long.class,
+            Arrays.asList(
+                redisService.getRealKey(WaitingRoomKey.positions, "" + goods.getId()),
+                redisService.getRealKey(WaitingRoomKey.issued, "" + goods.getId())
+            ),
+            userId,
+            WaitingRoomKey.positions.expireSeconds()
+        );
+        room.issued = Math.max(room.issued, position);
+        return new WaitingRoomTicket(userId, goods.getId(), position, sign(userId, goods.getId(), position));
+    }
+
+    /**
+     * Position of a ticket against the locally cached watermark, no Redis access
+     *
+     * @return null if the ticket is invalid
+     */
+    public WaitingRoomStatus getStatus(Long userId, Long goodsId, String ticket) {
+        Long position = verify(userId, goodsId, ticket);
+        if (position == null) {
+            return null;
+        }
+        Room room = getRoom(goodsId, null);
+        long admittedUpTo = room.admitted;
+        long ahead = Math.max(0, position - admittedUpTo);
+        long wave = Math.max(1, room.lastWaveSize);
+        long waitSeconds = (ahead + wave - 1) / wave * waveIntervalMs / 1000;
+        return new WaitingRoomStatus(position, admittedUpTo, ahead, ahead == 0, waitSeconds);
+    }
+
+    /**
+     * Whether the ticket is valid for this user and goods and its position has been admitted
+     */
+    public boolean isAdmitted(Long userId, Long goodsId, String ticket) {
+        Long position = verify(userId, goodsId, ticket);
+        return position != null && position <= getRoom(goodsId, null).admitted;
+    }
+
+    /**
+     * Release the next wave for every started activity known to this node
+     */
+    @Scheduled(fixedDelayString = "${seckill.waiting-room.wave-interval-ms:1000}")
+    public void releaseWaves() {
+        if (!enabled || rooms.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int wave = computeWaveSize();
+        for (Room room : rooms.values()) {
+            if (room.endTime < now - waveIntervalMs) {
+                rooms.remove(room.goodsId);
+                continue;
+            }
+            // Before the start only refresh the watermark, nobody is let in early
+            int size = room.startTime <= now ? wave : 0;
+            try {
+                Long admitted = redisService.executeScript(
+                    LuaScriptRegistry.WAITING_ROOM_ADVANCE,
+                    Long.class,
+                    Arrays.asList(
+                        redisService.getRealKey(WaitingRoomKey.admitted, "" + room.goodsId),
+                        redisService.getRealKey(WaitingRoomKey.issued, "" + room.goodsId)
+                    ),
+                    size,
+                    WaitingRoomKey.admitted.expireSeconds()
+                );
+                if (admitted != null) {
+                    room.admitted = admitted;
+                }
+                room.lastWaveSize = wave;
+            } catch (Exception e) {
+                log.error("Failed to release waiting room wave for goods: {}", room.goodsId, e);
+            }
+        }
+    }
+
+    /**
+     * Requests this node can serve in one wave interval, from the adaptive limiter's
+     * concurrency limit and baseline latency
+     */
+    private int computeWaveSize() {
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiterRegistry.get(SECKILL_LIMITER);
+        double throughput = limiter.getThroughput();
+        if (throughput <= 0) {
+            return initialWaveSize;
+        }
+        long size = (long) (throughput * waveIntervalMs / 1000);
+        return (int) Math.max(1, Math.min(maxWaveSize, size));
+    }
+
+    private Room getRoom(Long goodsId, GoodsVo goods) {
+        Room room = rooms.get(goodsId);
+        if (room != null) {
+            return room;
+        }
+        GoodsVo info = goods != null ? goods : goodsService.getGoodsVoFromCache(goodsId);
+        return rooms.computeIfAbsent(goodsId, id -> new Room(id,
+                info == null ? Long.MAX_VALUE : info.getStartTime().getTime(),
+                info == null ? 0 : info.getEndTime().getTime()));
+    }
+
+    private String sign(Long userId, Long goodsId, long position) {
+        return position + "." + ticketMac.hashString(goodsId + ":" + userId + ":" + position, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the position carried by the ticket, or null if the signature does not match
+     */
+    private Long verify(Long userId, Long goodsId, String ticket) {
+        if (ticket == null) {
+            return null;
+        }
+        int dot = ticket.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        long position;
+        try {
+            position = Long.parseLong(ticket.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        // Constant-time comparison, a timing difference would leak the signature byte by byte
+        byte[] expected = sign(userId, goodsId, position).getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(expected, ticket.getBytes(StandardCharsets.UTF_8)) ? position : null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("waveSize", enabled ? computeWaveSize() : 0);
+        for (Room room : rooms.values()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("issued", room.issued);
+            item.put("admitted", room.admitted);
+            stats.put("goods:" + room.goodsId, item);
+        }
+        return stats;
+    }
+
+    private static class Room {
+        private final Long goodsId;
+        private final long startTime;
+        private final long endTime;
+        // Issued positions seen by this node, and the shared watermark as of the last wave
+        private volatile long issued;
+        private volatile long admitted;
+        private volatile long lastWaveSize;
+
+        Room(Long goodsId, long startTime, long endTime) {
+            this.goodsId = goodsId;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+    }
+}
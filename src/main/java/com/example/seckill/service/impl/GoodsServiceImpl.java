@@ -4,15 +4,27 @@ import com.example.seckill.dao.GoodsDao;
 import com.example.seckill.entity.SeckillGoods;
 import com.example.seckill.service.GoodsService;
 import com.example.seckill.vo.GoodsVo;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class GoodsServiceImpl implements GoodsService {
     
     @Autowired
     private GoodsDao goodsDao;
+
+    // Local goods cache, refreshed by the preheat scheduler before each activity starts
+    private final Cache<Long, GoodsVo> goodsCache = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(30, TimeUnit.MINUTES)
+            .build();
     
     @Override
     public List<GoodsVo> listGoodsVo() {
@@ -24,6 +36,41 @@ public class GoodsServiceImpl implements GoodsService {
         return goodsDao.getGoodsVoByGoodsId(goodsId);
     }
 
+    @Override
+    public GoodsVo getGoodsVoFromCache(Long goodsId) {
+        GoodsVo goods = goodsCache.getIfPresent(goodsId);
+        if (goods == null) {
+            goods = goodsDao.getGoodsVoByGoodsId(goodsId);
+            if (goods != null) {
+                goodsCache.put(goodsId, goods);
+            }
+        }
+        return goods;
+    }
+
+    @Override
+    public void cacheGoodsVo(GoodsVo goodsVo) {
+        goodsCache.put(goodsVo.getId(), goodsVo);
+    }
+
+    @Override
+    public List<GoodsVo> listUpcomingGoodsVo(Date from, Date to) {
+        return goodsDao.listUpcomingGoodsVo(from, to);
+    }
+
+    @Override
+    public List<SeckillGoods> listActiveStocks(Date since) {
+        return goodsDao.listActiveStocks(since);
+    }
+
+    @Override
+    public List<SeckillGoods> listStocksByGoodsIds(Collection<Long> goodsIds) {
+        if (goodsIds == null || goodsIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return goodsDao.listStocksByGoodsIds(goodsIds);
+    }
+
     @Override
     public boolean reduceStockIncorrect(Long seckillGoodsId) {
         // 1. 查询库存（未加锁）
@@ -2,20 +2,79 @@ package com.example.seckill.service.impl;
 
 import com.example.seckill.dao.OrderDao;
 import com.example.seckill.entity.SeckillOrder;
+import com.example.seckill.redis.OrderKey;
+import com.example.seckill.service.GoodsService;
 import com.example.seckill.service.OrderService;
+import com.example.seckill.service.RedisService;
 import com.example.seckill.util.UUIDUtil;
 import com.example.seckill.vo.GoodsVo;
+import com.example.seckill.vo.OrderPageVo;
 import com.example.seckill.vo.OrderVo;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Service
+@Slf4j
 public class OrderServiceImpl implements OrderService {
     
     @Autowired
     private OrderDao orderDao;
+
+    @Autowired
+    private GoodsService goodsService;
+
+    @Autowired
+    private RedisService redisService;
+
+    @Value("${seckill.order-cache.enabled:true}")
+    private boolean orderCacheEnabled;
+
+    // Other nodes only evict their Redis copy, so local entries live just long enough to absorb refresh bursts
+    @Value("${seckill.order-cache.local-ttl-ms:3000}")
+    private long localTtlMs;
+
+    // Second delete of an evicted order, after readers that loaded the old row have written it back
+    @Value("${seckill.order-cache.evict-delay-ms:1000}")
+    private long evictDelayMs;
+
+    // Order details by order number, empty for numbers with no order (negative cache)
+    private Cache<String, Optional<OrderVo>> orderCache;
+
+    private final ScheduledExecutorService evictExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "order-cache-evict");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        orderCache = CacheBuilder.newBuilder()
+                .maximumSize(100000)
+                .expireAfterWrite(localTtlMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictExecutor.shutdownNow();
+    }
     
     @Override
     public SeckillOrder createOrder(Long userId, GoodsVo goodsVo) {
@@ -38,9 +97,45 @@ public class OrderServiceImpl implements OrderService {
         return orderDao.getOrderByUserIdGoodsId(userId, goodsId);
     }
     
+    /**
+     * Local cache, then Redis, then the join query; unknown order numbers are cached as missing
+     * for OrderKey.notFound's expiry so repeated lookups of a bad number stay off the DB
+     */
     @Override
     public OrderVo getOrderByOrderNo(String orderNo) {
-        return orderDao.getOrderByOrderNo(orderNo);
+        if (!orderCacheEnabled) {
+            return orderDao.getOrderByOrderNo(orderNo);
+        }
+        Optional<OrderVo> cached = orderCache.getIfPresent(orderNo);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+
+        OrderVo order;
+        boolean knownMissing;
+        try {
+            order = redisService.get(OrderKey.detail, orderNo);
+            knownMissing = order == null && redisService.exists(OrderKey.notFound, orderNo);
+        } catch (DataAccessException e) {
+            // 缓存不可用（连接失败、超时等）时直接查库，不阻断订单查询
+            log.warn("Order cache unavailable, reading order {} from DB", orderNo, e);
+            return orderDao.getOrderByOrderNo(orderNo);
+        }
+        if (order == null && !knownMissing) {
+            order = orderDao.getOrderByOrderNo(orderNo);
+            try {
+                if (order != null) {
+                    redisService.set(OrderKey.detail, orderNo, order);
+                } else {
+                    redisService.set(OrderKey.notFound, orderNo, true);
+                }
+            } catch (DataAccessException e) {
+                // The next lookup queries the DB again
+                log.warn("Failed to cache order {}", orderNo, e);
+            }
+        }
+        orderCache.put(orderNo, Optional.ofNullable(order));
+        return order;
     }
     
     @Override
@@ -48,6 +143,26 @@ public class OrderServiceImpl implements OrderService {
         return orderDao.getOrdersByUserId(userId);
     }
 
+    @Override
+    public OrderPageVo getOrderPage(Long userId, Long cursor, int size) {
+        // One extra row tells whether another page exists
+        List<OrderVo> orders = orderDao.getOrderPageByUserId(userId, cursor, size + 1);
+        boolean hasMore = orders.size() > size;
+        if (hasMore) {
+            orders = orders.subList(0, size);
+        }
+        for (OrderVo order : orders) {
+            GoodsVo goods = goodsService.getGoodsVoFromCache(order.getGoodsId());
+            if (goods != null) {
+                order.setGoodsName(goods.getGoodsName());
+                order.setGoodsImg(goods.getGoodsImg());
+                order.setGoodsPrice(goods.getGoodsPrice());
+            }
+        }
+        Long nextCursor = hasMore ? orders.get(orders.size() - 1).getId() : null;
+        return new OrderPageVo(orders, nextCursor, hasMore);
+    }
+
     @Override
     public Integer countOrdersByGoodsId(long goodsId) {
         return orderDao.countOrdersByGoodsId(goodsId);
@@ -67,6 +182,16 @@ public class OrderServiceImpl implements OrderService {
         
         // 插入订单
         orderDao.insertOrder(order);
+
+        // 订单详情页在秒杀结束后会被反复刷新，写入后即预热缓存
+        if (orderCacheEnabled) {
+            OrderVo orderVo = new OrderVo();
+            BeanUtils.copyProperties(order, orderVo);
+            orderVo.setGoodsName(goodsVo.getGoodsName());
+            orderVo.setGoodsImg(goodsVo.getGoodsImg());
+            orderVo.setGoodsPrice(goodsVo.getGoodsPrice());
+            afterCommit(() -> cacheOrder(orderVo));
+        }
         return order;
     }
 
@@ -76,7 +201,58 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
-    public boolean cancelOrder(String transactionId) {
-        return orderDao.cancelOrder(transactionId) > 0;
+    public boolean cancelOrder(String transactionId, String orderNo) {
+        boolean cancelled = orderDao.cancelOrder(transactionId) > 0;
+        if (cancelled && orderCacheEnabled) {
+            afterCommit(() -> evictOrder(orderNo));
+        }
+        return cancelled;
+    }
+
+    private void cacheOrder(OrderVo order) {
+        orderCache.put(order.getOrderNo(), Optional.of(order));
+        try {
+            redisService.set(OrderKey.detail, order.getOrderNo(), order);
+        } catch (RuntimeException e) {
+            // The order is committed, a cold cache only costs one query
+            log.warn("Failed to cache order {}", order.getOrderNo(), e);
+        }
+    }
+
+    /**
+     * Drop a cached order after its status changed, every status update must go through here.
+     * A reader that loaded the old row before the commit can write it back after this delete,
+     * so the entry is deleted once more evict-delay-ms later.
+     */
+    private void evictOrder(String orderNo) {
+        deleteCachedOrder(orderNo);
+        evictExecutor.schedule(() -> deleteCachedOrder(orderNo), evictDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void deleteCachedOrder(String orderNo) {
+        orderCache.invalidate(orderNo);
+        try {
+            redisService.delete(OrderKey.detail, orderNo);
+        } catch (RuntimeException e) {
+            // Stale until OrderKey.detail expires
+            log.error("Failed to evict cached order {}", orderNo, e);
+        }
+    }
+
+    /**
+     * Run once the surrounding transaction commits, or right away without one, so readers never
+     * cache a row that could still roll back
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 }
\ No newline at end of file
@@ -6,13 +6,12 @@ import com.example.seckill.redis.SeckillKey;
 import com.example.seckill.service.GoodsService;
 import com.example.seckill.service.OrderService;
 import com.example.seckill.service.RedisService;
+import com.example.seckill.service.RedisStockInitializer;
 import com.example.seckill.service.SeckillService;
-import com.example.seckill.utils.RedisDistributedLock;
 import com.example.seckill.vo.GoodsVo;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
@@ -33,15 +32,15 @@ public class SeckillServiceImplv2 implements SeckillService {
     @Autowired
     private RedisService redisService;
 
+    @Autowired
+    private RedisStockInitializer stockInitializer;
+
 
     @Autowired
     private ApplicationContext applicationContext;
 
     private static final ExecutorService orderExecutor = Executors.newFixedThreadPool(5000);
 
-    private static final String LOCK_PREFIX = "init_stock_lock:";
-    private static final int LOCK_EXPIRE_SECONDS = 10; // 10 seconds lock expiration
-    private static final long LOCK_TIMEOUT_MS = 5000; // 5 seconds timeout for acquiring lock
 
 
 
@@ -59,7 +58,7 @@ public class SeckillServiceImplv2 implements SeckillService {
         }
 
         // Lazy initialization of stock in Redis if needed
-        initStockIfNeeded(goodsVo);
+        stockInitializer.ensureInitialized(goodsVo.getId());
 
         // 2. Redis预减库存，减少对数据库的访问
         Long stock = redisService.decr(SeckillKey.goodsStock, "" + goodsVo.getId());
@@ -101,45 +100,6 @@ public class SeckillServiceImplv2 implements SeckillService {
         return order;
     }
 
-    private void initStockIfNeeded(GoodsVo goodsVo) {
-        Long goodsId = goodsVo.getId();
-        
-        // Check if stock already exists in Redis
-        if (!redisService.exists(SeckillKey.goodsStock, "" + goodsId)) {
-            // Create distributed lock with proper timeout and unique identifier
-            String lockKey = LOCK_PREFIX + goodsId;
-            RedisDistributedLock lock = new RedisDistributedLock(redisService, lockKey, LOCK_EXPIRE_SECONDS);
-            
-            boolean lockAcquired = lock.tryLock(LOCK_TIMEOUT_MS);
-            if (lockAcquired) {
-                try {
-                    // Double-check if another thread has already initialized (check-lock-check pattern)
-                    if (!redisService.exists(SeckillKey.goodsStock, "" + goodsId)) {
-                        log.info("Initializing stock for goods: {}", goodsId);
-                        // Get fresh stock count from database
-                        GoodsVo freshGoodsInfo = goodsService.getGoodsVoByGoodsId(goodsId);
-                        if (freshGoodsInfo != null) {
-                            redisService.set(SeckillKey.goodsStock, "" + goodsId, freshGoodsInfo.getStockCount());
-                            log.info("Stock initialized for goods {}: {}", goodsId, freshGoodsInfo.getStockCount());
-                        } else {
-                            log.error("Failed to get goods info for ID: {}", goodsId);
-                        }
-                    }
-                } finally {
-                    // Always release the lock when done, even if exception occurs
-                    lock.unlock();
-                }
-            } else {
-                // Another thread is initializing, wait briefly and continue
-                try {
-                    TimeUnit.MILLISECONDS.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }
-        }
-    }
-
     /**
      * 事务操作：减库存、创建订单
      */
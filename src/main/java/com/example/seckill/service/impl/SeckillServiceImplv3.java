@@ -1,22 +1,28 @@
 package com.example.seckill.service.impl;
 
 import com.example.seckill.entity.SeckillOrder;
+import com.example.seckill.exception.GlobalException;
+import com.example.seckill.jfr.DeductionEvent;
+import com.example.seckill.jfr.JfrSupport;
+import com.example.seckill.limit.StockAdmissionLimiter;
+import com.example.seckill.metrics.SeckillMetrics;
+import com.example.seckill.metrics.StageTimer;
 import com.example.seckill.mq.MQProducer;
+import com.example.seckill.redis.LuaScriptRegistry;
 import com.example.seckill.redis.SeckillKey;
 import com.example.seckill.service.GoodsService;
 import com.example.seckill.service.OrderService;
+import com.example.seckill.service.PipelineLagTracker;
 import com.example.seckill.service.RedisService;
+import com.example.seckill.service.RedisStockInitializer;
 import com.example.seckill.service.SeckillService;
-import com.example.seckill.utils.RedisDistributedLock;
 import com.example.seckill.vo.GoodsVo;
 
-import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 import lombok.extern.slf4j.Slf4j;
 
@@ -33,9 +39,8 @@ public class SeckillServiceImplv3 implements SeckillService {
     @Autowired
     private RedisService redisService;
 
-    private static final String LOCK_PREFIX = "init_stock_lock:";
-    private static final int LOCK_EXPIRE_SECONDS = 10; // 10 seconds lock expiration
-    private static final long LOCK_TIMEOUT_MS = 5000; // 5 seconds timeout for acquiring lock
+    @Autowired
+    private RedisStockInitializer stockInitializer;
 
     private static final boolean TIMEOUT_CANCEL_ORDER = false; // Whether to cancel order
 
@@ -43,29 +48,17 @@ public class SeckillServiceImplv3 implements SeckillService {
     @Autowired
     private MQProducer mqProducer;
 
-    // decrease stock and pre
-    private static final String DECREASE_STOCK_SCRIPT = 
-        "local stock = redis.call('decr', KEYS[1]) " +
-        "if stock >= 0 then " +
-        "  redis.call('incr', KEYS[2]) " +
-        "  return stock " +
-        "else " +
-        "  redis.call('incr', KEYS[1]) " + // rollback if insufficient
-        "  return -1 " +
-        "end";
-
-    // Script compiled once for efficiency
-    private static final DefaultRedisScript<Long> DECREASE_STOCK_REDIS_SCRIPT = new DefaultRedisScript<>(DECREASE_STOCK_SCRIPT, Long.class);
+    @Autowired
+    private StockAdmissionLimiter stockAdmissionLimiter;
 
+    @Autowired
+    private SeckillMetrics metrics;
 
-    private static final String ROLLBACK_STOCK_SCRIPT = 
-        "redis.call('incr', KEYS[1]) " +
-        "redis.call('decr', KEYS[2]) " +
-        "return 1";
+    @Autowired
+    private StageTimer stageTimer;
 
-    // Script compiled once for efficiency
-    private static final DefaultRedisScript<Long> ROLLBACK_STOCK_REDIS_SCRIPT = 
-        new DefaultRedisScript<>(ROLLBACK_STOCK_SCRIPT, Long.class);
+    @Autowired
+    private PipelineLagTracker pipelineLagTracker;
 
     // Local cache for sold-out goods with 5 minutes expiration
     private final Cache<Long, Boolean> localSoldOutCache = CacheBuilder.newBuilder()
@@ -82,39 +75,103 @@ public class SeckillServiceImplv3 implements SeckillService {
      */
     @Override
     public SeckillOrder seckill(Long userId, GoodsVo goodsVo) {
+        long start = System.nanoTime();
+        try {
+            return doSeckill(userId, goodsVo, start);
+        } catch (GlobalException e) {
+            metrics.getService().record(e.getCode() == 429 ? SeckillMetrics.REJECTED : SeckillMetrics.ERROR, start);
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.getService().record(SeckillMetrics.ERROR, start);
+            throw e;
+        }
+    }
+
+    private SeckillOrder doSeckill(Long userId, GoodsVo goodsVo, long start) {
         // 1. First check if goods are already marked as sold out (fast-fail check)
-        if (isGoodsOver(goodsVo.getId())) {
+        long stageStart = stageTimer.start();
+        boolean goodsOver = isGoodsOver(goodsVo.getId());
+        stageTimer.stop(StageTimer.Stage.SOLD_OUT_CHECK, stageStart);
+        if (goodsOver) {
+            metrics.getService().record(SeckillMetrics.SOLD_OUT, start);
             return null;
         }
 
+        // Admit at most k x remaining stock per window, the rest fails here without touching Redis
+        stageStart = stageTimer.start();
+        boolean admitted = stockAdmissionLimiter.tryAdmit(goodsVo.getId());
+        stageTimer.stop(StageTimer.Stage.ADMISSION, stageStart);
+        if (!admitted) {
+            throw new GlobalException(429, "当前抢购人数过多，请稍后再试");
+        }
+
         // Lazy initialization of stock in Redis if needed
-        initStockIfNeeded(goodsVo);
+        stageStart = stageTimer.start();
+        stockInitializer.ensureInitialized(goodsVo.getId());
+        stageTimer.stop(StageTimer.Stage.STOCK_INIT, stageStart);
 
         // 2. Pre-deduct stock in Redis to reduce database access
-        Long result = redisService.executeScript(
-            DECREASE_STOCK_REDIS_SCRIPT,
-            Arrays.asList(
-                redisService.getRealKey(SeckillKey.goodsStock, "" + goodsVo.getId()), 
-                redisService.getRealKey(SeckillKey.reservedStock, "" + goodsVo.getId())
-            )
-        );
+        // The script also adds the transaction to the in-flight set of the pipeline lag tracker
+        String transactionId = MQProducer.newTransactionId();
+        String trackedId = pipelineLagTracker.trackedId(transactionId);
+        long deductStart = System.nanoTime();
+        long deductedAt = System.currentTimeMillis();
+        DeductionEvent deductionEvent = null;
+        if (JfrSupport.AVAILABLE) {
+            deductionEvent = new DeductionEvent();
+            deductionEvent.begin();
+        }
+        Long result;
+        try {
+            result = redisService.decreaseStock(goodsVo.getId(), trackedId, deductedAt);
+            if (result == LuaScriptRegistry.STOCK_NOT_INITIALIZED) {
+                // The counter vanished behind the local initialized flag, recreate it and try once more
+                log.warn("Stock counter of goods {} missing, re-initializing", goodsVo.getId());
+                stockInitializer.reinitialize(goodsVo.getId());
+                result = redisService.decreaseStock(goodsVo.getId(), trackedId, deductedAt);
+            }
+            if (result == LuaScriptRegistry.STOCK_NOT_INITIALIZED) {
+                // Still missing (lock timed out, goods gone): not sold out, so nothing may be flagged
+                throw new IllegalStateException("Stock counter of goods " + goodsVo.getId() + " is not initialized");
+            }
+        } catch (RuntimeException e) {
+            metrics.getRedisDeduct().record(SeckillMetrics.ERROR, deductStart);
+            if (deductionEvent != null) {
+                deductionEvent.commit(goodsVo.getId(), SeckillMetrics.ERROR);
+            }
+            throw e;
+        }
+        String deductOutcome = result < 0 ? SeckillMetrics.SOLD_OUT : SeckillMetrics.SUCCESS;
+        metrics.getRedisDeduct().record(deductOutcome, deductStart);
+        if (deductionEvent != null) {
+            deductionEvent.commit(goodsVo.getId(), deductOutcome);
+        }
+        stageTimer.stop(StageTimer.Stage.REDIS_DEDUCT, deductStart);
+
+        stockAdmissionLimiter.updateRemaining(goodsVo.getId(), result);
 
         // Check result
         if (result < 0) {
             // Stock insufficient, already rolled back in the script
             // redisService.incr(SeckillKey.goodsStock, "" + goodsVo.getId());
             setGoodsOver(goodsVo.getId());
+            metrics.getService().record(SeckillMetrics.SOLD_OUT, start);
             return null;
         }
         
         // 4. Using transaction message to create order and notify inventory service
+        pipelineLagTracker.reserved(goodsVo.getId());
         try {
-            String transactionId = mqProducer.sendStockReductionTransactionMessage(userId, goodsVo);
+            stageStart = stageTimer.start();
+            mqProducer.sendStockReductionTransactionMessage(userId, goodsVo, transactionId, deductedAt);
+            stageTimer.stop(StageTimer.Stage.MQ_SEND, stageStart);
             
             // send delay message to cancel order
             if (TIMEOUT_CANCEL_ORDER) {
                 // Note: Since this is not a transactional message, there might be a scenario where the order exists but the message was not sent.
+                stageStart = stageTimer.start();
                 mqProducer.sendOrderCancellationMessage(transactionId);
+                stageTimer.stop(StageTimer.Stage.CANCEL_SEND, stageStart);
             }
                         
             // 5. Return a temporary order to indicate processing
@@ -122,58 +179,24 @@ public class SeckillServiceImplv3 implements SeckillService {
             order.setUserId(userId);
             order.setGoodsId(goodsVo.getId());
             order.setTransactionId(transactionId);
+            metrics.getService().record(SeckillMetrics.SUCCESS, start);
             return order;
         } catch (Exception e) {
             log.error("Failed to send transaction message", e);
             // Atomically rollback both Redis stock and reserved stock on error
-            redisService.executeScript(
-                ROLLBACK_STOCK_REDIS_SCRIPT,
-                Arrays.asList(
-                    redisService.getRealKey(SeckillKey.goodsStock, "" + goodsVo.getId()),
-                    redisService.getRealKey(SeckillKey.reservedStock, "" + goodsVo.getId())
-                )
-            );
+            redisService.executeStockScript(LuaScriptRegistry.ROLLBACK_STOCK, Long.class, goodsVo.getId());
+            pipelineLagTracker.released(goodsVo.getId(), transactionId);
+            // Answered like sold out, only the service metric tells the send failure apart
+            metrics.getService().record(SeckillMetrics.ERROR, start);
             return null;
         }
     }
 
-    private void initStockIfNeeded(GoodsVo goodsVo) {
-        Long goodsId = goodsVo.getId();
-        
-        // Check if stock already exists in Redis
-        if (!redisService.exists(SeckillKey.goodsStock, "" + goodsId)) {
-            // Create distributed lock with proper timeout and unique identifier
-            String lockKey = LOCK_PREFIX + goodsId;
-            RedisDistributedLock lock = new RedisDistributedLock(redisService, lockKey, LOCK_EXPIRE_SECONDS);
-            
-            boolean lockAcquired = lock.tryLock(LOCK_TIMEOUT_MS);
-            if (lockAcquired) {
-                try {
-                    // Double-check if another thread has already initialized (check-lock-check pattern)
-                    if (!redisService.exists(SeckillKey.goodsStock, "" + goodsId)) {
-                        log.info("Initializing stock for goods: {}", goodsId);
-                        // Get fresh stock count from database
-                        GoodsVo freshGoodsInfo = goodsService.getGoodsVoByGoodsId(goodsId);
-                        if (freshGoodsInfo != null) {
-                            redisService.set(SeckillKey.goodsStock, "" + goodsId, freshGoodsInfo.getStockCount());
-                            log.info("Stock initialized for goods {}: {}", goodsId, freshGoodsInfo.getStockCount());
-                        } else {
-                            log.error("Failed to get goods info for ID: {}", goodsId);
-                        }
-                    }
-                } finally {
-                    // Always release the lock when done, even if exception occurs
-                    lock.unlock();
-                }
-            } else {
-                // Another thread is initializing, wait briefly and continue
-                try {
-                    TimeUnit.MILLISECONDS.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }
-        }
+    /**
+     * The local sold-out cache itself, for benchmarks in this package
+     */
+    Cache<Long, Boolean> getLocalSoldOutCache() {
+        return localSoldOutCache;
     }
 
     /**
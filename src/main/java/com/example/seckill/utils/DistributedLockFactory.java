@@ -0,0 +1,152 @@
+package com.example.seckill.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Distributed locks backed by Redisson fair locks.
+ *
+ * Waiters queue in FIFO order and block on the pub/sub message published at unlock
+ * (Redisson falls back to a timed re-check if the message is lost) instead of polling SETNX.
+ * No lease time is given, so Redisson's watchdog keeps renewing the lock while the holder's
+ * JVM is alive and the lock expires lockWatchdogTimeout after the holder dies.
+ */
+@Component
+@Slf4j
+public class DistributedLockFactory {
+
+    // Absent in the local-perf profile, where LocalDistributedLockFactory hands out JVM locks
+    @Autowired(required = false)
+    private RedissonClient redissonClient;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder totalHoldNanos = new LongAdder();
+    private final LongAdder releases = new LongAdder();
+
+    public DistributedLock getLock(String lockKey) {
+        return new DistributedLock(lockKey, createLock(lockKey));
+    }
+
+    /**
+     * The lock behind a key, a Redisson fair lock
+     */
+    protected Lock createLock(String lockKey) {
+        return redissonClient.getFairLock(lockKey);
+    }
+
+    /**
+     * Acquisitions, how many had to wait, timeouts and wait/hold times (microseconds)
+     */
+    public Map<String, Object> getStats() {
+        long acquiredCount = acquired.sum();
+        long contendedCount = contended.sum();
+        long releaseCount = releases.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("acquired", acquiredCount);
+        stats.put("contended", contendedCount);
+        stats.put("timeouts", timeouts.sum());
+        stats.put("avgWaitMicros", contendedCount == 0 ? 0
+                : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.sum() / contendedCount));
+        stats.put("maxWaitMicros", TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()));
+        stats.put("avgHoldMicros", releaseCount == 0 ? 0
+                : TimeUnit.NANOSECONDS.toMicros(totalHoldNanos.sum() / releaseCount));
+        return stats;
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.add(waitNanos);
+        long max;
+        while (waitNanos > (max = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(max, waitNanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * One lock acquisition, to be released by the thread that acquired it
+     */
+    public class DistributedLock {
+        private final String lockKey;
+        private final Lock lock;
+        private long acquiredAt;
+
+        private DistributedLock(String lockKey, Lock lock) {
+            this.lockKey = lockKey;
+            this.lock = lock;
+        }
+
+        /**
+         * Try to acquire the lock, waiting in line for at most timeoutMs
+         * @return true if lock was acquired, false otherwise
+         */
+        public boolean tryLock(long timeoutMs) {
+            try {
+                // Uncontended case: a single round trip, no subscription
+                if (lock.tryLock()) {
+                    onAcquired();
+                    return true;
+                }
+
+                contended.increment();
+                long start = System.nanoTime();
+                boolean locked = lock.tryLock(timeoutMs, TimeUnit.MILLISECONDS);
+                recordWait(System.nanoTime() - start);
+                if (locked) {
+                    onAcquired();
+                    return true;
+                }
+                timeouts.increment();
+                log.debug("Failed to acquire lock after {}ms: {}", timeoutMs, lockKey);
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * Release the lock if this thread holds it
+         * @return true if lock was released, false if it wasn't ours
+         */
+        public boolean unlock() {
+            if (!isHeldByCurrentThread()) {
+                log.warn("Failed to release lock (not owner or expired): {}", lockKey);
+                return false;
+            }
+            lock.unlock();
+            releases.increment();
+            totalHoldNanos.add(System.nanoTime() - acquiredAt);
+            log.debug("Lock released: {}", lockKey);
+            return true;
+        }
+
+        private boolean isHeldByCurrentThread() {
+            if (lock instanceof RLock) {
+                return ((RLock) lock).isHeldByCurrentThread();
+            }
+            return lock instanceof ReentrantLock && ((ReentrantLock) lock).isHeldByCurrentThread();
+        }
+
+        private void onAcquired() {
+            acquiredAt = System.nanoTime();
+            acquired.increment();
+            log.debug("Lock acquired: {}", lockKey);
+        }
+    }
+}
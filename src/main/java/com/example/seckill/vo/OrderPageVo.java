@@ -0,0 +1,19 @@
+package com.example.seckill.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a user's orders, newest first. Pass nextCursor back as cursor for the next page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderPageVo {
+    private List<OrderVo> orders;
+    private Long nextCursor;   // null on the last page
+    private boolean hasMore;
+}
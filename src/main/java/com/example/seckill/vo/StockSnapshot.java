@@ -0,0 +1,17 @@
+package com.example.seckill.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Redis side stock of one goods: available stock and stock reserved by in-flight orders
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockSnapshot {
+    private Long goodsId;
+    private Integer redisStock;   // null when the stock key does not exist
+    private Integer reservedStock;
+}
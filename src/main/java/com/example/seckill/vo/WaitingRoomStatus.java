@@ -0,0 +1,17 @@
+package com.example.seckill.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitingRoomStatus {
+    private Long position;
+    // Every position up to this one may enter
+    private Long admittedUpTo;
+    private Long ahead;
+    private Boolean admitted;
+    private Long estimatedWaitSeconds;
+}
@@ -0,0 +1,16 @@
+package com.example.seckill.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitingRoomTicket {
+    private Long userId;
+    private Long goodsId;
+    private Long position;
+    // Signed ticket, passed to /seckill as the ticket parameter
+    private String ticket;
+}
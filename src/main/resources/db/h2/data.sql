@@ -0,0 +1,15 @@
+-- Same rows as seckillv2.sql, with both activities running so load tests hit the seckill path
+
+INSERT INTO goods VALUES (1, 'iPhone 13', 'Apple iPhone 13 (A2634) 128GB 星光色', '/img/iphone13.jpg', 'iPhone 13详细介绍', 5999.00, 100, '2025-02-28 17:21:28', '2025-02-28 17:21:28');
+INSERT INTO goods VALUES (2, '华为Mate 40 Pro', '华为 HUAWEI Mate 40 Pro 麒麟9000 5G', '/img/mate40pro.jpg', '华为Mate 40 Pro详细介绍', 6999.00, 100, '2025-02-28 17:21:28', '2025-02-28 17:21:28');
+
+INSERT INTO seckill_goods VALUES (1, 1, 4999.00, 100000, '2025-03-04 14:36:23', '2099-12-31 23:59:59', 0, 100000);
+INSERT INTO seckill_goods VALUES (2, 2, 5999.00, 10, '2025-03-09 16:39:08', '2099-12-31 23:59:59', 0, 10);
+
+INSERT INTO `user` VALUES (1, 'user1', 'b7797cce01b4b131b433b6acf4add449', '1a2b3c4d', '13800000001', 'user1@example.com', NULL, '2025-02-28 17:21:28', NULL, 0);
+INSERT INTO `user` VALUES (2, 'user2', 'b7797cce01b4b131b433b6acf4add449', '1a2b3c4d', '13800000002', 'user2@example.com', NULL, '2025-02-28 17:21:28', NULL, 0);
+
+-- Explicit ids above do not move the identity columns
+ALTER TABLE goods ALTER COLUMN id RESTART WITH 3;
+ALTER TABLE seckill_goods ALTER COLUMN id RESTART WITH 3;
+ALTER TABLE `user` ALTER COLUMN id RESTART WITH 3;
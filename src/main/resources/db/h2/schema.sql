@@ -0,0 +1,68 @@
+-- seckillv2.sql for H2 in MySQL mode, used by the local-perf profile
+
+CREATE TABLE goods (
+  id bigint NOT NULL AUTO_INCREMENT,
+  goods_name varchar(100) NOT NULL,
+  goods_title varchar(200) NULL DEFAULT NULL,
+  goods_img varchar(200) NULL DEFAULT NULL,
+  goods_detail text NULL,
+  goods_price decimal(10, 2) NULL DEFAULT 0.00,
+  goods_stock int NULL DEFAULT 0,
+  create_time datetime NULL DEFAULT NULL,
+  update_time datetime NULL DEFAULT NULL,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE idempotence_record (
+  id bigint NOT NULL AUTO_INCREMENT,
+  transaction_id varchar(64) NOT NULL,
+  processed tinyint NOT NULL,
+  create_time datetime NOT NULL,
+  PRIMARY KEY (id),
+  CONSTRAINT uk_transaction_id UNIQUE (transaction_id)
+);
+
+CREATE TABLE seckill_goods (
+  id bigint NOT NULL AUTO_INCREMENT,
+  goods_id bigint NOT NULL,
+  seckill_price decimal(10, 2) NULL DEFAULT 0.00,
+  stock_count int NULL DEFAULT 0,
+  start_time datetime NULL DEFAULT NULL,
+  end_time datetime NULL DEFAULT NULL,
+  version int NULL DEFAULT 0,
+  total_stock int NULL DEFAULT 0,
+  PRIMARY KEY (id)
+);
+CREATE INDEX idx_goods_id ON seckill_goods (goods_id);
+
+CREATE TABLE seckill_order (
+  id bigint NOT NULL AUTO_INCREMENT,
+  user_id bigint NOT NULL,
+  goods_id bigint NOT NULL,
+  seckill_goods_id bigint NOT NULL,
+  order_no varchar(32) NOT NULL,
+  status tinyint NULL DEFAULT 0,
+  create_time datetime NULL DEFAULT NULL,
+  pay_time datetime NULL DEFAULT NULL,
+  pay_amount decimal(10, 2) NULL DEFAULT 0.00,
+  transaction_id varchar(64) NULL DEFAULT NULL,
+  PRIMARY KEY (id)
+);
+CREATE INDEX idx_order_no ON seckill_order (order_no);
+CREATE INDEX idx_transaction_id ON seckill_order (transaction_id);
+CREATE INDEX idx_user_order ON seckill_order (user_id, id, goods_id, order_no, status, create_time, pay_amount);
+
+CREATE TABLE `user` (
+  id bigint NOT NULL AUTO_INCREMENT,
+  username varchar(50) NOT NULL,
+  password varchar(64) NOT NULL,
+  salt varchar(32) NOT NULL,
+  phone varchar(20) NULL DEFAULT NULL,
+  email varchar(50) NULL DEFAULT NULL,
+  head varchar(128) NULL DEFAULT NULL,
+  register_date datetime NULL DEFAULT NULL,
+  last_login_date datetime NULL DEFAULT NULL,
+  login_count int NULL DEFAULT 0,
+  PRIMARY KEY (id),
+  CONSTRAINT username_unique UNIQUE (username)
+);
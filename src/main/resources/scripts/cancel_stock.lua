@@ -0,0 +1,4 @@
+-- Return the unit of a cancelled order to the available stock
+-- The reserved unit was already released by the consumer, the caller rolls back the DB stock
+-- KEYS[1]: goods stock, KEYS[2]: reserved stock
+return redis.call('incr', KEYS[1])
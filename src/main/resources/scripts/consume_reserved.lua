@@ -0,0 +1,4 @@
+-- Release one reserved unit after the consumer reduced the DB stock
+-- KEYS[1]: goods stock, KEYS[2]: reserved stock
+-- Returns the reserved stock left
+return redis.call('decr', KEYS[2])
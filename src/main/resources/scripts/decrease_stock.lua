@@ -0,0 +1,23 @@
+-- Pre-deduct one unit of stock and move it to the reserved counter
+-- KEYS[1]: goods stock, KEYS[2]: reserved stock
+-- KEYS[3] (optional): in-flight set of the pipeline lag tracker, ARGV[1]: transaction id, ARGV[2]: deduction time
+-- Returns the remaining stock, -1 when sold out (the decrement is rolled back),
+-- or -2 when the stock key does not exist (never initialized, evicted or lost on failover)
+
+-- A DECR on a missing key would leave it at 0 after the rollback and read as sold out for good
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return -2
+end
+
+local stock = redis.call('decr', KEYS[1])
+if stock >= 0 then
+    redis.call('incr', KEYS[2])
+    if KEYS[3] then
+        redis.call('zadd', KEYS[3], ARGV[2], ARGV[1])
+    end
+    return stock
+else
+    -- rollback if insufficient
+    redis.call('incr', KEYS[1])
+    return -1
+end
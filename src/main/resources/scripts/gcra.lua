@@ -0,0 +1,45 @@
+-- GCRA (generic cell rate algorithm) rate limiter
+-- KEYS[1]: limiter key, a single integer holding the theoretical arrival time (TAT) in microseconds
+-- ARGV[1]: rate (requests per second), ARGV[2]: burst capacity, ARGV[3]: requested
+-- Returns 1 when allowed, otherwise -wait_time in milliseconds
+-- Time comes from the Redis server, so all application nodes share one clock
+
+-- Define a helper function: remove any double quotes from the parameter and convert it to a number
+local function toNumber(str)
+    if str == nil then
+        return nil
+    end
+    str = string.gsub(str, '"', '')
+    return tonumber(str)
+end
+
+-- TIME is non-deterministic: replicate the effects instead of the script (already the default since Redis 5)
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+
+local rate = toNumber(ARGV[1])
+local capacity = toNumber(ARGV[2])
+local requested = toNumber(ARGV[3])
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+
+-- Time between two cells, and how far TAT may run ahead of now
+local emission_interval = 1000000 / rate
+local burst_window = emission_interval * capacity
+
+local tat = tonumber(redis.call('GET', KEYS[1]))
+if tat == nil or tat < now then
+    tat = now
+end
+
+local new_tat = tat + emission_interval * requested
+local allow_at = new_tat - burst_window
+if allow_at > now then
+    return -math.ceil((allow_at - now) / 1000)
+end
+
+-- The key only matters while TAT is in the future, so it expires by itself within one burst window
+redis.call('SET', KEYS[1], string.format('%d', math.floor(new_tat)), 'PX', math.ceil((new_tat - now) / 1000))
+return 1
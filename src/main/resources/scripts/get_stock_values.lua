@@ -0,0 +1,8 @@
+-- Read stock and reserved stock atomically, missing values are returned as ''
+-- KEYS[1]: goods stock, KEYS[2]: reserved stock
+local stockValue = redis.call('get', KEYS[1])
+local reservedValue = redis.call('get', KEYS[2])
+local result = {}
+if stockValue == false then result[1] = '' else result[1] = stockValue end
+if reservedValue == false then result[2] = '' else result[2] = reservedValue end
+return result
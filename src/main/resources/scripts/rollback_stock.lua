@@ -0,0 +1,5 @@
+-- Give one reserved unit back to the available stock
+-- KEYS[1]: goods stock, KEYS[2]: reserved stock
+redis.call('incr', KEYS[1])
+redis.call('decr', KEYS[2])
+return 1
@@ -0,0 +1,30 @@
+-- Move the admission watermark forward by one wave, never past the last issued position
+-- KEYS[1]: admitted watermark, KEYS[2]: position counter
+-- ARGV[1]: wave size (0 only reads the watermark), ARGV[2]: expire seconds
+-- Returns the new watermark: every position <= watermark may enter
+local function toNumber(str)
+    if str == nil then
+        return nil
+    end
+    str = string.gsub(str, '"', '')
+    return tonumber(str)
+end
+
+local wave = toNumber(ARGV[1])
+local ttl = toNumber(ARGV[2])
+
+local admitted = tonumber(redis.call('GET', KEYS[1]) or '0')
+if wave <= 0 then
+    return admitted
+end
+
+local issued = tonumber(redis.call('GET', KEYS[2]) or '0')
+local target = math.min(admitted + wave, issued)
+if target > admitted then
+    redis.call('SET', KEYS[1], target)
+    if ttl and ttl > 0 then
+        redis.call('EXPIRE', KEYS[1], ttl)
+    end
+    return target
+end
+return admitted
@@ -0,0 +1,27 @@
+-- Issue a waiting room position, idempotent per user
+-- KEYS[1]: positions hash (userId -> position), KEYS[2]: position counter
+-- ARGV[1]: userId, ARGV[2]: expire seconds
+-- Returns the position of the user (1-based)
+local function toNumber(str)
+    if str == nil then
+        return nil
+    end
+    str = string.gsub(str, '"', '')
+    return tonumber(str)
+end
+
+local user = (string.gsub(ARGV[1], '"', ''))
+local ttl = toNumber(ARGV[2])
+
+local existing = redis.call('HGET', KEYS[1], user)
+if existing then
+    return tonumber(existing)
+end
+
+local position = redis.call('INCR', KEYS[2])
+redis.call('HSET', KEYS[1], user, position)
+if ttl and ttl > 0 then
+    redis.call('EXPIRE', KEYS[1], ttl)
+    redis.call('EXPIRE', KEYS[2], ttl)
+end
+return position
@@ -0,0 +1,45 @@
+package com.example.seckill.exception;
+
+import com.example.seckill.vo.Result;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class GlobalExceptionHandlerTest {
+
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler();
+
+    @Test
+    void concurrencyLimitIsARealTooManyRequestsWithRetryAfter() {
+        ResponseEntity<Result<Void>> response = handler.handleConcurrencyLimitException(
+                new ConcurrencyLimitException("busy", 3));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("3", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(429, response.getBody().getCode());
+        assertEquals("busy", response.getBody().getMessage());
+    }
+
+    @Test
+    void rateLimitIsARealTooManyRequestsWithRetryAfter() {
+        ResponseEntity<Result<Void>> response = handler.handleRateLimitException(
+                new RateLimitException("slow down", 2));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("2", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(429, response.getBody().getCode());
+        assertEquals("slow down", response.getBody().getMessage());
+    }
+
+    @Test
+    void rateLimitWithoutWaitTimeHasNoRetryAfter() {
+        ResponseEntity<Result<Void>> response = handler.handleRateLimitException(new RateLimitException("slow down"));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertNull(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+}
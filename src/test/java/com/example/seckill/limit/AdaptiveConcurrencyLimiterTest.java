@@ -0,0 +1,85 @@
+package com.example.seckill.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Limit updates on a manual clock: each window reserves a number of slots, releases them with
+ * a fixed latency and closes on the last release, once the clock has moved past the window.
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long WINDOW_MS = 100;
+
+    private long now;
+
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+            "test", 100, 20, 1000, 1.5, 0.2, WINDOW_MS, 100, () -> now);
+
+    @Test
+    void growsWhileLatencyStaysAtTheBaseline() {
+        window(60, 10);
+        // gradient 1: 100 * 0.8 + (100 + sqrt(100)) * 0.2
+        assertEquals(102, limiter.getLimit());
+        for (int i = 0; i < 5; i++) {
+            int before = limiter.getLimit();
+            window(before, 10);
+            assertTrue(limiter.getLimit() > before, "window " + i);
+        }
+    }
+
+    @Test
+    void shrinksToTheMinimumWhileLatencyKeepsRising() {
+        for (int i = 0; i < 5; i++) {
+            window(limiter.getLimit(), 10);
+        }
+        int baseline = limiter.getLimit();
+        window(baseline, 100);
+        assertTrue(limiter.getLimit() < baseline);
+
+        // A growing queue: every window slower than the last, the long RTT never catches up
+        long latency = 100;
+        for (int i = 0; i < 40; i++) {
+            latency = latency * 3 / 2;
+            window(limiter.getLimit(), latency);
+        }
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    void applicationLimitedWindowKeepsTheLimit() {
+        // Fewer than half the slots were ever used, even a slow window says nothing about the limit
+        window(10, 500);
+        assertEquals(100, limiter.getLimit());
+    }
+
+    @Test
+    void rejectsAboveTheLimitUntilASlotIsReleased() {
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(100, limiter.getInflight());
+
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(limiter.tryAcquire());
+        assertEquals(1L, limiter.getStats().get("dropped"));
+    }
+
+    private void window(int inflight, long latencyMillis) {
+        for (int i = 0; i < inflight; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        long latency = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        for (int i = 1; i < inflight; i++) {
+            limiter.release(latency);
+        }
+        now += TimeUnit.MILLISECONDS.toNanos(WINDOW_MS);
+        limiter.release(latency);
+    }
+}
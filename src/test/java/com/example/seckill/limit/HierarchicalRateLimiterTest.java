@@ -0,0 +1,127 @@
+package com.example.seckill.limit;
+
+import com.example.seckill.annotation.RateLimit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Local share in front of a scripted Redis limiter: every Redis call records the tokens it asked
+ * for and answers with the next queued wait time (0 once the queue is empty).
+ */
+class HierarchicalRateLimiterTest {
+
+    private static final String KEY = "rate_limit:test:user:1";
+
+    private final List<Integer> leases = new ArrayList<>();
+    private final Deque<Long> redisAnswers = new ArrayDeque<>();
+    private long now = 1_000_000L;
+    private HierarchicalRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = new HierarchicalRateLimiter();
+        ReflectionTestUtils.setField(limiter, "localEnabled", true);
+        ReflectionTestUtils.setField(limiter, "leaseRatio", 0.1);
+        ReflectionTestUtils.setField(limiter, "leaseTtlMs", 1000L);
+        ReflectionTestUtils.setField(limiter, "redisRateLimiter", new RedisRateLimiter() {
+            @Override
+            public long tryAcquireWithWaitTime(RateLimitDescriptor descriptor, String key, int requested) {
+                leases.add(requested);
+                return redisAnswers.isEmpty() ? 0 : redisAnswers.poll();
+            }
+        });
+        limiter.clock = () -> now;
+    }
+
+    @Test
+    @RateLimit(rate = 50, capacity = 100)
+    void leaseCoversTheRefillOfOneLeasePeriod() throws Exception {
+        RateLimitDescriptor descriptor = descriptor("leaseCoversTheRefillOfOneLeasePeriod");
+        // 50 tokens per second over a 1s lease beats 10% of the capacity
+        for (int i = 0; i < 50; i++) {
+            assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        }
+        assertEquals(Arrays.asList(50), leases);
+
+        assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        assertEquals(Arrays.asList(50, 50), leases);
+    }
+
+    @Test
+    @RateLimit(rate = 10, capacity = 100, tokens = 4)
+    void leaseAddsToTheUnexpiredBalance() throws Exception {
+        RateLimitDescriptor descriptor = descriptor("leaseAddsToTheUnexpiredBalance");
+        // Lease 10, 6 left after the first request, 2 after the second
+        assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        // 2 are not enough: a new lease of 10 leaves 2 + 6 = 8, two more requests served locally
+        assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        assertEquals(Arrays.asList(10, 10), leases);
+
+        assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        assertEquals(Arrays.asList(10, 10, 10), leases);
+    }
+
+    @Test
+    @RateLimit(rate = 10, capacity = 100)
+    void expiredLeaseGoesBackToRedis() throws Exception {
+        RateLimitDescriptor descriptor = descriptor("expiredLeaseGoesBackToRedis");
+        assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        now += 1000;
+        assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        // The 9 tokens left from the first lease are not carried over
+        for (int i = 0; i < 9; i++) {
+            assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        }
+        assertEquals(Arrays.asList(10, 10), leases);
+        assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        assertEquals(Arrays.asList(10, 10, 10), leases);
+    }
+
+    @Test
+    @RateLimit(rate = 10, capacity = 100)
+    void redisRejectionIsRememberedLocally() throws Exception {
+        RateLimitDescriptor descriptor = descriptor("redisRejectionIsRememberedLocally");
+        // Not even the single request fits: both the lease and the fallback are refused
+        redisAnswers.add(200L);
+        redisAnswers.add(500L);
+        assertEquals(500, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        assertEquals(Arrays.asList(10, 1), leases);
+
+        now += 300;
+        assertEquals(200, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        assertEquals(2, leases.size());
+
+        now += 200;
+        assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        assertEquals(Arrays.asList(10, 1, 10), leases);
+    }
+
+    @Test
+    @RateLimit(rate = 10, capacity = 100)
+    void fallsBackToTheSingleRequestWhenTheLeaseDoesNotFit() throws Exception {
+        RateLimitDescriptor descriptor = descriptor("fallsBackToTheSingleRequestWhenTheLeaseDoesNotFit");
+        redisAnswers.add(100L);
+        assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        // Only the request itself was granted, nothing is left locally
+        assertEquals(0, limiter.tryAcquireWithWaitTime(descriptor, KEY));
+        assertEquals(Arrays.asList(10, 1, 10), leases);
+    }
+
+    private RateLimitDescriptor descriptor(String methodName) throws NoSuchMethodException {
+        Method method = getClass().getDeclaredMethod(methodName);
+        return new RateLimitDescriptor(method, method.getAnnotation(RateLimit.class));
+    }
+}
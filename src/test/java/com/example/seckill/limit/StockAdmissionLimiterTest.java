@@ -0,0 +1,86 @@
+package com.example.seckill.limit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StockAdmissionLimiterTest {
+
+    private static final Long GOODS_ID = 1L;
+
+    private long now;
+    private StockAdmissionLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        limiter = new StockAdmissionLimiter();
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "factor", 2.0);
+        ReflectionTestUtils.setField(limiter, "windowMillis", 100L);
+        ReflectionTestUtils.setField(limiter, "minAdmit", 10);
+        limiter.nanoClock = () -> now;
+    }
+
+    @Test
+    void admitsEverythingUntilTheStockIsKnown() {
+        assertEquals(1000, admitted(1000));
+    }
+
+    @Test
+    void admitsMinAdmitPerWindowAtZeroRemaining() {
+        limiter.updateRemaining(GOODS_ID, 0);
+        assertEquals(10, admitted(50));
+        assertFalse(limiter.tryAdmit(GOODS_ID));
+
+        // Next window: units returned by rollbacks can still be picked up
+        now += TimeUnit.MILLISECONDS.toNanos(100);
+        assertEquals(10, admitted(50));
+    }
+
+    @Test
+    void soldOutIsRecordedAsZeroRemaining() {
+        limiter.updateRemaining(GOODS_ID, -1);
+        assertEquals(10, admitted(50));
+        assertEquals(0L, ((Map<?, ?>) limiter.getStats().get("remaining")).get(GOODS_ID));
+    }
+
+    @Test
+    void budgetFollowsTheRemainingStock() {
+        limiter.updateRemaining(GOODS_ID, 20);
+        assertEquals(40, admitted(100));
+
+        // Fewer units left: the next window admits factor * remaining, then min-admit once sold out
+        limiter.updateRemaining(GOODS_ID, 7);
+        now += TimeUnit.MILLISECONDS.toNanos(100);
+        assertEquals(14, admitted(100));
+
+        limiter.updateRemaining(GOODS_ID, 0);
+        now += TimeUnit.MILLISECONDS.toNanos(100);
+        assertEquals(10, admitted(100));
+    }
+
+    @Test
+    void admitsEverythingWhenDisabled() {
+        ReflectionTestUtils.setField(limiter, "enabled", false);
+        limiter.updateRemaining(GOODS_ID, 0);
+        assertTrue(limiter.tryAdmit(GOODS_ID));
+        assertEquals(100, admitted(100));
+    }
+
+    private int admitted(int attempts) {
+        int admitted = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (limiter.tryAdmit(GOODS_ID)) {
+                admitted++;
+            }
+        }
+        return admitted;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.seckill.local;
+
+import com.example.seckill.config.RedisConfig;
+import com.example.seckill.redis.LuaScriptRegistry;
+import com.example.seckill.redis.RedisCommandBatcher;
+import com.example.seckill.redis.SeckillKey;
+import com.example.seckill.redis.StockEventPublisher;
+import com.example.seckill.service.RedisService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the stock scripts against a real Redis and against their Java ports in LocalRedisService
+ * with the same sequence of operations, and compares every result, the stock and reserved
+ * counters and the in-flight set after each step. Skipped when no Redis is reachable on
+ * spring.redis.host:port.
+ */
+class LocalRedisServiceScriptTest {
+
+    private static final String[] STOCK_SCRIPTS = {
+            LuaScriptRegistry.DECREASE_STOCK,
+            LuaScriptRegistry.ROLLBACK_STOCK,
+            LuaScriptRegistry.CONSUME_RESERVED,
+            LuaScriptRegistry.CANCEL_STOCK
+    };
+
+    private LettuceConnectionFactory connectionFactory;
+    private RedisService redisService;
+    private LocalRedisService localRedisService;
+    private final Long goodsId = 900000000L + new Random().nextInt(100000000);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(
+                System.getProperty("spring.redis.host", "localhost"),
+                Integer.getInteger("spring.redis.port", 6379)));
+        connectionFactory.afterPropertiesSet();
+        boolean reachable;
+        try {
+            connectionFactory.getConnection().ping();
+            reachable = true;
+        } catch (Exception e) {
+            reachable = false;
+        }
+        assumeTrue(reachable, "Redis is not reachable");
+
+        RedisTemplate<String, Object> redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+        RedisCommandBatcher commandBatcher = new RedisCommandBatcher();
+        LuaScriptRegistry scriptRegistry = new LuaScriptRegistry();
+        ReflectionTestUtils.setField(scriptRegistry, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(scriptRegistry, "commandBatcher", commandBatcher);
+        scriptRegistry.init();
+
+        redisService = new RedisService();
+        ReflectionTestUtils.setField(redisService, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(redisService, "scriptRegistry", scriptRegistry);
+        ReflectionTestUtils.setField(redisService, "commandBatcher", commandBatcher);
+        ReflectionTestUtils.setField(redisService, "stockEventPublisher", new StockEventPublisher());
+
+        localRedisService = new LocalRedisService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (redisService != null) {
+            redisService.delete(SeckillKey.goodsStock, "" + goodsId);
+            redisService.delete(SeckillKey.reservedStock, "" + goodsId);
+            redisService.delete(SeckillKey.inflight, "" + goodsId);
+        }
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void stockScriptsMatchOnRandomSequence() {
+        Random random = new Random(42);
+        initStock(5);
+        for (int step = 0; step < 2000; step++) {
+            int op = random.nextInt(10);
+            if (op == 0) {
+                // Counter lost on failover or eviction, decrease_stock has to report it
+                redisService.delete(SeckillKey.goodsStock, "" + goodsId);
+                localRedisService.delete(SeckillKey.goodsStock, "" + goodsId);
+            } else if (op == 1) {
+                initStock(random.nextInt(5));
+            } else if (op == 2) {
+                // Reservation tracked by the script, removed later the way the consumer does
+                String transactionId = "tx-" + step;
+                assertEquals(redisService.decreaseStock(goodsId, transactionId, step),
+                        localRedisService.decreaseStock(goodsId, transactionId, step), "step " + step + ": tracked decrease");
+            } else if (op == 3) {
+                String transactionId = "tx-" + random.nextInt(step + 1);
+                assertEquals(redisService.zrem(SeckillKey.inflight, "" + goodsId, transactionId),
+                        localRedisService.zrem(SeckillKey.inflight, "" + goodsId, transactionId), "step " + step + ": zrem");
+            } else {
+                String script = STOCK_SCRIPTS[random.nextInt(STOCK_SCRIPTS.length)];
+                assertEquals(
+                        (Long) redisService.executeStockScript(script, Long.class, goodsId),
+                        localRedisService.executeStockScript(script, Long.class, goodsId),
+                        "step " + step + ": " + script);
+            }
+            assertCountersMatch("step " + step);
+        }
+    }
+
+    @Test
+    void decreaseOnMissingStockLeavesItMissing() {
+        assertEquals(LuaScriptRegistry.STOCK_NOT_INITIALIZED,
+                (long) redisService.executeStockScript(LuaScriptRegistry.DECREASE_STOCK, Long.class, goodsId));
+        assertEquals(LuaScriptRegistry.STOCK_NOT_INITIALIZED,
+                (long) localRedisService.executeStockScript(LuaScriptRegistry.DECREASE_STOCK, Long.class, goodsId));
+        assertCountersMatch("missing stock");
+        assertEquals(false, redisService.exists(SeckillKey.goodsStock, "" + goodsId));
+    }
+
+    @Test
+    void decreaseStopsAtZero() {
+        initStock(2);
+        for (long expected : new long[]{1, 0, LuaScriptRegistry.STOCK_SOLD_OUT, LuaScriptRegistry.STOCK_SOLD_OUT}) {
+            assertEquals(expected,
+                    (long) redisService.executeStockScript(LuaScriptRegistry.DECREASE_STOCK, Long.class, goodsId));
+            assertEquals(expected,
+                    (long) localRedisService.executeStockScript(LuaScriptRegistry.DECREASE_STOCK, Long.class, goodsId));
+            assertCountersMatch("decrease to " + expected);
+        }
+    }
+
+    private void initStock(int stock) {
+        redisService.setIfAbsent(SeckillKey.goodsStock, "" + goodsId, stock);
+        localRedisService.setIfAbsent(SeckillKey.goodsStock, "" + goodsId, stock);
+    }
+
+    private void assertCountersMatch(String message) {
+        assertEquals((Object) redisService.get(SeckillKey.goodsStock, "" + goodsId),
+                localRedisService.get(SeckillKey.goodsStock, "" + goodsId), message + ": stock");
+        assertEquals((Object) redisService.get(SeckillKey.reservedStock, "" + goodsId),
+                localRedisService.get(SeckillKey.reservedStock, "" + goodsId), message + ": reserved");
+        assertEquals(redisService.zcard(SeckillKey.inflight, "" + goodsId),
+                localRedisService.zcard(SeckillKey.inflight, "" + goodsId), message + ": in-flight");
+        assertEquals(redisService.zminScore(SeckillKey.inflight, "" + goodsId),
+                localRedisService.zminScore(SeckillKey.inflight, "" + goodsId), message + ": oldest in-flight");
+    }
+}
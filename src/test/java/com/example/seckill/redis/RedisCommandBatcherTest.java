@@ -0,0 +1,118 @@
+package com.example.seckill.redis;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.output.StatusOutput;
+import io.lettuce.core.protocol.AsyncCommand;
+import io.lettuce.core.protocol.Command;
+import io.lettuce.core.protocol.CommandType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives the flusher against a connection that only counts flushCommands() calls and answers the
+ * commands written since the previous one. Every command records how many flushes happened before
+ * it was written, which tells the batch it went out in.
+ */
+class RedisCommandBatcherTest {
+
+    private final AtomicInteger flushes = new AtomicInteger();
+    private final List<AsyncCommand<byte[], byte[], String>> unflushed = new ArrayList<>();
+    private RedisCommandBatcher batcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        batcher.stop();
+    }
+
+    @Test
+    void flushesWhenTheBatchIsFull() throws Exception {
+        // A window far longer than the test, only the batch size can close it
+        start(TimeUnit.SECONDS.toMicros(30), 4);
+        List<Integer> batchOf = new ArrayList<>();
+        List<CompletableFuture<String>> futures = submit(8, batchOf);
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        assertEquals(2, flushes.get());
+        synchronized (batchOf) {
+            assertEquals(Arrays.asList(0, 0, 0, 0, 1, 1, 1, 1), batchOf);
+        }
+    }
+
+    @Test
+    void flushesWhenTheWindowCloses() throws Exception {
+        // Room for every command, only the window can close the batch
+        start(TimeUnit.MILLISECONDS.toMicros(200), 128);
+        List<Integer> batchOf = new ArrayList<>();
+        List<CompletableFuture<String>> futures = submit(3, batchOf);
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        assertEquals(1, flushes.get());
+
+        // Sent after the window closed, goes out in a batch of its own
+        submit(1, batchOf).get(0).get(5, TimeUnit.SECONDS);
+        assertEquals(2, flushes.get());
+        synchronized (batchOf) {
+            assertEquals(Arrays.asList(0, 0, 0, 1), batchOf);
+        }
+    }
+
+    private void start(long windowMicros, int maxBatchSize) {
+        batcher = new RedisCommandBatcher();
+        ReflectionTestUtils.setField(batcher, "windowMicros", windowMicros);
+        ReflectionTestUtils.setField(batcher, "maxBatchSize", maxBatchSize);
+        ReflectionTestUtils.setField(batcher, "queueCapacity", 1024);
+        ReflectionTestUtils.setField(batcher, "timeoutMs", 1000L);
+        batcher.start(connection());
+    }
+
+    private List<CompletableFuture<String>> submit(int count, List<Integer> batchOf) {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(batcher.submit(written(batchOf)));
+        }
+        return futures;
+    }
+
+    /**
+     * A command that records the batch it is written in, answered when the batch is flushed
+     */
+    private Function<RedisAsyncCommands<byte[], byte[]>, RedisFuture<String>> written(List<Integer> batchOf) {
+        return commands -> {
+            synchronized (batchOf) {
+                batchOf.add(flushes.get());
+            }
+            AsyncCommand<byte[], byte[], String> reply = new AsyncCommand<>(
+                    new Command<>(CommandType.PING, new StatusOutput<>(ByteArrayCodec.INSTANCE)));
+            unflushed.add(reply);
+            return reply;
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private StatefulRedisConnection<byte[], byte[]> connection() {
+        return (StatefulRedisConnection<byte[], byte[]>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{StatefulRedisConnection.class}, (proxy, method, args) -> {
+                    if ("flushCommands".equals(method.getName())) {
+                        flushes.incrementAndGet();
+                        unflushed.forEach(reply -> reply.complete("PONG"));
+                        unflushed.clear();
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.seckill.service;
+
+import com.example.seckill.limit.ConcurrencyLimiterRegistry;
+import com.example.seckill.local.LocalRedisService;
+import com.example.seckill.vo.GoodsVo;
+import com.example.seckill.vo.WaitingRoomStatus;
+import com.example.seckill.vo.WaitingRoomTicket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Waiting room on the in-memory Redis of the local-perf profile. The concurrency limiter has no
+ * latency samples, so every wave has initial-wave-size positions.
+ */
+class WaitingRoomServiceTest {
+
+    private static final int WAVE_SIZE = 100;
+
+    private final MockEnvironment environment = new MockEnvironment();
+    private WaitingRoomService waitingRoom;
+
+    @BeforeEach
+    void setUp() {
+        ConcurrencyLimiterRegistry limiterRegistry = new ConcurrencyLimiterRegistry();
+        ReflectionTestUtils.setField(limiterRegistry, "initialLimit", 100);
+        ReflectionTestUtils.setField(limiterRegistry, "minLimit", 20);
+        ReflectionTestUtils.setField(limiterRegistry, "maxLimit", 1000);
+        ReflectionTestUtils.setField(limiterRegistry, "windowMillis", 100L);
+        ReflectionTestUtils.setField(limiterRegistry, "longWindows", 100);
+
+        waitingRoom = new WaitingRoomService();
+        ReflectionTestUtils.setField(waitingRoom, "enabled", true);
+        ReflectionTestUtils.setField(waitingRoom, "secret", "test-secret");
+        ReflectionTestUtils.setField(waitingRoom, "waveIntervalMs", 1000L);
+        ReflectionTestUtils.setField(waitingRoom, "initialWaveSize", WAVE_SIZE);
+        ReflectionTestUtils.setField(waitingRoom, "maxWaveSize", 5000);
+        ReflectionTestUtils.setField(waitingRoom, "redisService", new LocalRedisService());
+        ReflectionTestUtils.setField(waitingRoom, "concurrencyLimiterRegistry", limiterRegistry);
+        ReflectionTestUtils.setField(waitingRoom, "environment", environment);
+        waitingRoom.init();
+    }
+
+    @Test
+    void ticketOnlyVerifiesForItsOwnUserGoodsAndPosition() {
+        GoodsVo goods = goods(1L, -1);
+        WaitingRoomTicket ticket = waitingRoom.join(7L, goods);
+        assertEquals(1L, ticket.getPosition());
+        // Joining again returns the same position and ticket
+        assertEquals(ticket, waitingRoom.join(7L, goods));
+
+        assertNotNull(waitingRoom.getStatus(7L, 1L, ticket.getTicket()));
+        assertNull(waitingRoom.getStatus(8L, 1L, ticket.getTicket()));
+        assertNull(waitingRoom.getStatus(7L, 2L, ticket.getTicket()));
+        // Same signature claiming an earlier position
+        String signature = ticket.getTicket().substring(ticket.getTicket().indexOf('.'));
+        assertNull(waitingRoom.getStatus(7L, 1L, "0" + signature));
+        assertNull(waitingRoom.getStatus(7L, 1L, null));
+        assertNull(waitingRoom.getStatus(7L, 1L, "garbage"));
+    }
+
+    @Test
+    void ticketSignedWithAnotherSecretIsRejected() {
+        GoodsVo goods = goods(1L, -1);
+        WaitingRoomTicket ticket = waitingRoom.join(7L, goods);
+
+        ReflectionTestUtils.setField(waitingRoom, "secret", "other-secret");
+        waitingRoom.init();
+        assertNull(waitingRoom.getStatus(7L, 1L, ticket.getTicket()));
+    }
+
+    @Test
+    void wavesAdmitInPositionOrderUpToTheLastIssuedPosition() {
+        GoodsVo goods = goods(1L, -1);
+        List<WaitingRoomTicket> tickets = join(goods, 250);
+        assertFalse(isAdmitted(tickets.get(0)));
+
+        waitingRoom.releaseWaves();
+        assertTrue(isAdmitted(tickets.get(WAVE_SIZE - 1)));
+        assertFalse(isAdmitted(tickets.get(WAVE_SIZE)));
+        WaitingRoomStatus status = waitingRoom.getStatus(250L, 1L, tickets.get(249).getTicket());
+        assertEquals(150L, status.getAhead());
+        assertEquals(2L, status.getEstimatedWaitSeconds());
+
+        waitingRoom.releaseWaves();
+        waitingRoom.releaseWaves();
+        assertTrue(isAdmitted(tickets.get(249)));
+        assertEquals(250L, waitingRoom.getStatus(1L, 1L, tickets.get(0).getTicket()).getAdmittedUpTo());
+
+        // Idle waves do not bank admissions for users who join later
+        waitingRoom.releaseWaves();
+        WaitingRoomTicket late = waitingRoom.join(1000L, goods);
+        assertFalse(isAdmitted(late));
+    }
+
+    @Test
+    void nobodyIsAdmittedBeforeTheStart() {
+        GoodsVo goods = goods(1L, 10);
+        List<WaitingRoomTicket> tickets = join(goods, 10);
+        waitingRoom.releaseWaves();
+        assertFalse(isAdmitted(tickets.get(0)));
+    }
+
+    @Test
+    void placeholderSecretIsRefusedOutsideDevProfiles() {
+        ReflectionTestUtils.setField(waitingRoom, "secret", "change-me");
+        assertThrows(IllegalStateException.class, waitingRoom::init);
+
+        environment.setActiveProfiles("local-perf");
+        waitingRoom.init();
+    }
+
+    private List<WaitingRoomTicket> join(GoodsVo goods, int users) {
+        List<WaitingRoomTicket> tickets = new ArrayList<>();
+        for (long userId = 1; userId <= users; userId++) {
+            tickets.add(waitingRoom.join(userId, goods));
+        }
+        return tickets;
+    }
+
+    private boolean isAdmitted(WaitingRoomTicket ticket) {
+        return waitingRoom.isAdmitted(ticket.getUserId(), ticket.getGoodsId(), ticket.getTicket());
+    }
+
+    /**
+     * Goods starting startInMinutes from now (negative: already started), running for an hour
+     */
+    private static GoodsVo goods(Long goodsId, int startInMinutes) {
+        long start = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(startInMinutes);
+        GoodsVo goods = new GoodsVo();
+        goods.setId(goodsId);
+        goods.setStartTime(new Date(start));
+        goods.setEndTime(new Date(start + TimeUnit.HOURS.toMillis(1)));
+        return goods;
+    }
+}